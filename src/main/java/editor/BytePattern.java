@@ -0,0 +1,288 @@
+package editor;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * The immutable byte pattern in which every byte is compared under its
+ * own bit mask. A byte of the text matches the pattern byte if the
+ * bits selected by the mask are equal to the pattern value, so the
+ * mask <code>FF</code> means the exact byte and the mask
+ * <code>00</code> means any byte.
+ * <p>
+ * The text form of the pattern is the list of bytes separated with
+ * spaces. Every byte is written as two hex digits where any digit can
+ * be replaced with <code>?</code>, as one <code>?</code> which means
+ * any byte, or as the value and the mask joined
+ * with <code>&amp;</code>. For example <code>4D 5A ?? ?? 50 45</code>
+ * or <code>0x1F &amp; 0xF0</code>.
+ */
+public final class BytePattern {
+
+    /**
+     * The pattern values which have zeros outside of the masks.
+     */
+    private final byte[] values;
+
+    /**
+     * The masks of the compared bits.
+     */
+    private final byte[] masks;
+
+    /**
+     * Constructs the pattern.
+     *
+     * @param values the pattern values
+     * @param masks  the masks of the compared bits of the same length
+     */
+    public BytePattern(byte[] values, byte[] masks) {
+        if (values.length != masks.length) {
+            throw new IllegalArgumentException("Lengths differ: "
+                    + values.length + ", " + masks.length);
+        }
+        this.values = new byte[values.length];
+        this.masks = masks.clone();
+        for (int i = 0; i < values.length; i++) {
+            this.values[i] = (byte) (values[i] & masks[i]);
+        }
+    }
+
+    /**
+     * Returns the pattern matching exactly the given bytes.
+     *
+     * @param bytes the searched bytes
+     * @return the exact pattern
+     */
+    public static BytePattern of(byte... bytes) {
+        byte[] masks = new byte[bytes.length];
+        Arrays.fill(masks, (byte) 0xFF);
+        return new BytePattern(bytes, masks);
+    }
+
+    /**
+     * Parses the text form of the pattern.
+     *
+     * @param text the pattern, for example <code>4D 5A ?? 5?</code>
+     * @return the parsed pattern
+     * @throws IllegalArgumentException if the text is not a valid
+     *                                  pattern
+     */
+    public static BytePattern parse(String text) {
+        String normalized = text.trim().replaceAll("\\s*&\\s*", "&");
+        if (normalized.isEmpty()) {
+            return of();
+        }
+
+        List<byte[]> parsed = new ArrayList<>();
+        for (String token : normalized.split("\\s+")) {
+            int amp = token.indexOf('&');
+            if (amp != -1) {
+                byte value = (byte) parseHex(token.substring(0, amp));
+                byte mask = (byte) parseHex(token.substring(amp + 1));
+                parsed.add(new byte[]{value, mask});
+                continue;
+            }
+
+            String digits = stripPrefix(token);
+            if (digits.equals("?")) {
+                parsed.add(new byte[]{0, 0});
+                continue;
+            }
+            if (digits.length() % 2 != 0) {
+                throw new IllegalArgumentException(
+                        "Odd digit count: " + token);
+            }
+            // Several bytes can be written without spaces
+            for (int i = 0; i < digits.length(); i += 2) {
+                parsed.add(parseByte(digits.charAt(i), digits.charAt(i + 1)));
+            }
+        }
+
+        byte[] values = new byte[parsed.size()];
+        byte[] masks = new byte[parsed.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = parsed.get(i)[0];
+            masks[i] = parsed.get(i)[1];
+        }
+        return new BytePattern(values, masks);
+    }
+
+    /**
+     * Returns the length of the pattern.
+     *
+     * @return the byte count of the pattern
+     */
+    public int length() {
+        return values.length;
+    }
+
+    /**
+     * Returns the pattern value at the specified index. The bits
+     * outside of the mask are zeros.
+     *
+     * @param index the index of the pattern byte
+     * @return the pattern value
+     */
+    public byte getValue(int index) {
+        return values[index];
+    }
+
+    /**
+     * Returns the mask of the compared bits at the specified index.
+     *
+     * @param index the index of the pattern byte
+     * @return the mask
+     */
+    public byte getMask(int index) {
+        return masks[index];
+    }
+
+    /**
+     * Returns true if the given byte matches the pattern byte at the
+     * specified index.
+     *
+     * @param index the index of the pattern byte
+     * @param b     the compared byte
+     * @return true if the masked bits are equal
+     */
+    public boolean matches(int index, byte b) {
+        return (b & masks[index]) == values[index];
+    }
+
+    /**
+     * Returns true if all the bits of the pattern are compared.
+     *
+     * @return true if the pattern has no wildcards
+     */
+    public boolean isExact() {
+        for (byte mask : masks) {
+            if (mask != (byte) 0xFF) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the copy of the pattern values.
+     *
+     * @return the values which are the searched bytes of an exact
+     * pattern
+     */
+    public byte[] getValues() {
+        return values.clone();
+    }
+
+    /**
+     * Compares this pattern to the specified object.
+     *
+     * @param o the object to compare this pattern against
+     * @return true if the object is a pattern with the same values
+     * and masks
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        BytePattern that = (BytePattern) o;
+        return Arrays.equals(values, that.values)
+                && Arrays.equals(masks, that.masks);
+    }
+
+    /**
+     * Returns a hash code for this pattern.
+     *
+     * @return a hash code value for this object
+     */
+    @Override
+    public int hashCode() {
+        return 31 * Arrays.hashCode(values) + Arrays.hashCode(masks);
+    }
+
+    /**
+     * Returns the text form of the pattern which can be parsed back.
+     *
+     * @return the bytes separated with spaces
+     */
+    @Override
+    public String toString() {
+        StringBuilder res = new StringBuilder();
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                res.append(' ');
+            }
+            int value = values[i] & 0xFF;
+            int mask = masks[i] & 0xFF;
+            if ((mask & 0xF0) != 0 && (mask & 0xF0) != 0xF0
+                    || (mask & 0x0F) != 0 && (mask & 0x0F) != 0x0F) {
+                res.append(String.format("%02X&%02X", value, mask));
+            } else {
+                res.append(nibble(value >> 4, mask >> 4));
+                res.append(nibble(value & 0x0F, mask & 0x0F));
+            }
+        }
+        return res.toString();
+    }
+
+    /**
+     * Returns the hex digit of the nibble or <code>?</code> if it is
+     * not compared.
+     */
+    private static char nibble(int value, int mask) {
+        return mask == 0 ? '?' : Character.toUpperCase(
+                Character.forDigit(value, 16));
+    }
+
+    /**
+     * Parses the byte written as two hex digits or question marks.
+     *
+     * @return the value and the mask
+     */
+    private static byte[] parseByte(char high, char low) {
+        int value = 0;
+        int mask = 0;
+        for (char c : new char[]{high, low}) {
+            value <<= 4;
+            mask <<= 4;
+            if (c != '?') {
+                int digit = Character.digit(c, 16);
+                if (digit == -1) {
+                    throw new IllegalArgumentException(
+                            "Not a hex digit: " + c);
+                }
+                value |= digit;
+                mask |= 0x0F;
+            }
+        }
+        return new byte[]{(byte) value, (byte) mask};
+    }
+
+    /**
+     * Parses the byte written as one or two hex digits.
+     *
+     * @param token the digits with the optional <code>0x</code>
+     *              prefix
+     * @return the byte value
+     */
+    private static int parseHex(String token) {
+        String digits = stripPrefix(token);
+        if (digits.isEmpty() || digits.length() > 2) {
+            throw new IllegalArgumentException("Not a byte: " + token);
+        }
+        try {
+            return Integer.parseInt(digits, 16);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Not a byte: " + token);
+        }
+    }
+
+    /**
+     * Removes the <code>0x</code> prefix.
+     */
+    private static String stripPrefix(String token) {
+        return token.toLowerCase(Locale.ROOT).startsWith("0x")
+                ? token.substring(2) : token;
+    }
+}
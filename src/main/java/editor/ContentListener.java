@@ -0,0 +1,22 @@
+package editor;
+
+/**
+ * The receiver of the changes of the open file contents. A change
+ * replaces a range of the bytes with other bytes, so the bytes before
+ * the range stay in place and the bytes after it are shifted by the
+ * difference of the lengths.
+ */
+@FunctionalInterface
+public interface ContentListener {
+
+    /**
+     * Receives one change. It is called after the contents are changed
+     * on the thread which made the edit.
+     *
+     * @param offset         the file position of the replaced range
+     * @param removedLength  the byte count of the replaced range
+     * @param insertedLength the byte count of the bytes which replaced
+     *                       it
+     */
+    void contentChanged(long offset, long removedLength, long insertedLength);
+}
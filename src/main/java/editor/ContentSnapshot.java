@@ -0,0 +1,35 @@
+package editor;
+
+/**
+ * The contents of the open file at the moment the snapshot was taken.
+ * The snapshot can be read from any thread while the file is edited,
+ * so a view can load the shown bytes away from the event dispatch
+ * thread. It becomes stale when the file is saved or closed.
+ */
+public interface ContentSnapshot {
+
+    /**
+     * Returns the file size at the moment of the snapshot.
+     *
+     * @return the byte count of the snapshot
+     */
+    long length();
+
+    /**
+     * Reads the specified number of bytes from the specified position.
+     *
+     * @param offset the position at which the reading is to begin
+     * @param count  read byte count
+     * @return the read bytes, which are fewer than <code>count</code>
+     * at the end of the snapshot, or null if the position is out of
+     * the snapshot, the snapshot is stale or the read occurred with
+     * an error
+     */
+    byte[] read(long offset, int count);
+
+    /**
+     * Returns true if the file was saved or closed after the snapshot
+     * was taken, so it can not be read any more.
+     */
+    boolean isStale();
+}
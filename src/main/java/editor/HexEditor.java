@@ -1,5 +1,7 @@
 package editor;
 
+import java.util.List;
+import java.util.stream.LongStream;
 
 public interface HexEditor {
     /**
@@ -26,6 +28,18 @@ public interface HexEditor {
      */
     boolean saveFile();
 
+    /**
+     * Writes the edited data to the current opened file reporting the
+     * count of the written bytes. The bytes replaced in place are
+     * written in place, and the file which data is shifted by the
+     * edits is written anew and replaced atomically, so a crash never
+     * loses the data. The save is not cancelled by the monitor.
+     *
+     * @param monitor the receiver of the progress or null
+     * @return true if changes were successfully saved
+     */
+    boolean saveFile(ProgressMonitor monitor);
+
     /**
      * Creates a new file with the temporary file data.
      *
@@ -33,6 +47,17 @@ public interface HexEditor {
      */
     boolean saveAsNewFile(String filename);
 
+    /**
+     * Creates a new file with the edited data reporting the count of
+     * the written bytes. An existing file is replaced atomically, so a
+     * crash leaves either its old contents or the new ones.
+     *
+     * @param filename the path of the new file
+     * @param monitor  the receiver of the progress or null
+     * @return true if a new file was successfully created
+     */
+    boolean saveAsNewFile(String filename, ProgressMonitor monitor);
+
     /**
      * Reads the specified number of bytes from the specified position
      *
@@ -44,6 +69,30 @@ public interface HexEditor {
      */
     byte[] read(long offset, int count);
 
+    /**
+     * Takes the snapshot of the current file contents which can be
+     * read from another thread while the file is edited.
+     *
+     * @return the snapshot or null if there is no open file
+     */
+    ContentSnapshot snapshot();
+
+    /**
+     * Adds the receiver of the changes of the file contents. The
+     * receiver is told about every edit, undo and redo, so it can
+     * update only the changed part of what it keeps.
+     *
+     * @param listener the receiver of the changes
+     */
+    void addContentListener(ContentListener listener);
+
+    /**
+     * Removes the receiver of the changes of the file contents.
+     *
+     * @param listener the receiver of the changes
+     */
+    void removeContentListener(ContentListener listener);
+
     /**
      * Returns the file size of the open file.
      *
@@ -72,8 +121,7 @@ public interface HexEditor {
     boolean insertZeros(int byteCount, long position);
 
     /**
-     * Finds some sequence of bytes specified by the exact value or by
-     * some mask.
+     * Finds some sequence of bytes specified by the exact value.
      *
      * @param offset the file position at which the searching is to
      *                 begin
@@ -81,6 +129,144 @@ public interface HexEditor {
      */
     long find(long offset, byte... mask);
 
+    /**
+     * Finds some sequence of bytes specified by the pattern in which
+     * every byte is compared under its own bit mask, so it can
+     * contain wildcards.
+     *
+     * @param offset  the file position at which the searching is to
+     *                begin
+     * @param pattern the searched pattern
+     * @return match position or -1 if it was not found
+     */
+    long find(long offset, BytePattern pattern);
+
+    /**
+     * Finds some sequence of bytes specified by the pattern reporting
+     * the progress. The search can run on a background thread while
+     * the file is not edited, saved or closed.
+     *
+     * @param offset  the file position at which the searching is to
+     *                begin
+     * @param pattern the searched pattern
+     * @param monitor the receiver of the progress which can cancel
+     *                the search
+     * @return match position or -1 if it was not found or the search
+     * was cancelled
+     */
+    long find(long offset, BytePattern pattern, ProgressMonitor monitor);
+
+    /**
+     * Finds the last match of the pattern which starts before the
+     * specified position, so repeating the search from the found
+     * match walks the matches towards the file beginning. A match may
+     * extend past the position.
+     *
+     * @param offset  the file position before which the match starts
+     * @param pattern the searched pattern
+     * @return match position or -1 if it was not found
+     */
+    long findPrevious(long offset, BytePattern pattern);
+
+    /**
+     * Finds the last match of the pattern which starts before the
+     * specified position reporting the progress the same way as
+     * {@link #find(long, BytePattern, ProgressMonitor)}.
+     *
+     * @param offset  the file position before which the match starts
+     * @param pattern the searched pattern
+     * @param monitor the receiver of the progress which can cancel
+     *                the search
+     * @return match position or -1 if it was not found or the search
+     * was cancelled
+     */
+    long findPrevious(long offset, BytePattern pattern,
+                      ProgressMonitor monitor);
+
+    /**
+     * Finds all the matches of the exact sequence of bytes in one pass
+     * over the file, overlapping ones included. The matches are found
+     * lazily while the stream is consumed, so a short-circuiting
+     * operation stops the reading. The stream describes the contents
+     * at the moment of the call and must be consumed before the file
+     * is saved or closed; an I/O error is thrown as an
+     * {@code UncheckedIOException}.
+     *
+     * @param offset the file position at which the searching is to
+     *               begin
+     * @param limit  the maximum count of the found matches
+     * @param mask   the searched bytes
+     * @return the match positions in increasing order
+     */
+    LongStream findAll(long offset, long limit, byte... mask);
+
+    /**
+     * Finds all the matches of the pattern with masks in one pass over
+     * the file the same way as {@link #findAll(long, long, byte...)}.
+     *
+     * @param offset  the file position at which the searching is to
+     *                begin
+     * @param limit   the maximum count of the found matches
+     * @param pattern the searched pattern
+     * @return the match positions in increasing order
+     */
+    LongStream findAll(long offset, long limit, BytePattern pattern);
+
+    /**
+     * Finds the first match of the regular expression over bytes, for
+     * example <code>FF D8 .{0,64} FF C0</code>. The match that ends
+     * first is found, and among the matches with that end the longest
+     * one.
+     *
+     * @param offset the file position at which the searching is to
+     *               begin
+     * @param regex  the expression
+     * @return match position or -1 if it was not found
+     * @throws IllegalArgumentException if the expression is not valid
+     */
+    long findRegex(long offset, String regex);
+
+    /**
+     * Finds all the occurrences of several sequences of bytes in one
+     * pass over the file, overlapping ones included. The matches are
+     * reported in the order of their ends as the pairs of the pattern
+     * index in the list and the file position of the match.
+     *
+     * @param offset   the file position at which the searching is to
+     *                 begin
+     * @param patterns the non-empty searched sequences
+     * @param consumer the receiver of the matches which can stop the
+     *                 search
+     * @return the count of the reported matches or -1 if an error
+     * occurred
+     * @throws IllegalArgumentException if a pattern is empty
+     */
+    long findAll(long offset, List<byte[]> patterns, MatchConsumer consumer);
+
+    /**
+     * Builds the index of the 4-byte sequences of the opened file
+     * which makes the next searches read only the blocks that can
+     * contain a match. The index describes the file as it was opened,
+     * so the edits do not invalidate it; it is dropped when the file
+     * is saved or closed. The call blocks until the index is built.
+     *
+     * @param monitor the receiver of the progress which can cancel the
+     *                building or null
+     * @return true - if the index was built, false - if the building
+     * was cancelled or failed
+     */
+    boolean buildIndex(ProgressMonitor monitor);
+
+    /**
+     * Returns true if the opened file has the search index.
+     */
+    boolean hasIndex();
+
+    /**
+     * Drops the search index freeing its disk space.
+     */
+    void dropIndex();
+
     /**
      * Inserts bytes to the offset position without replacement. The
      * data after the inserted block is shifted towards large
@@ -106,4 +292,57 @@ public interface HexEditor {
      * @return true if the operation was successful and false otherwise
      */
     boolean delete(long offset, long count);
+
+    /**
+     * Starts a batch of edits. The edits made until {@link #commit()}
+     * or {@link #rollback()} is called are visible at once but are
+     * kept as one operation which can be dropped entirely.
+     *
+     * @return true if the batch was started and false if there is no
+     * open file or a batch is already started
+     */
+    boolean beginBatch();
+
+    /**
+     * Finishes the current batch keeping all its edits.
+     *
+     * @return true if the operation was successful and false if no
+     * batch is started
+     */
+    boolean commit();
+
+    /**
+     * Finishes the current batch dropping all its edits.
+     *
+     * @return true if the operation was successful and false if no
+     * batch is started
+     */
+    boolean rollback();
+
+    /**
+     * Reverts the most recent edit or batch of edits.
+     *
+     * @return true if the operation was successful and false if there
+     * is nothing to undo
+     */
+    boolean undo();
+
+    /**
+     * Applies again the most recently reverted edit or batch of edits.
+     *
+     * @return true if the operation was successful and false if there
+     * is nothing to redo
+     */
+    boolean redo();
+
+    /**
+     * Returns true if there is an edit that can be reverted.
+     */
+    boolean canUndo();
+
+    /**
+     * Returns true if there is a reverted edit that can be applied
+     * again.
+     */
+    boolean canRedo();
 }
@@ -0,0 +1,18 @@
+package editor;
+
+/**
+ * The receiver of the matches found by the multi-pattern search.
+ */
+@FunctionalInterface
+public interface MatchConsumer {
+
+    /**
+     * Receives one match.
+     *
+     * @param patternId the index of the matched pattern in the list
+     *                  given to the search
+     * @param offset    the file position of the first matched byte
+     * @return true to continue the search and false to stop it
+     */
+    boolean accept(int patternId, long offset);
+}
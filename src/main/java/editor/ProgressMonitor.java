@@ -0,0 +1,23 @@
+package editor;
+
+/**
+ * The receiver of the progress of a long operation which can also
+ * cancel it. The methods can be called from several threads.
+ */
+public interface ProgressMonitor {
+
+    /**
+     * Receives the progress of the operation.
+     *
+     * @param done  the count of the processed bytes
+     * @param total the count of the bytes to process
+     */
+    void progress(long done, long total);
+
+    /**
+     * Returns true if the operation has to be stopped.
+     *
+     * @return true if the operation was cancelled
+     */
+    boolean isCancelled();
+}
@@ -0,0 +1,182 @@
+package editor.impl;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static java.nio.file.StandardOpenOption.DELETE_ON_CLOSE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * The append-only temporary file that stores all the bytes added to
+ * the edited file. The bytes once written are never changed, so the
+ * pieces of the {@code PieceTable} can refer to them until the file
+ * is closed or compacted. The reads go through the memory-mapped
+ * windows of the file.
+ */
+public class AddBuffer {
+
+    /**
+     * The counters of the saved I/O work.
+     */
+    private final SessionStatistics statistics;
+
+    /**
+     * The channel of the temporary file. It is opened when the first
+     * bytes are added and is kept open until the buffer is cleared.
+     */
+    private FileChannel channel = null;
+
+    /**
+     * The count of the stored bytes.
+     */
+    private long size = 0;
+
+    /**
+     * The mapped windows of the temporary file.
+     */
+    private MappedWindowCache windows = null;
+
+    /**
+     * Constructs the empty buffer.
+     *
+     * @param statistics the counters of the saved I/O work
+     */
+    public AddBuffer(SessionStatistics statistics) {
+        this.statistics = statistics;
+    }
+
+    /**
+     * Appends the bytes to the end of the buffer.
+     *
+     * @param bytes the appended bytes
+     * @return the position of the first appended byte in the buffer
+     * @throws IOException if an I/O error occurs
+     */
+    public long append(byte[] bytes) throws IOException {
+        if (channel == null) {
+            Path path = Files.createTempFile("~", ".add");
+            channel = FileChannel.open(path, READ, WRITE, DELETE_ON_CLOSE);
+            windows = new MappedWindowCache(channel, 0, statistics,
+                    MappedWindowCache.DEFAULT_WINDOW_SIZE,
+                    MappedWindowCache.DEFAULT_MAX_WINDOWS, true);
+        } else {
+            statistics.channelReused();
+        }
+
+        long start = size;
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        while (buffer.hasRemaining()) {
+            channel.write(buffer, size + buffer.position());
+        }
+        size += bytes.length;
+        windows.setLength(size);
+        return start;
+    }
+
+    /**
+     * Reads the bytes starting from the specified buffer position.
+     *
+     * @param position the buffer position at which the reading is
+     *                 to begin
+     * @param dst      the array to read the bytes into
+     * @param dstOffset the index in the array of the first read byte
+     * @param count    read byte count
+     * @throws IOException if an I/O error occurs
+     */
+    public void read(long position, byte[] dst, int dstOffset, int count)
+            throws IOException {
+        windows.read(position, dst, dstOffset, count);
+    }
+
+    /**
+     * Transfers the bytes starting from the specified buffer position
+     * to the given channel.
+     *
+     * @param position the buffer position at which the transfer is to
+     *                 begin
+     * @param count    transferred byte count
+     * @param target   the target channel
+     * @throws IOException if an I/O error occurs
+     */
+    public void transferTo(long position, long count,
+                           WritableByteChannel target) throws IOException {
+        statistics.channelReused();
+        while (count > 0) {
+            long n = channel.transferTo(position, count, target);
+            if (n <= 0) {
+                throw new IOException("Unexpected end of the add buffer");
+            }
+            position += n;
+            count -= n;
+        }
+    }
+
+    /**
+     * Replaces the buffer with a new temporary file which keeps only
+     * the specified ranges one after another. The ranges must be
+     * sorted and must not overlap, a byte of a range is moved to the
+     * position of the byte minus the count of the bytes which are out
+     * of the ranges before it. The buffer is not changed if an I/O
+     * error occurs.
+     *
+     * @param starts  the buffer positions of the first bytes of the
+     *                kept ranges
+     * @param lengths the byte counts of the kept ranges
+     * @throws IOException if an I/O error occurs
+     */
+    public void compact(long[] starts, long[] lengths) throws IOException {
+        if (channel == null) {
+            return;
+        }
+
+        Path path = Files.createTempFile("~", ".add");
+        FileChannel compacted = FileChannel.open(path, READ, WRITE,
+                DELETE_ON_CLOSE);
+        long compactedSize = 0;
+        try {
+            for (int i = 0; i < starts.length; i++) {
+                transferTo(starts[i], lengths[i], compacted);
+                compactedSize += lengths[i];
+            }
+        } catch (IOException e) {
+            compacted.close();
+            throw e;
+        }
+
+        channel.close();
+        channel = compacted;
+        windows = new MappedWindowCache(channel, compactedSize, statistics,
+                MappedWindowCache.DEFAULT_WINDOW_SIZE,
+                MappedWindowCache.DEFAULT_MAX_WINDOWS, true);
+        size = compactedSize;
+    }
+
+    /**
+     * Returns the count of the stored bytes.
+     *
+     * @return the buffer size
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * Closes and deletes the temporary file. The buffer can be used
+     * again after that.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    public void clear() throws IOException {
+        if (channel != null) {
+            channel.close();
+        }
+        channel = null;
+        windows = null;
+        size = 0;
+    }
+}
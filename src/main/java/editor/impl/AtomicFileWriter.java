@@ -0,0 +1,130 @@
+package editor.impl;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * The writer that replaces a file so that a crash leaves either the
+ * old or the new contents. The data is written to a temporary file
+ * in the same directory, forced to the disk and renamed over the
+ * target in one step. The temporary file is deleted if the writer is
+ * closed without {@link #commit()}.
+ */
+public class AtomicFileWriter implements Closeable {
+
+    /**
+     * The replaced file.
+     */
+    private final Path target;
+
+    /**
+     * The temporary file next to the target.
+     */
+    private final Path temp;
+
+    /**
+     * The channel of the temporary file.
+     */
+    private final FileChannel channel;
+
+    /**
+     * Whether the temporary file was renamed over the target.
+     */
+    private boolean committed = false;
+
+    /**
+     * Creates the temporary file next to the target.
+     *
+     * @param target the replaced file
+     * @throws IOException if an I/O error occurs
+     */
+    public AtomicFileWriter(Path target) throws IOException {
+        this.target = target.toAbsolutePath();
+        Path dir = this.target.getParent();
+        temp = Files.createTempFile(dir,
+                "." + this.target.getFileName() + "~", ".tmp");
+        try {
+            channel = FileChannel.open(temp, READ, WRITE);
+        } catch (IOException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the channel the new contents are written to.
+     *
+     * @return the channel of the temporary file
+     */
+    public FileChannel getChannel() {
+        return channel;
+    }
+
+    /**
+     * Forces the written data to the disk and renames the temporary
+     * file over the target. The permissions of the existing target
+     * are kept.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    public void commit() throws IOException {
+        channel.force(true);
+        channel.close();
+
+        if (Files.exists(target)) {
+            try {
+                Files.setPosixFilePermissions(temp,
+                        Files.getPosixFilePermissions(target));
+            } catch (UnsupportedOperationException e) {
+                // The file system has no POSIX permissions
+            }
+        }
+
+        try {
+            Files.move(temp, target, ATOMIC_MOVE, REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, target, REPLACE_EXISTING);
+        }
+        committed = true;
+        forceDirectory();
+    }
+
+    /**
+     * Closes the channel and deletes the temporary file if it was not
+     * committed.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            channel.close();
+        } finally {
+            if (!committed) {
+                Files.deleteIfExists(temp);
+            }
+        }
+    }
+
+    /**
+     * Forces the directory entry of the renamed file to the disk. Not
+     * every platform can open a directory, so a failure is ignored:
+     * the rename is atomic anyway.
+     */
+    private void forceDirectory() {
+        try (FileChannel dir = FileChannel.open(target.getParent(), READ)) {
+            dir.force(true);
+        } catch (IOException e) {
+            // The directory can not be opened on this platform
+        }
+    }
+}
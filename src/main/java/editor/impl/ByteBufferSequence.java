@@ -0,0 +1,286 @@
+package editor.impl;
+
+import editor.ByteSequence;
+
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * The byte sequence which is a read-only view of a range of a buffer.
+ * The bytes are not copied, so a sequence of any length is made at
+ * once, and a multi-byte number is read from the buffer by one call.
+ * The bytes of the buffer must not be changed while the sequence is
+ * used.
+ */
+public class ByteBufferSequence implements ByteSequence {
+
+    /**
+     * The mask which makes the unsigned value of a long number.
+     */
+    private static final BigInteger UNSIGNED_LONG_MASK =
+            BigInteger.ONE.shiftLeft(Long.SIZE).subtract(BigInteger.ONE);
+
+    /**
+     * The read-only view of the buffer in little-endian order.
+     */
+    private final ByteBuffer buffer;
+
+    /**
+     * The index of the first byte of the sequence in the buffer.
+     */
+    private final int offset;
+
+    /**
+     * The length of the sequence.
+     */
+    private final int length;
+
+    /**
+     * Constructs the view of the range of the buffer. The position and
+     * the byte order of the buffer are not changed.
+     *
+     * @param buffer the buffer with the bytes
+     * @param offset the index of the first byte in the buffer
+     * @param length the byte count of the sequence
+     * @throws IllegalArgumentException if the range is out of the
+     *                                  buffer
+     */
+    public ByteBufferSequence(ByteBuffer buffer, int offset, int length) {
+        if (offset < 0 || length < 0 || offset > buffer.capacity() - length) {
+            throw new IllegalArgumentException("Invalid range: " + offset
+                    + ", " + length);
+        }
+        this.buffer = buffer.asReadOnlyBuffer()
+                .order(ByteOrder.LITTLE_ENDIAN);
+        this.offset = offset;
+        this.length = length;
+    }
+
+    /**
+     * Returns the view of the whole array.
+     *
+     * @param bytes the bytes of the sequence which are not copied
+     * @return the sequence of the bytes
+     */
+    public static ByteBufferSequence wrap(byte[] bytes) {
+        return new ByteBufferSequence(ByteBuffer.wrap(bytes), 0,
+                bytes.length);
+    }
+
+    /**
+     * Compares the bytes of this sequence to the specified object.
+     *
+     * @param o the object to compare this ByteSequence against
+     * @return true if the given object is a ByteBufferSequence with
+     * the same bytes, false otherwise
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        ByteBufferSequence that = (ByteBufferSequence) o;
+        if (length != that.length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (getByte(i) != that.getByte(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns a hash code of the bytes of this sequence.
+     *
+     * @return a hash code value for this object
+     */
+    @Override
+    public int hashCode() {
+        int res = 1;
+        for (int i = 0; i < length; i++) {
+            res = 31 * res + getByte(i);
+        }
+        return res;
+    }
+
+    /**
+     * Returns the byte at the specified index.
+     *
+     * @param index the index of the byte value
+     * @return the byte value at the specified index of this byte
+     * sequence. The first byte value is at index 0.
+     * @throws IndexOutOfBoundsException if the index is out of the
+     *                                   sequence
+     */
+    public byte getByte(int index) {
+        if (index < 0 || index >= length) {
+            throw new IndexOutOfBoundsException("Invalid index: " + index);
+        }
+        return buffer.get(offset + index);
+    }
+
+    /**
+     * Returns the length of this byte sequence.
+     *
+     * @return the length of the sequence
+     */
+    public int length() {
+        return length;
+    }
+
+    /**
+     * Returns the bits of the little-endian number. The number which
+     * fits the sequence is read by one call, the bytes missing at the
+     * end of the sequence are zeros.
+     *
+     * @param start     the index of the lowest byte
+     * @param byteCount the byte count of the number: 2, 4 or 8
+     * @return the bits of the number, the bits above the byte count
+     * are undefined
+     */
+    private long bits(int start, int byteCount) {
+        if (start >= 0 && start <= length - byteCount) {
+            switch (byteCount) {
+                case 2:
+                    return buffer.getShort(offset + start);
+                case 4:
+                    return buffer.getInt(offset + start);
+                default:
+                    return buffer.getLong(offset + start);
+            }
+        }
+
+        long res = 0;
+        int end = Math.min(start + byteCount, length);
+        for (int i = start; i < end; i++) {
+            res |= (long) (getByte(i) & 0xFF) << (8 * (i - start));
+        }
+        return res;
+    }
+
+    /**
+     * Represents the byte at the specified position as unsigned num.
+     *
+     * @param index the index of the byte value
+     * @return the byte value at the specified index represented as
+     * long number
+     */
+    public long representAsUnsigned8Bit(int index) {
+        return getByte(index) & 0xFF;
+    }
+
+    /**
+     * Represents the byte at the specified position as signed num.
+     *
+     * @param index the index of the byte value
+     * @return the byte value at the specified index
+     */
+    public byte representAsSigned8Bit(int index) {
+        return getByte(index);
+    }
+
+    /**
+     * Represents the 2 bytes starting from the specified position as
+     * unsigned num.
+     *
+     * @param start the index to start the calculating from
+     * @return the long number representing the specified bytes
+     */
+    public long representAsUnsigned16Bit(int start) {
+        return bits(start, 2) & 0xFFFF;
+    }
+
+    /**
+     * Represents the 2 bytes starting from the specified position as
+     * signed num.
+     *
+     * @param start the index to start the calculating from
+     * @return the short number representing the specified bytes
+     */
+    public short representAsSigned16Bit(int start) {
+        return (short) bits(start, 2);
+    }
+
+    /**
+     * Represents the 4 bytes starting from the specified position as
+     * unsigned num.
+     *
+     * @param start the index to start the calculating from
+     * @return the long number representing the specified bytes
+     */
+    public long representAsUnsigned32Bit(int start) {
+        return bits(start, 4) & 0xFFFFFFFFL;
+    }
+
+    /**
+     * Represents the 4 bytes starting from the specified position as
+     * signed num.
+     *
+     * @param start the index to start the calculating from
+     * @return the int number representing the specified bytes
+     */
+    public int representAsSigned32Bit(int start) {
+        return (int) bits(start, 4);
+    }
+
+    /**
+     * Represents the 8 bytes starting from the specified position as
+     * unsigned num.
+     *
+     * @param start the index to start the calculating from
+     * @return the BigInteger number representing the specified bytes
+     */
+    public BigInteger representAsUnsigned64Bit(int start) {
+        return BigInteger.valueOf(bits(start, 8)).and(UNSIGNED_LONG_MASK);
+    }
+
+    /**
+     * Represents the 8 bytes starting from the specified position as
+     * signed num.
+     *
+     * @param start the index to start the calculating from
+     * @return the long number representing the specified bytes
+     */
+    public long representAsSigned64Bit(int start) {
+        return bits(start, 8);
+    }
+
+    /**
+     * Represents the 4 bytes starting from the specified position as
+     * float number.
+     *
+     * @param start the index to start the calculating from
+     * @return the float number representing the specified bytes
+     */
+    public float representAsFloat(int start) {
+        return Float.intBitsToFloat((int) bits(start, 4));
+    }
+
+    /**
+     * Represents the 8 bytes starting from the specified position as
+     * double number.
+     *
+     * @param start the index to start the calculating from
+     * @return the double number representing the specified bytes
+     */
+    public double representAsDouble(int start) {
+        return Double.longBitsToDouble(bits(start, 8));
+    }
+
+    /**
+     * Represents the byte sequence as positive BigInteger
+     *
+     * @param byteCount the number of bytes to calculate
+     * @return a calculated BigInteger
+     */
+    public BigInteger representAsBigInteger(int byteCount) {
+        // BigInteger takes the bytes in big-endian order
+        byte[] reverse = new byte[byteCount];
+        for (int i = 0; i < byteCount; i++) {
+            reverse[byteCount - 1 - i] = getByte(i);
+        }
+        return new BigInteger(1, reverse);
+    }
+}
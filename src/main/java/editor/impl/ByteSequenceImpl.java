@@ -1,6 +1,7 @@
 package editor.impl;
 
 import editor.ByteSequence;
+import editor.impl.search.HorspoolMatcher;
 import org.apache.commons.lang3.ArrayUtils;
 
 import java.math.BigInteger;
@@ -248,36 +249,7 @@ public class ByteSequenceImpl implements ByteSequence {
      * specified byte array.
      */
     public static int find(byte[] mask, byte[] compared) {
-        if (mask.length > compared.length)
-            return -1;
-
-        ByteSequenceImpl maskByteSequence = new ByteSequenceImpl(mask);
-        ByteSequenceImpl comparedByteSequence = new ByteSequenceImpl(compared);
-
-        BigInteger maskBits = maskByteSequence
-                .representAsBigInteger(mask.length);
-        BigInteger comparedPartBits = comparedByteSequence
-                .representAsBigInteger(mask.length);
-
-        if (maskBits.compareTo(comparedPartBits) == 0)
-            return 0;
-
-        for (int i = mask.length; i < compared.length; ++i) {
-            // shift one byte to the right removing the lower digit
-            comparedPartBits = comparedPartBits.shiftRight(8);
-
-            // insert a new byte on the left
-            BigInteger addedByte = BigInteger.valueOf(
-                    comparedByteSequence.representAsUnsigned8Bit(i));
-            addedByte = addedByte.shiftLeft((mask.length - 1) * 8);
-            comparedPartBits = comparedPartBits.add(addedByte);
-
-            boolean res = maskBits.compareTo(comparedPartBits) == 0;
-
-            if (res)
-                return i - mask.length + 1;
-        }
-
-        return -1;
+        return new HorspoolMatcher(mask).indexOf(
+                compared, 0, compared.length);
     }
 }
@@ -0,0 +1,143 @@
+package editor.impl;
+
+import editor.impl.PieceTable.Piece;
+import editor.impl.search.ByteSource;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * The immutable view of the document contents at the moment it was
+ * taken. It keeps its own copy of the piece list, so it can be read
+ * from several threads without access to the piece table. The view
+ * stays valid until the file is saved or closed.
+ */
+public class DocumentSnapshot implements ByteSource {
+
+    /**
+     * The session the pieces are read through.
+     */
+    private final FileSession session;
+
+    /**
+     * The pieces in the document order.
+     */
+    private final Piece[] pieces;
+
+    /**
+     * The document positions of the pieces.
+     */
+    private final long[] offsets;
+
+    /**
+     * The document length.
+     */
+    private final long length;
+
+    /**
+     * Takes the snapshot of the document of the session.
+     *
+     * @param session the session of the opened file
+     */
+    public DocumentSnapshot(FileSession session) {
+        this.session = session;
+
+        List<Piece> list = session.getPieceTable().snapshot();
+        pieces = list.toArray(new Piece[0]);
+        offsets = new long[pieces.length];
+
+        long pos = 0;
+        for (int i = 0; i < pieces.length; i++) {
+            offsets[i] = pos;
+            pos += pieces[i].length;
+        }
+        length = pos;
+    }
+
+    /**
+     * Returns the document length.
+     *
+     * @return the byte count of the document
+     */
+    @Override
+    public long length() {
+        return length;
+    }
+
+    /**
+     * Returns the count of the pieces.
+     */
+    public int pieceCount() {
+        return pieces.length;
+    }
+
+    /**
+     * Returns the piece at the specified index.
+     */
+    public Piece piece(int index) {
+        return pieces[index];
+    }
+
+    /**
+     * Returns the document position of the piece at the specified
+     * index.
+     */
+    public long pieceOffset(int index) {
+        return offsets[index];
+    }
+
+    /**
+     * Reads the bytes starting from the specified position into the
+     * given array.
+     *
+     * @param offset    the position at which the reading is to begin
+     * @param dst       the array to read the bytes into
+     * @param dstOffset the index in the array of the first read byte
+     * @param count     the maximum read byte count
+     * @return the read byte count which is less than the
+     * <code>count</code> only at the end of the document
+     * @throws IOException if an I/O error occurs
+     */
+    @Override
+    public int read(long offset, byte[] dst, int dstOffset, int count)
+            throws IOException {
+        if (offset < 0 || offset >= length || count <= 0) {
+            return 0;
+        }
+        count = (int) Math.min(count, length - offset);
+
+        int i = indexOf(offset);
+        int done = 0;
+        while (done < count) {
+            Piece p = pieces[i];
+            long from = offset + done - offsets[i];
+            int n = (int) Math.min(p.length - from, count - done);
+            session.read(p.slice(from, n), dst, dstOffset + done);
+            done += n;
+            i++;
+        }
+        return count;
+    }
+
+    /**
+     * Returns the index of the piece containing the specified
+     * position.
+     *
+     * @param offset the document position which is less than the
+     *               document length
+     * @return the piece index
+     */
+    private int indexOf(long offset) {
+        int low = 0;
+        int high = pieces.length - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (offsets[mid] <= offset) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+}
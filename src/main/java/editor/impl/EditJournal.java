@@ -0,0 +1,475 @@
+package editor.impl;
+
+import editor.impl.PieceTable.Piece;
+import editor.impl.PieceTable.Source;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
+
+/**
+ * The undo/redo journal of the piece table edits. Every edit is kept
+ * as the descriptors of the removed and the inserted pieces, so it
+ * refers to the bytes of the source file and of the add buffer
+ * instead of copying them: undoing a cut of any size costs as much
+ * memory as the piece count of the cut block.
+ * <p>
+ * The journal has a memory budget for the descriptors and a disk
+ * budget for the added bytes which it keeps referenced. When any of
+ * them is exceeded the oldest entries are dropped. The added bytes of
+ * the dropped entries are counted, so the owner of the add buffer can
+ * compact it and remap the pieces by {@link #remap(UnaryOperator)}.
+ */
+public class EditJournal {
+
+    /**
+     * The default memory budget of the journal.
+     */
+    public static final long DEFAULT_MEMORY_LIMIT = 16L * 1024 * 1024;
+
+    /**
+     * The default disk budget of the journal.
+     */
+    public static final long DEFAULT_DISK_LIMIT = 1024L * 1024 * 1024;
+
+    /**
+     * The estimated memory size of one piece descriptor.
+     */
+    private static final long PIECE_MEMORY = 48;
+
+    /**
+     * The estimated memory size of one edit without its pieces.
+     */
+    private static final long EDIT_MEMORY = 64;
+
+    /**
+     * The replacement of a document range with the given pieces.
+     */
+    public static final class Edit {
+
+        /**
+         * The document position of the replaced range.
+         */
+        public final long offset;
+
+        /**
+         * The pieces that were removed from the offset position.
+         */
+        public final List<Piece> removed;
+
+        /**
+         * The pieces that were inserted at the offset position.
+         */
+        public final List<Piece> inserted;
+
+        /**
+         * Constructs the edit.
+         *
+         * @param offset   the document position of the replaced range
+         * @param removed  the removed pieces
+         * @param inserted the inserted pieces
+         */
+        public Edit(long offset, List<Piece> removed, List<Piece> inserted) {
+            this.offset = offset;
+            this.removed = removed;
+            this.inserted = inserted;
+        }
+
+        /**
+         * Returns the byte count of the removed pieces.
+         */
+        public long removedLength() {
+            return length(removed);
+        }
+
+        /**
+         * Returns the byte count of the inserted pieces.
+         */
+        public long insertedLength() {
+            return length(inserted);
+        }
+
+        /**
+         * Returns the estimated memory size of this edit.
+         */
+        long memory() {
+            return EDIT_MEMORY
+                    + PIECE_MEMORY * (removed.size() + inserted.size());
+        }
+
+        /**
+         * Returns the count of the add buffer bytes this edit refers to.
+         */
+        long disk() {
+            return addedLength(removed) + addedLength(inserted);
+        }
+
+        /**
+         * Returns the byte count of the pieces.
+         */
+        static long length(List<Piece> pieces) {
+            long res = 0;
+            for (Piece p : pieces) {
+                res += p.length;
+            }
+            return res;
+        }
+
+        /**
+         * Returns the byte count of the pieces stored in the add
+         * buffer.
+         */
+        private static long addedLength(List<Piece> pieces) {
+            long res = 0;
+            for (Piece p : pieces) {
+                if (p.source == Source.ADD) {
+                    res += p.length;
+                }
+            }
+            return res;
+        }
+    }
+
+    /**
+     * The groups of edits that can be undone, the last one is the
+     * most recent.
+     */
+    private final ArrayDeque<List<Edit>> undoStack = new ArrayDeque<>();
+
+    /**
+     * The groups of edits that can be redone, the last one is the
+     * most recently undone.
+     */
+    private final ArrayDeque<List<Edit>> redoStack = new ArrayDeque<>();
+
+    /**
+     * The group collecting the edits of the current batch or null.
+     */
+    private List<Edit> group = null;
+
+    /**
+     * The memory budget.
+     */
+    private long memoryLimit;
+
+    /**
+     * The disk budget.
+     */
+    private long diskLimit;
+
+    /**
+     * The estimated memory size of all the kept edits.
+     */
+    private long memory = 0;
+
+    /**
+     * The count of the add buffer bytes the kept edits refer to.
+     */
+    private long disk = 0;
+
+    /**
+     * The count of the add buffer bytes the dropped edits referred to
+     * since it was taken last time.
+     */
+    private long droppedDisk = 0;
+
+    /**
+     * Constructs the journal with the default budgets.
+     */
+    public EditJournal() {
+        this(DEFAULT_MEMORY_LIMIT, DEFAULT_DISK_LIMIT);
+    }
+
+    /**
+     * Constructs the journal.
+     *
+     * @param memoryLimit the memory budget
+     * @param diskLimit   the disk budget
+     */
+    public EditJournal(long memoryLimit, long diskLimit) {
+        setLimits(memoryLimit, diskLimit);
+    }
+
+    /**
+     * Sets the budgets dropping the oldest entries if they are
+     * exceeded.
+     *
+     * @param memoryLimit the memory budget
+     * @param diskLimit   the disk budget
+     */
+    public void setLimits(long memoryLimit, long diskLimit) {
+        if (memoryLimit < 0 || diskLimit < 0) {
+            throw new IllegalArgumentException("Negative limit: "
+                    + memoryLimit + ", " + diskLimit);
+        }
+        this.memoryLimit = memoryLimit;
+        this.diskLimit = diskLimit;
+        trim();
+    }
+
+    /**
+     * Records the edit. The edits that were undone can not be redone
+     * after that.
+     *
+     * @param edit the applied edit
+     */
+    public void record(Edit edit) {
+        clear(redoStack);
+
+        if (group != null) {
+            group.add(edit);
+        } else {
+            undoStack.addLast(Collections.singletonList(edit));
+        }
+        memory += edit.memory();
+        disk += edit.disk();
+        trim();
+    }
+
+    /**
+     * Starts collecting the recorded edits in one group which is
+     * undone and redone at once.
+     */
+    public void beginGroup() {
+        group = new ArrayList<>();
+    }
+
+    /**
+     * Finishes the current group.
+     */
+    public void endGroup() {
+        if (group != null && !group.isEmpty()) {
+            undoStack.addLast(group);
+        }
+        group = null;
+    }
+
+    /**
+     * Drops the current group with its edits.
+     */
+    public void discardGroup() {
+        if (group != null) {
+            release(group);
+        }
+        group = null;
+    }
+
+    /**
+     * Returns true if there are edits to undo.
+     */
+    public boolean canUndo() {
+        return !undoStack.isEmpty();
+    }
+
+    /**
+     * Returns true if there are edits to redo.
+     */
+    public boolean canRedo() {
+        return !redoStack.isEmpty();
+    }
+
+    /**
+     * Moves the most recent group to the redo stack.
+     *
+     * @return the edits of the group in the order they were applied
+     * or null if there is nothing to undo
+     */
+    public List<Edit> undo() {
+        List<Edit> edits = undoStack.pollLast();
+        if (edits != null) {
+            redoStack.addLast(edits);
+        }
+        return edits;
+    }
+
+    /**
+     * Moves the most recently undone group back to the undo stack.
+     *
+     * @return the edits of the group in the order they were applied
+     * or null if there is nothing to redo
+     */
+    public List<Edit> redo() {
+        List<Edit> edits = redoStack.pollLast();
+        if (edits != null) {
+            undoStack.addLast(edits);
+        }
+        return edits;
+    }
+
+    /**
+     * Drops all the entries.
+     */
+    public void clear() {
+        undoStack.clear();
+        redoStack.clear();
+        group = null;
+        memory = 0;
+        disk = 0;
+        droppedDisk = 0;
+    }
+
+    /**
+     * Returns the count of the add buffer bytes the edits dropped
+     * since the previous call referred to and resets it. Some of the
+     * bytes can still be referenced by the document.
+     */
+    public long takeDroppedDisk() {
+        long res = droppedDisk;
+        droppedDisk = 0;
+        return res;
+    }
+
+    /**
+     * Passes every piece of the kept edits to the consumer.
+     *
+     * @param consumer the receiver of the pieces
+     */
+    public void forEachPiece(Consumer<Piece> consumer) {
+        for (List<Edit> edits : undoStack) {
+            forEachPiece(edits, consumer);
+        }
+        for (List<Edit> edits : redoStack) {
+            forEachPiece(edits, consumer);
+        }
+        if (group != null) {
+            forEachPiece(group, consumer);
+        }
+    }
+
+    /**
+     * Passes every piece of the edits to the consumer.
+     *
+     * @param edits    the edits
+     * @param consumer the receiver of the pieces
+     */
+    private static void forEachPiece(List<Edit> edits,
+                                     Consumer<Piece> consumer) {
+        for (Edit edit : edits) {
+            edit.removed.forEach(consumer);
+            edit.inserted.forEach(consumer);
+        }
+    }
+
+    /**
+     * Replaces every piece of the kept edits with the mapped one. It
+     * is used when the bytes the pieces refer to are moved.
+     *
+     * @param mapping the piece describing the same bytes at their new
+     *                place
+     */
+    public void remap(UnaryOperator<Piece> mapping) {
+        remap(undoStack, mapping);
+        remap(redoStack, mapping);
+        if (group != null) {
+            group = remap(group, mapping);
+        }
+    }
+
+    /**
+     * Replaces every piece of the groups of the stack with the mapped
+     * one.
+     *
+     * @param stack   the undo or the redo stack
+     * @param mapping the piece describing the same bytes at their new
+     *                place
+     */
+    private static void remap(ArrayDeque<List<Edit>> stack,
+                              UnaryOperator<Piece> mapping) {
+        List<List<Edit>> groups = new ArrayList<>(stack);
+        stack.clear();
+        for (List<Edit> edits : groups) {
+            stack.addLast(remap(edits, mapping));
+        }
+    }
+
+    /**
+     * Returns the edits with the mapped pieces.
+     *
+     * @param edits   the edits
+     * @param mapping the piece describing the same bytes at their new
+     *                place
+     */
+    private static List<Edit> remap(List<Edit> edits,
+                                    UnaryOperator<Piece> mapping) {
+        List<Edit> res = new ArrayList<>(edits.size());
+        for (Edit edit : edits) {
+            res.add(new Edit(edit.offset, remapPieces(edit.removed, mapping),
+                    remapPieces(edit.inserted, mapping)));
+        }
+        return res;
+    }
+
+    /**
+     * Returns the mapped pieces.
+     *
+     * @param pieces  the pieces
+     * @param mapping the piece describing the same bytes at their new
+     *                place
+     */
+    private static List<Piece> remapPieces(List<Piece> pieces,
+                                           UnaryOperator<Piece> mapping) {
+        List<Piece> res = new ArrayList<>(pieces.size());
+        for (Piece piece : pieces) {
+            res.add(mapping.apply(piece));
+        }
+        return res;
+    }
+
+    /**
+     * Returns the estimated memory size of the kept edits.
+     */
+    public long getMemory() {
+        return memory;
+    }
+
+    /**
+     * Returns the count of the add buffer bytes the kept edits refer
+     * to.
+     */
+    public long getDisk() {
+        return disk;
+    }
+
+    /**
+     * Drops the oldest entries while the budgets are exceeded. The
+     * edits of the current group are never dropped.
+     */
+    private void trim() {
+        while ((memory > memoryLimit || disk > diskLimit)
+                && !undoStack.isEmpty()) {
+            release(undoStack.pollFirst());
+        }
+        while ((memory > memoryLimit || disk > diskLimit)
+                && !redoStack.isEmpty()) {
+            release(redoStack.pollFirst());
+        }
+    }
+
+    /**
+     * Drops all the groups of the stack.
+     *
+     * @param stack the undo or the redo stack
+     */
+    private void clear(ArrayDeque<List<Edit>> stack) {
+        for (List<Edit> edits : stack) {
+            release(edits);
+        }
+        stack.clear();
+    }
+
+    /**
+     * Subtracts the sizes of the dropped edits.
+     *
+     * @param edits the dropped edits
+     */
+    private void release(List<Edit> edits) {
+        for (Edit edit : edits) {
+            memory -= edit.memory();
+            disk -= edit.disk();
+            droppedDisk += edit.disk();
+        }
+    }
+}
@@ -0,0 +1,256 @@
+package editor.impl;
+
+import editor.impl.PieceTable.Piece;
+import editor.impl.search.ByteSource;
+import editor.impl.search.NGramIndex;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * The state of one opened file: the channel of the source file and its
+ * mapped windows, the add buffer, the piece table which tracks the
+ * document length in memory and the optional gram index of the source
+ * file which is dropped when the source file is rewritten. The
+ * channels are opened once and are kept until the session is closed.
+ */
+public class FileSession implements Closeable {
+
+    /**
+     * The Path associated with the source file.
+     */
+    private final Path sourcePath;
+
+    /**
+     * The description of the edited file contents.
+     */
+    private final PieceTable pieceTable;
+
+    /**
+     * The storage of the added bytes.
+     */
+    private final AddBuffer addBuffer;
+
+    /**
+     * The counters of the saved I/O work.
+     */
+    private final SessionStatistics statistics = new SessionStatistics();
+
+    /**
+     * The read-only channel of the source file.
+     */
+    private FileChannel sourceChannel;
+
+    /**
+     * The mapped windows of the source file.
+     */
+    private MappedWindowCache sourceWindows;
+
+    /**
+     * The size of the source file.
+     */
+    private long sourceSize;
+
+    /**
+     * The gram index of the source file or null.
+     */
+    private volatile NGramIndex index = null;
+
+    /**
+     * Opens the session for the specified file.
+     *
+     * @param sourcePath the absolute path of the file
+     * @throws IOException if the file can not be opened
+     */
+    public FileSession(Path sourcePath) throws IOException {
+        this.sourcePath = sourcePath;
+        this.addBuffer = new AddBuffer(statistics);
+        this.pieceTable = new PieceTable(openSource());
+    }
+
+    /**
+     * Returns the Path associated with the source file.
+     */
+    public Path getSourcePath() {
+        return sourcePath;
+    }
+
+    /**
+     * Returns the description of the edited file contents.
+     */
+    public PieceTable getPieceTable() {
+        return pieceTable;
+    }
+
+    /**
+     * Returns the storage of the added bytes.
+     */
+    public AddBuffer getAddBuffer() {
+        return addBuffer;
+    }
+
+    /**
+     * Returns the counters of the saved I/O work.
+     */
+    public SessionStatistics getStatistics() {
+        return statistics;
+    }
+
+    /**
+     * Returns the document length without accessing the file system.
+     *
+     * @return the byte count of the document
+     */
+    public long length() {
+        statistics.sizeQueried();
+        return pieceTable.length();
+    }
+
+    /**
+     * Returns the read-only channel of the source file.
+     */
+    public FileChannel getSourceChannel() {
+        statistics.channelReused();
+        return sourceChannel;
+    }
+
+    /**
+     * Reads the bytes of the piece. It can be called from several
+     * threads while the document is not edited.
+     *
+     * @param piece     the piece to read
+     * @param dst       the array to read the bytes into
+     * @param dstOffset the index in the array of the first byte
+     * @throws IOException if an I/O error occurs
+     */
+    public void read(Piece piece, byte[] dst, int dstOffset)
+            throws IOException {
+        int count = (int) piece.length;
+
+        switch (piece.source) {
+            case ORIGINAL:
+                sourceWindows.read(piece.start, dst, dstOffset, count);
+                break;
+            case ADD:
+                addBuffer.read(piece.start, dst, dstOffset, count);
+                break;
+            case ZEROS:
+                Arrays.fill(dst, dstOffset, dstOffset + count, (byte) 0);
+                break;
+        }
+    }
+
+    /**
+     * Returns the bytes of the source file. They do not change until
+     * the file is saved, whatever edits are made.
+     *
+     * @return the source of the original bytes
+     */
+    public ByteSource getSourceBytes() {
+        MappedWindowCache windows = sourceWindows;
+        long size = sourceSize;
+        return new ByteSource() {
+            @Override
+            public long length() {
+                return size;
+            }
+
+            @Override
+            public int read(long offset, byte[] dst, int dstOffset,
+                            int count) throws IOException {
+                if (offset < 0 || offset >= size || count <= 0) {
+                    return 0;
+                }
+                count = (int) Math.min(count, size - offset);
+                windows.read(offset, dst, dstOffset, count);
+                return count;
+            }
+        };
+    }
+
+    /**
+     * Returns the gram index of the source file.
+     *
+     * @return the index or null if it was not built
+     */
+    public NGramIndex getIndex() {
+        return index;
+    }
+
+    /**
+     * Sets the gram index of the source file closing the previous one.
+     *
+     * @param index the index built from the current source file or
+     *              null to drop it
+     * @throws IOException if an I/O error occurs
+     */
+    public void setIndex(NGramIndex index) throws IOException {
+        NGramIndex previous = this.index;
+        this.index = index;
+        if (previous != null) {
+            previous.close();
+        }
+    }
+
+    /**
+     * Opens a new channel of the source file for reading and writing.
+     * The caller must close it and call {@link #reloadSource()} after
+     * the source file was rewritten.
+     *
+     * @return the opened channel
+     * @throws IOException if an I/O error occurs
+     */
+    public FileChannel openWritableSource() throws IOException {
+        return FileChannel.open(sourcePath, READ, WRITE);
+    }
+
+    /**
+     * Opens the source file again after it was rewritten with the
+     * edited data. The edits are dropped, since the source file
+     * contains them.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    public void reloadSource() throws IOException {
+        setIndex(null);
+        sourceWindows.invalidate();
+        sourceChannel.close();
+        pieceTable.reset(openSource());
+        addBuffer.clear();
+    }
+
+    /**
+     * Opens the channel and the mapped windows of the source file.
+     *
+     * @return the source file size
+     * @throws IOException if an I/O error occurs
+     */
+    private long openSource() throws IOException {
+        sourceChannel = FileChannel.open(sourcePath, READ);
+        sourceSize = sourceChannel.size();
+        sourceWindows = new MappedWindowCache(
+                sourceChannel, sourceSize, statistics);
+        return sourceSize;
+    }
+
+    /**
+     * Closes the channels and deletes the added bytes.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            setIndex(null);
+            addBuffer.clear();
+        } finally {
+            sourceChannel.close();
+        }
+    }
+}
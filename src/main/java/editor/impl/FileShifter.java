@@ -0,0 +1,139 @@
+package editor.impl;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.function.LongConsumer;
+
+/**
+ * The engine that moves a block of bytes inside the same file without
+ * any scratch file. The block is copied by chunks through one reused
+ * direct buffer: starting from its end when it is moved towards large
+ * addresses and starting from its beginning otherwise, so the source
+ * bytes are never overwritten before they are read.
+ */
+public class FileShifter {
+
+    /**
+     * The default size of the chunk buffer.
+     */
+    public static final int DEFAULT_BUFFER_SIZE = 1024 * 1024;
+
+    /**
+     * The reused chunk buffer.
+     */
+    private final ByteBuffer buffer;
+
+    /**
+     * The count of the bytes moved by this shifter.
+     */
+    private long movedBytes = 0;
+
+    /**
+     * Constructs the shifter with the default buffer size.
+     */
+    public FileShifter() {
+        this(DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Constructs the shifter.
+     *
+     * @param bufferSize the size of the chunk buffer
+     */
+    public FileShifter(int bufferSize) {
+        buffer = ByteBuffer.allocateDirect(bufferSize);
+    }
+
+    /**
+     * Moves the block of bytes to the new position. The ranges may
+     * overlap.
+     *
+     * @param channel the channel of the file opened for reading and
+     *                writing
+     * @param from    the current position of the block
+     * @param to      the new position of the block
+     * @param count   the byte count of the block
+     * @throws IOException if an I/O error occurs
+     */
+    public void move(FileChannel channel, long from, long to, long count)
+            throws IOException {
+        move(channel, from, to, count, n -> { });
+    }
+
+    /**
+     * Moves the block of bytes to the new position reporting every
+     * copied chunk. The ranges may overlap.
+     *
+     * @param channel  the channel of the file opened for reading and
+     *                 writing
+     * @param from     the current position of the block
+     * @param to       the new position of the block
+     * @param count    the byte count of the block
+     * @param progress the receiver of the byte count of every copied
+     *                 chunk
+     * @throws IOException if an I/O error occurs
+     */
+    public void move(FileChannel channel, long from, long to, long count,
+                     LongConsumer progress) throws IOException {
+        if (from < 0 || to < 0 || count < 0) {
+            throw new IllegalArgumentException("Negative position or count: "
+                    + from + ", " + to + ", " + count);
+        }
+        if (from == to || count == 0) {
+            return;
+        }
+
+        if (to > from) {
+            // Towards large addresses: copy the last chunk first
+            for (long done = 0; done < count; ) {
+                int n = (int) Math.min(buffer.capacity(), count - done);
+                done += n;
+                copyChunk(channel, from + count - done, to + count - done, n);
+                progress.accept(n);
+            }
+        } else {
+            for (long done = 0; done < count; ) {
+                int n = (int) Math.min(buffer.capacity(), count - done);
+                copyChunk(channel, from + done, to + done, n);
+                done += n;
+                progress.accept(n);
+            }
+        }
+        movedBytes += count;
+    }
+
+    /**
+     * Returns the count of the bytes moved by this shifter.
+     *
+     * @return the moved byte count
+     */
+    public long getMovedBytes() {
+        return movedBytes;
+    }
+
+    /**
+     * Copies one chunk through the buffer.
+     *
+     * @param channel the channel of the file
+     * @param from    the position to read the chunk
+     * @param to      the position to write the chunk
+     * @param count   the chunk size which is not bigger than the buffer
+     * @throws IOException if an I/O error occurs
+     */
+    private void copyChunk(FileChannel channel, long from, long to, int count)
+            throws IOException {
+        buffer.clear();
+        buffer.limit(count);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, from + buffer.position()) == -1) {
+                throw new IOException("Unexpected end of the file");
+            }
+        }
+
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer, to + buffer.position());
+        }
+    }
+}
@@ -1,62 +1,168 @@
 package editor.impl;
 
+import editor.BytePattern;
+import editor.ContentListener;
+import editor.ContentSnapshot;
 import editor.HexEditor;
-import org.apache.commons.lang3.ArrayUtils;
+import editor.MatchConsumer;
+import editor.ProgressMonitor;
+import editor.impl.PieceTable.Piece;
+import editor.impl.PieceTable.Source;
+import editor.impl.search.AhoCorasick;
+import editor.impl.search.BlockSearch;
+import editor.impl.search.ByteRegex;
+import editor.impl.search.ByteSource;
+import editor.impl.search.HorspoolMatcher;
+import editor.impl.search.MatchIterator;
+import editor.impl.search.MonitoredSource;
+import editor.impl.search.NGramIndex;
+import editor.impl.search.ParallelSearch;
+import editor.impl.search.PatternMatcher;
+import editor.impl.search.RegexSearch;
+import editor.impl.search.ShiftAndMatcher;
 
 import java.io.IOException;
-import java.io.RandomAccessFile;
 import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.InvalidPathException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+import java.util.function.UnaryOperator;
+import java.util.stream.LongStream;
+import java.util.stream.StreamSupport;
 
-import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
 import static java.nio.file.StandardOpenOption.READ;
 import static java.nio.file.StandardOpenOption.WRITE;
 
 
 /**
- * The class that provides work with a file in binary format.
+ * The class that provides work with a file in binary format. The
+ * opened file is never changed until it is saved: the edits are
+ * described by the {@code PieceTable} which pieces refer to the
+ * source file and to the {@code AddBuffer} with the added bytes.
  */
 public class HexEditorImpl implements HexEditor {
 
     /**
-     * The Path associated with the current opened file.
+     * The size of the buffer used to write the zero pieces.
      */
-    private Path sourceFilePath = null;
+    private static final int ZERO_BUFFER_SIZE = 64 * 1024;
 
     /**
-     * The Path associated with the copy of the current opened file.
+     * The size of the searched range starting from which the file is
+     * searched in parallel.
      */
-    private Path tempFilePath = null;
+    private static final long PARALLEL_SEARCH_THRESHOLD = 64L * 1024 * 1024;
+
+    /**
+     * The count of the unreferenced bytes of the add buffer starting
+     * from which it is compacted if they are at least half of it.
+     */
+    private static final long COMPACT_THRESHOLD = 1024 * 1024;
+
+    /**
+     * The state of the current opened file.
+     */
+    private FileSession session = null;
+
+    /**
+     * The pieces of the document at the moment the current batch was
+     * started or null if there is no batch.
+     */
+    private List<Piece> batchSnapshot = null;
+
+    /**
+     * The undo/redo journal of the current opened file.
+     */
+    private final EditJournal journal = new EditJournal();
+
+    /**
+     * The count of the add buffer bytes which the dropped journal
+     * entries referred to since the buffer was compacted. Some of them
+     * can still be referenced by the document, so it is the upper
+     * bound of the unreferenced bytes.
+     */
+    private long dropped = 0;
+
+    /**
+     * Whether the big files are searched in parallel.
+     */
+    private boolean parallelSearch = true;
+
+    /**
+     * Whether the saves which shift the file data replace the file
+     * atomically.
+     */
+    private boolean atomicSave = true;
+
+    /**
+     * The lock which keeps the reads away from the source file while
+     * it is rewritten in place or reopened by a save running on
+     * another thread.
+     */
+    private final Object sourceLock = new Object();
+
+    /**
+     * The count of the source file replacements, the snapshots taken
+     * before a replacement are stale.
+     */
+    private volatile long sourceVersion = 0;
+
+    /**
+     * The snapshot of the current contents or null if it is not taken
+     * since the last edit. The save takes it before it replaces the
+     * pieces, so the snapshots are given to other threads without
+     * access to the piece table.
+     */
+    private volatile SourceSnapshot published = null;
+
+    /**
+     * The receivers of the changes of the contents.
+     */
+    private final List<ContentListener> listeners =
+            new CopyOnWriteArrayList<>();
 
 
     /**
-     * Opens the file at the specified path.
+     * Opens the file at the specified path. The file data is not
+     * copied, so the opening time does not depend on the file size.
      *
      * @param path string file path
      * @return true if the file was opened and false otherwise
      */
     public boolean openFile(String path) {
-        if (sourceFilePath != null) {
+        if (session != null) {
             return false;
         }
 
+        Path filePath;
         try {
-            sourceFilePath = Paths.get(path);
-            if (!sourceFilePath.isAbsolute())
-                sourceFilePath = sourceFilePath.toAbsolutePath();
+            filePath = Paths.get(path);
+            if (!filePath.isAbsolute())
+                filePath = filePath.toAbsolutePath();
         } catch (InvalidPathException e) {
             e.printStackTrace();
             return false;
         }
 
+        if (!Files.isRegularFile(filePath)) {
+            return false;
+        }
+
         try {
-            tempFilePath = Files.createTempFile("~", ".tmp");
-            Files.copy(sourceFilePath, tempFilePath, REPLACE_EXISTING);
-            tempFilePath.toFile().deleteOnExit();
+            session = new FileSession(filePath);
         } catch (IOException e) {
             e.printStackTrace();
             return false;
@@ -65,43 +171,142 @@ public class HexEditorImpl implements HexEditor {
     }
 
     /**
-     * Sets paths to null and deletes the temporary file.
+     * Closes the file session and deletes the added bytes.
      *
      * @return true if the operation was successful and false
      * otherwise
      */
     public boolean closeFile() {
-        if (sourceFilePath == null)
+        if (session == null)
             return false;
 
-        tempFilePath.toFile().delete();
-        sourceFilePath = null;
-        tempFilePath = null;
+        // The snapshots being read finish before the file is closed
+        synchronized (sourceLock) {
+            sourceVersion++;
+            try {
+                session.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        published = null;
+        session = null;
+        batchSnapshot = null;
+        clearJournal();
         return true;
     }
 
     /**
-     * Copies the temporary file data to the current opened file.
+     * Sets the memory and the disk budgets of the undo/redo journal.
+     * When any of them is exceeded the oldest entries are dropped, and
+     * the add buffer is compacted when the bytes only they referred to
+     * are at least half of it.
+     *
+     * @param memoryLimit the memory for the edit descriptors in bytes
+     * @param diskLimit   the count of the added bytes the journal
+     *                    keeps referenced
+     */
+    public void setJournalLimits(long memoryLimit, long diskLimit) {
+        journal.setLimits(memoryLimit, diskLimit);
+    }
+
+    /**
+     * Returns the counters of the I/O work saved by the session of
+     * the current opened file.
+     *
+     * @return the session counters or null if there is no open file
+     */
+    public SessionStatistics getStatistics() {
+        return session == null ? null : session.getStatistics();
+    }
+
+    /**
+     * Returns the size of the temporary file which stores the added
+     * bytes of the current opened file.
+     *
+     * @return the add buffer size or -1 if there is no open file
+     */
+    public long getAddBufferSize() {
+        return session == null ? -1 : session.getAddBuffer().size();
+    }
+
+    /**
+     * Writes the edited data to the current opened file. The source
+     * file is changed in place: the blocks of its data that were
+     * shifted by the edits are moved inside the file and the added
+     * bytes are written over them, the unchanged blocks are not
+     * touched at all. The file can not be saved while a batch is
+     * started, since the batch could not be rolled back after that.
      *
      * @return true if changes were successfully saved to the source
      * file
      */
     public boolean saveFile() {
+        return saveFile(null);
+    }
+
+    /**
+     * Writes the edited data to the current opened file reporting the
+     * count of the written bytes. Only the changed ranges are written
+     * in place if the source file blocks stay at their positions, so a
+     * crash can not lose the data which was not edited. If the edits
+     * shift the blocks, the file is written to a temporary file next
+     * to it which replaces it atomically, unless the atomic save is
+     * turned off: then the file is rewritten in place from the first
+     * changed range onwards.
+     *
+     * @param monitor the receiver of the progress or null
+     * @return true if changes were successfully saved to the source
+     * file
+     */
+    public boolean saveFile(ProgressMonitor monitor) {
+        if (session == null || batchSnapshot != null) {
+            return false;
+        }
+
         try {
-            Files.copy(tempFilePath, sourceFilePath, REPLACE_EXISTING);
+            save(monitor);
         } catch (IOException e) {
             e.printStackTrace();
             return false;
         }
+        // The journal refers to the pieces of the replaced data
+        clearJournal();
         return true;
     }
 
     /**
-     * Creates a new file with the temporary file data.
+     * Drops all the entries of the journal, since they refer to the
+     * source file data which is replaced.
+     */
+    private void clearJournal() {
+        journal.clear();
+        dropped = 0;
+    }
+
+    /**
+     * Creates a new file with the edited data.
      *
      * @return true if a new file was successfully created
      */
     public boolean saveAsNewFile(String filename) {
+        return saveAsNewFile(filename, null);
+    }
+
+    /**
+     * Creates a new file with the edited data reporting the count of
+     * the written bytes. The data is written to a temporary file next
+     * to the target which replaces the existing target atomically, so
+     * it is never left half-written.
+     *
+     * @param filename the path of the new file
+     * @param monitor  the receiver of the progress or null
+     * @return true if a new file was successfully created
+     */
+    public boolean saveAsNewFile(String filename, ProgressMonitor monitor) {
+        if (session == null)
+            return false;
+
         Path newFile;
         try {
             newFile = Paths.get(filename);
@@ -111,7 +316,11 @@ public class HexEditorImpl implements HexEditor {
         }
 
         try {
-            Files.copy(tempFilePath, newFile, REPLACE_EXISTING);
+            if (Files.exists(newFile)
+                    && Files.isSameFile(newFile, session.getSourcePath())) {
+                return saveFile(monitor);
+            }
+            writeTo(newFile, new SaveProgress(monitor, getFileSize()));
         } catch (IOException e) {
             e.printStackTrace();
             return false;
@@ -120,7 +329,8 @@ public class HexEditorImpl implements HexEditor {
     }
 
     /**
-     * Reads the specified number of bytes from the specified position
+     * Reads the specified number of bytes from the specified position.
+     * The source file bytes are copied from its mapped windows.
      *
      * @param offset the file position at which the reading is to
      *                 begin
@@ -129,35 +339,108 @@ public class HexEditorImpl implements HexEditor {
      * error
      */
     public byte[] read(long offset, int count) {
-        if (offset >= getFileSize() || count < 0)
+        long fileSize = getFileSize();
+
+        if (offset < 0 || offset >= fileSize || count < 0)
             return null;
 
-        if (offset + count > getFileSize())
-            count = (int)(getFileSize() - offset);
+        if (offset + count > fileSize)
+            count = (int)(fileSize - offset);
 
         byte[] readBytes = new byte[count];
 
-        try (FileChannel tempFileChannel = (FileChannel) Files.newByteChannel(
-                tempFilePath, READ)) {
-            ByteBuffer buffer = ByteBuffer.allocateDirect(1024 * 4);
+        try {
+            readInto(offset, readBytes, 0, count);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+        return readBytes;
+    }
+
+    /**
+     * Reads the bytes starting from the specified position into the
+     * given array.
+     *
+     * @param offset    the file position at which the reading is to
+     *                  begin
+     * @param dst       the array to read the bytes into
+     * @param dstOffset the index in the array of the first read byte
+     * @param count     the maximum read byte count
+     * @return the read byte count which is less than the
+     * <code>count</code> only at the end of the file
+     * @throws IOException if an I/O error occurs
+     */
+    private int readInto(long offset, byte[] dst, int dstOffset, int count)
+            throws IOException {
+        synchronized (sourceLock) {
+            int pos = dstOffset;
+            for (Piece piece : session.getPieceTable().pieces(offset, count)) {
+                session.read(piece, dst, pos);
+                pos += (int) piece.length;
+            }
+            return pos - dstOffset;
+        }
+    }
 
-            while (tempFileChannel.read(buffer, offset) != -1 && count > 0) {
-                if (count < buffer.limit())
-                    buffer.limit(count);
+    /**
+     * Takes the snapshot of the current file contents. The snapshot
+     * keeps its own piece list and reads the source file under the
+     * same lock as the saves, so it never sees a half rewritten file.
+     * The snapshot is shared until the next edit, so it is taken
+     * without waiting for a running save.
+     *
+     * @return the snapshot or null if there is no open file
+     */
+    public ContentSnapshot snapshot() {
+        if (session == null) {
+            return null;
+        }
+        SourceSnapshot res = published;
+        if (res == null) {
+            res = new SourceSnapshot(new DocumentSnapshot(session),
+                    sourceVersion);
+            published = res;
+        }
+        return res;
+    }
 
-                buffer.flip();
-                buffer.get(readBytes, readBytes.length - count, buffer.limit());
+    /**
+     * Adds the receiver of the changes of the contents.
+     *
+     * @param listener the receiver of the changes
+     */
+    public void addContentListener(ContentListener listener) {
+        listeners.add(listener);
+    }
 
-                count -= buffer.limit();
-                offset += buffer.limit();
+    /**
+     * Removes the receiver of the changes of the contents.
+     *
+     * @param listener the receiver of the changes
+     */
+    public void removeContentListener(ContentListener listener) {
+        listeners.remove(listener);
+    }
 
-                buffer.clear();
-            }
-        } catch (IOException | IllegalArgumentException e) {
-            e.printStackTrace();
-            return null;
+    /**
+     * Drops the snapshot of the previous contents and tells the
+     * receivers about the change of the contents. Nothing is told if
+     * no bytes were replaced.
+     *
+     * @param offset         the document position of the replaced range
+     * @param removedLength  the byte count of the replaced range
+     * @param insertedLength the byte count of the inserted bytes
+     */
+    private void fireContentChanged(long offset, long removedLength,
+                                    long insertedLength) {
+        published = null;
+        if (removedLength == 0 && insertedLength == 0) {
+            return;
+        }
+        for (ContentListener listener : listeners) {
+            listener.contentChanged(offset, removedLength, insertedLength);
         }
-        return readBytes;
     }
 
     /**
@@ -166,17 +449,10 @@ public class HexEditorImpl implements HexEditor {
      * @return the size of the open file or -1 if there is no such
      */
     public long getFileSize() {
-        if (sourceFilePath == null) {
-            return -1;
-        }
-
-        try (FileChannel tempFileChannel = (FileChannel) Files.newByteChannel(
-                tempFilePath, READ)) {
-            return tempFileChannel.size();
-        } catch (IOException e) {
-            e.printStackTrace();
+        if (session == null) {
             return -1;
         }
+        return session.length();
     }
 
     /**
@@ -188,12 +464,12 @@ public class HexEditorImpl implements HexEditor {
      * @return true if the operation was successful and false otherwise
      */
     public boolean insert(long position, byte... newBytes) {
-        try (FileChannel tempFileChannel = (FileChannel) Files.newByteChannel(
-                tempFilePath, WRITE)) {
-            ByteBuffer mBuf = ByteBuffer.wrap(newBytes);
-            mBuf.rewind();
-            tempFileChannel.write(mBuf, position);
-        } catch (IOException | IllegalArgumentException | NullPointerException e) {
+        if (position < 0 || session == null)
+            return false;
+
+        try {
+            apply(position, newBytes.length, store(newBytes));
+        } catch (IOException e) {
             e.printStackTrace();
             return false;
         }
@@ -201,7 +477,8 @@ public class HexEditorImpl implements HexEditor {
     }
 
     /**
-     * Replaces a block of bytes with zeros.
+     * Replaces a block of bytes with zeros. The zeros are not stored
+     * anywhere, so the operation does not depend on the block size.
      *
      * @param byteCount number of bytes to replace
      * @param position  the file position at which the replacement is
@@ -209,41 +486,431 @@ public class HexEditorImpl implements HexEditor {
      * @return true if the operation was successful and false otherwise
      */
     public boolean insertZeros(int byteCount, long position) {
-        byte[] zeros = new byte[byteCount];
-        return insert(position, zeros);
+        if (position < 0 || byteCount < 0 || session == null)
+            return false;
+
+        apply(position, byteCount, Collections.singletonList(
+                new Piece(Source.ZEROS, 0, byteCount)));
+        return true;
     }
 
     /**
-     * Finds some sequence of bytes specified by the exact value or by
-     * some mask.
+     * Finds some sequence of bytes specified by the exact value.
      *
      * @param offset the file position at which the searching is to
      *                 begin
      * @return match position or -1 if it was not found
      */
     public long find(long offset, byte... mask) {
-        byte[] readBytes;
-        final int BUFFER_SIZE = Math.max(mask.length * 2, 1024 * 1024);
-        int res = -1;
+        return find(offset, BytePattern.of(mask));
+    }
 
-        while ((readBytes = read(offset, BUFFER_SIZE)) != null) {
-            try {
-                res = ByteSequenceImpl.find(mask, readBytes);
-            } catch (NullPointerException e) {
-                e.printStackTrace();
-                return -1;
+    /**
+     * Finds some sequence of bytes specified by the pattern with
+     * masks. The file is read by blocks which are scanned in place by
+     * the {@code HorspoolMatcher} for the exact patterns and by the
+     * {@code ShiftAndMatcher} for the masked ones. The big files are
+     * split into segments which are scanned in parallel unless it is
+     * turned off.
+     *
+     * @param offset  the file position at which the searching is to
+     *                begin
+     * @param pattern the searched pattern
+     * @return match position or -1 if it was not found
+     */
+    public long find(long offset, BytePattern pattern) {
+        return find(offset, pattern, null);
+    }
+
+    /**
+     * Finds some sequence of bytes specified by the pattern reporting
+     * the read bytes to the monitor. The monitor is checked before
+     * every read block, so the cancelled search stops quickly.
+     *
+     * @param offset  the file position at which the searching is to
+     *                begin
+     * @param pattern the searched pattern
+     * @param monitor the receiver of the progress or null
+     * @return match position or -1 if it was not found or the search
+     * was cancelled
+     */
+    public long find(long offset, BytePattern pattern,
+                     ProgressMonitor monitor) {
+        long fileSize = getFileSize();
+        if (offset < 0 || offset >= fileSize)
+            return -1;
+
+        PatternMatcher matcher = matcherOf(pattern);
+        DocumentSnapshot snapshot = new DocumentSnapshot(session);
+        ByteSource source = snapshot;
+        if (monitor != null) {
+            source = new MonitoredSource(source, monitor, fileSize - offset);
+        }
+
+        try {
+            NGramIndex index = session.getIndex();
+            int[] blocks = index == null ? null
+                    : index.candidateBlocks(pattern);
+            if (blocks != null) {
+                return findInRanges(snapshot, candidateRanges(snapshot,
+                        offset, fileSize, pattern.length(), blocks,
+                        index.getBlockSize()), matcher, monitor, false);
             }
-            if (res != -1)
-                return offset + res;
-            // The mask length is subtracted to consider the case
-            // when the required sequence is divided between two
-            // buffers
-            offset += BUFFER_SIZE - mask.length;
+            if (parallelSearch
+                    && fileSize - offset >= PARALLEL_SEARCH_THRESHOLD) {
+                return new ParallelSearch().find(source, offset, matcher);
+            }
+            return BlockSearch.find(source, offset, fileSize, matcher,
+                    () -> Long.MAX_VALUE);
+        } catch (CancellationException e) {
+            return -1;
+        } catch (IOException e) {
+            e.printStackTrace();
+            return -1;
+        }
+    }
+
+    /**
+     * Finds the last match of the pattern which starts before the
+     * specified position.
+     *
+     * @param offset  the file position before which the match starts
+     * @param pattern the searched pattern
+     * @return match position or -1 if it was not found
+     */
+    public long findPrevious(long offset, BytePattern pattern) {
+        return findPrevious(offset, pattern, null);
+    }
+
+    /**
+     * Finds the last match of the pattern which starts before the
+     * specified position. The file is read by blocks from the
+     * position towards the beginning and every block is scanned
+     * backwards by the matcher. The candidate blocks of the search
+     * index are used the same way as by the forward search.
+     *
+     * @param offset  the file position before which the match starts
+     * @param pattern the searched pattern
+     * @param monitor the receiver of the progress or null
+     * @return match position or -1 if it was not found or the search
+     * was cancelled
+     */
+    public long findPrevious(long offset, BytePattern pattern,
+                             ProgressMonitor monitor) {
+        long fileSize = getFileSize();
+        offset = Math.min(offset, fileSize);
+        if (offset <= 0 || pattern.length() == 0)
+            return -1;
+
+        PatternMatcher matcher = matcherOf(pattern);
+        DocumentSnapshot snapshot = new DocumentSnapshot(session);
+
+        try {
+            NGramIndex index = session.getIndex();
+            int[] blocks = index == null ? null
+                    : index.candidateBlocks(pattern);
+            List<long[]> ranges = blocks == null
+                    ? Collections.singletonList(new long[]{0, offset})
+                    : candidateRanges(snapshot, 0, offset, pattern.length(),
+                    blocks, index.getBlockSize());
+            return findInRanges(snapshot, ranges, matcher, monitor, true);
+        } catch (CancellationException e) {
+            return -1;
+        } catch (IOException e) {
+            e.printStackTrace();
+            return -1;
         }
+    }
+
+    /**
+     * Finds all the matches of the exact sequence of bytes.
+     *
+     * @param offset the file position at which the searching is to
+     *               begin
+     * @param limit  the maximum count of the found matches
+     * @param mask   the searched bytes
+     * @return the match positions in increasing order
+     */
+    public LongStream findAll(long offset, long limit, byte... mask) {
+        return findAll(offset, limit, BytePattern.of(mask));
+    }
 
+    /**
+     * Finds all the matches of the pattern with masks. The file is
+     * read by blocks into one buffer as the stream is consumed.
+     *
+     * @param offset  the file position at which the searching is to
+     *                begin
+     * @param limit   the maximum count of the found matches
+     * @param pattern the searched pattern
+     * @return the match positions in increasing order
+     */
+    public LongStream findAll(long offset, long limit, BytePattern pattern) {
+        if (session == null || pattern.length() == 0 || limit <= 0
+                || offset < 0 || offset >= getFileSize())
+            return LongStream.empty();
+
+        MatchIterator matches = new MatchIterator(
+                new DocumentSnapshot(session), offset,
+                matcherOf(pattern), limit);
+        return StreamSupport.longStream(Spliterators.spliteratorUnknownSize(
+                matches, Spliterator.ORDERED | Spliterator.DISTINCT
+                        | Spliterator.SORTED | Spliterator.NONNULL), false);
+    }
+
+    /**
+     * Finds the first match of the regular expression over bytes. The
+     * file is read by blocks and scanned by the lazily built
+     * deterministic automaton, so the time is linear in the scanned
+     * length.
+     *
+     * @param offset the file position at which the searching is to
+     *               begin
+     * @param regex  the expression
+     * @return match position or -1 if it was not found
+     * @throws IllegalArgumentException if the expression is not valid
+     */
+    public long findRegex(long offset, String regex) {
+        RegexSearch search = new RegexSearch(new ByteRegex(regex));
+        if (offset < 0 || offset >= getFileSize())
+            return -1;
+
+        try {
+            return search.find(new DocumentSnapshot(session), offset);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return -1;
+        }
+    }
+
+    /**
+     * Finds all the occurrences of several sequences of bytes. The
+     * patterns are compiled into one Aho-Corasick automaton, so the
+     * file is read once and the cost of every byte does not depend on
+     * the number of the patterns.
+     *
+     * @param offset   the file position at which the searching is to
+     *                 begin
+     * @param patterns the non-empty searched sequences
+     * @param consumer the receiver of the matches
+     * @return the count of the reported matches or -1 if an error
+     * occurred
+     */
+    public long findAll(long offset, List<byte[]> patterns,
+                        MatchConsumer consumer) {
+        AhoCorasick automaton = new AhoCorasick(patterns);
+        if (session == null)
+            return -1;
+        if (offset < 0 || offset >= getFileSize() || patterns.isEmpty())
+            return 0;
+
+        try {
+            return automaton.scan(
+                    new DocumentSnapshot(session), offset, consumer);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return -1;
+        }
+    }
+
+    /**
+     * Finds the first or the last match which starts in one of the
+     * ranges.
+     *
+     * @param snapshot the searched document
+     * @param ranges   the sorted disjoint ranges of the match starts
+     * @param matcher  the matcher of the searched pattern
+     * @param monitor  the receiver of the progress or null
+     * @param backward true - to find the last match, false - to find
+     *                 the first one
+     * @return match position or -1 if it was not found
+     * @throws IOException if an I/O error occurs
+     */
+    private static long findInRanges(DocumentSnapshot snapshot,
+                                     List<long[]> ranges,
+                                     PatternMatcher matcher,
+                                     ProgressMonitor monitor,
+                                     boolean backward)
+            throws IOException {
+        ByteSource source = snapshot;
+        if (monitor != null) {
+            long total = 0;
+            for (long[] range : ranges) {
+                total += range[1] - range[0];
+            }
+            source = new MonitoredSource(source, monitor, total);
+        }
+
+        byte[] buffer = new byte[Math.max(matcher.length() * 2,
+                BlockSearch.BLOCK_SIZE)];
+        for (int i = 0; i < ranges.size(); i++) {
+            long[] range = ranges.get(backward ? ranges.size() - 1 - i : i);
+            long res = backward
+                    ? BlockSearch.findLast(source, range[0], range[1],
+                    matcher, buffer)
+                    : BlockSearch.find(source, range[0], range[1], matcher,
+                    () -> Long.MAX_VALUE, buffer);
+            if (res != -1) {
+                return res;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the ranges of the document in which a match can start.
+     * The original pieces contribute the parts of the candidate blocks
+     * of the index, the added and the zero pieces are taken whole and
+     * a match crossing a piece border starts just before it.
+     *
+     * @param snapshot  the searched document
+     * @param from      the position of the first possible match
+     * @param to        the position after the last possible match
+     * @param length    the pattern length
+     * @param blocks    the sorted candidate blocks of the source file
+     * @param blockSize the size of the indexed block
+     * @return the sorted disjoint ranges as the pairs of the first
+     * position and the position after the last one
+     */
+    private static List<long[]> candidateRanges(DocumentSnapshot snapshot,
+                                                long from, long to,
+                                                int length,
+                                                int[] blocks,
+                                                int blockSize) {
+        List<long[]> ranges = new ArrayList<>();
+        for (int i = 0; i < snapshot.pieceCount(); i++) {
+            Piece piece = snapshot.piece(i);
+            long pieceOffset = snapshot.pieceOffset(i);
+            long pieceEnd = pieceOffset + piece.length;
+            if (pieceOffset >= to) {
+                break;
+            }
+            if (pieceEnd <= from) {
+                continue;
+            }
+
+            if (piece.source == Source.ORIGINAL) {
+                long sourceEnd = piece.start + piece.length;
+                int k = Arrays.binarySearch(blocks,
+                        (int) (piece.start / blockSize));
+                for (k = k < 0 ? -k - 1 : k; k < blocks.length
+                        && (long) blocks[k] * blockSize < sourceEnd; k++) {
+                    long start = Math.max((long) blocks[k] * blockSize,
+                            piece.start);
+                    long end = Math.min((long) (blocks[k] + 1) * blockSize,
+                            sourceEnd);
+                    ranges.add(new long[]{pieceOffset + start - piece.start,
+                            pieceOffset + end - piece.start});
+                }
+            } else {
+                ranges.add(new long[]{pieceOffset, pieceEnd});
+            }
+            ranges.add(new long[]{pieceEnd - length + 1, pieceEnd});
+        }
+
+        ranges.sort(Comparator.comparingLong(range -> range[0]));
+        List<long[]> res = new ArrayList<>();
+        for (long[] range : ranges) {
+            long start = Math.max(range[0], from);
+            long end = Math.min(range[1], to);
+            if (start >= end) {
+                continue;
+            }
+            long[] last = res.isEmpty() ? null : res.get(res.size() - 1);
+            if (last != null && start <= last[1]) {
+                last[1] = Math.max(last[1], end);
+            } else {
+                res.add(new long[]{start, end});
+            }
+        }
         return res;
     }
 
+    /**
+     * Builds the index of the 4-byte sequences of the source file. The
+     * source file does not change until it is saved, so the index
+     * stays valid whatever edits are made.
+     *
+     * @param monitor the receiver of the progress or null
+     * @return true - if the index was built, false - if the building
+     * was cancelled or failed
+     */
+    public boolean buildIndex(ProgressMonitor monitor) {
+        FileSession current = session;
+        if (current == null)
+            return false;
+
+        try {
+            current.setIndex(NGramIndex.build(
+                    current.getSourceBytes(), monitor));
+            return true;
+        } catch (CancellationException e) {
+            return false;
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    /**
+     * Returns true if the opened file has the search index.
+     */
+    public boolean hasIndex() {
+        return session != null && session.getIndex() != null;
+    }
+
+    /**
+     * Drops the search index.
+     */
+    public void dropIndex() {
+        if (session == null)
+            return;
+
+        try {
+            session.setIndex(null);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Returns the fastest matcher of the pattern: the skipping one
+     * if all the bytes are exact and the bit-parallel one otherwise.
+     *
+     * @param pattern the searched pattern
+     * @return the matcher
+     */
+    private static PatternMatcher matcherOf(BytePattern pattern) {
+        if (pattern.isExact()) {
+            return new HorspoolMatcher(pattern.getValues());
+        }
+        return new ShiftAndMatcher(pattern);
+    }
+
+    /**
+     * Sets whether the saves which shift the file data replace the
+     * file atomically.
+     *
+     * @param enabled true - to write the whole file to a temporary
+     *                file renamed over it, false - to move the data
+     *                inside the file which writes less but can lose
+     *                it if the save is interrupted
+     */
+    public void setAtomicSave(boolean enabled) {
+        atomicSave = enabled;
+    }
+
+    /**
+     * Sets whether the big files are searched in parallel.
+     *
+     * @param enabled true - to split the file into segments scanned
+     *                by several threads, false - to scan it on the
+     *                calling thread
+     */
+    public void setParallelSearch(boolean enabled) {
+        parallelSearch = enabled;
+    }
+
     /**
      * Inserts bytes to the offset position without replacement. The
      * data after the inserted block is shifted towards large
@@ -257,54 +924,14 @@ public class HexEditorImpl implements HexEditor {
      * @return true if the operation was successful and false otherwise
      */
     public boolean add(long offset, byte... addedBytes) {
-        Path path = Paths.get("~temp");
-
-        try (RandomAccessFile r = new RandomAccessFile(
-                tempFilePath.toFile(), "rw");
-             RandomAccessFile rTemp = new RandomAccessFile(
-                     path.toFile(), "rw")) {
-
-            try (FileChannel sourceChannel = r.getChannel();
-                 FileChannel targetChannel = rTemp.getChannel()) {
-
-                long fileSize = r.length();
-                long newOffset;
-
-                try {
-                    sourceChannel.transferTo(offset, (fileSize - offset),
-                            targetChannel);
-                }
-                catch (IllegalArgumentException e) {
-                    if (offset < 0) {
-                        return false;
-                    }
-
-                    // If the insert offset is bigger than file size
-                    // fill (offset - fileSize) positions with zeros.
-                    int zeroCount = (int) (offset - fileSize);
-                    addedBytes = ArrayUtils.addAll(new byte[zeroCount], addedBytes);
-                    offset = fileSize;
-                }
-
-                sourceChannel.truncate(offset);
-
-                r.seek(offset);
-                r.write(addedBytes);
-
-                newOffset = r.getFilePointer();
-                targetChannel.position(0L);
-                sourceChannel.transferFrom(targetChannel, newOffset,
-                        (fileSize - offset));
-            } catch (IllegalArgumentException | NullPointerException e) {
-                e.printStackTrace();
-                return false;
-            }
+        if (offset < 0 || session == null)
+            return false;
 
+        try {
+            apply(offset, 0, store(addedBytes));
         } catch (IOException e) {
             e.printStackTrace();
             return false;
-        } finally {
-            path.toFile().delete();
         }
         return true;
     }
@@ -320,43 +947,643 @@ public class HexEditorImpl implements HexEditor {
      * @return true if the operation was successful and false otherwise
      */
     public boolean delete(long offset, long count) {
-        Path path = Paths.get("~temp");
+        if (session == null)
+            return false;
+
+        long fileSize = session.length();
+
+        if (offset < 0 || count < 0 || offset > fileSize)
+            return false;
+
+        apply(offset, count, Collections.emptyList());
+        return true;
+    }
+
+    /**
+     * Starts a batch of edits. The edits only change the piece table,
+     * so the batch keeps a copy of the piece list to restore it on
+     * rollback. The file is written once when it is saved.
+     *
+     * @return true if the batch was started and false if there is no
+     * open file or a batch is already started
+     */
+    public boolean beginBatch() {
+        if (session == null || batchSnapshot != null)
+            return false;
+
+        batchSnapshot = session.getPieceTable().snapshot();
+        journal.beginGroup();
+        return true;
+    }
+
+    /**
+     * Finishes the current batch keeping all its edits.
+     *
+     * @return true if the operation was successful and false if no
+     * batch is started
+     */
+    public boolean commit() {
+        if (batchSnapshot == null)
+            return false;
+
+        batchSnapshot = null;
+        journal.endGroup();
+        return true;
+    }
+
+    /**
+     * Finishes the current batch dropping all its edits. The bytes
+     * added during the batch stay in the add buffer unreferenced until
+     * it is compacted. The receivers of the changes are told that all
+     * the contents changed.
+     *
+     * @return true if the operation was successful and false if no
+     * batch is started
+     */
+    public boolean rollback() {
+        if (batchSnapshot == null)
+            return false;
+
+        PieceTable pieceTable = session.getPieceTable();
+        long length = pieceTable.length();
+        pieceTable.restore(batchSnapshot);
+        batchSnapshot = null;
+        journal.discardGroup();
+        fireContentChanged(0, length, pieceTable.length());
+        compactIfNeeded();
+        return true;
+    }
+
+    /**
+     * Reverts the most recent edit or batch of edits. The removed
+     * pieces are put back, so no bytes are copied.
+     *
+     * @return true if the operation was successful and false if there
+     * is nothing to undo
+     */
+    public boolean undo() {
+        if (session == null || batchSnapshot != null)
+            return false;
+
+        List<EditJournal.Edit> edits = journal.undo();
+        if (edits == null)
+            return false;
+
+        PieceTable pieceTable = session.getPieceTable();
+        for (int i = edits.size() - 1; i >= 0; i--) {
+            EditJournal.Edit edit = edits.get(i);
+            pieceTable.replace(edit.offset, edit.insertedLength(),
+                    edit.removed);
+            fireContentChanged(edit.offset, edit.insertedLength(),
+                    edit.removedLength());
+        }
+        return true;
+    }
+
+    /**
+     * Applies again the most recently reverted edit or batch of edits.
+     *
+     * @return true if the operation was successful and false if there
+     * is nothing to redo
+     */
+    public boolean redo() {
+        if (session == null || batchSnapshot != null)
+            return false;
+
+        List<EditJournal.Edit> edits = journal.redo();
+        if (edits == null)
+            return false;
 
-        try (RandomAccessFile r = new RandomAccessFile(
-                tempFilePath.toFile(), "rw");
-             RandomAccessFile rTemp = new RandomAccessFile(
-                     path.toFile(), "rw")) {
+        PieceTable pieceTable = session.getPieceTable();
+        for (EditJournal.Edit edit : edits) {
+            pieceTable.replace(edit.offset, edit.removedLength(),
+                    edit.inserted);
+            fireContentChanged(edit.offset, edit.removedLength(),
+                    edit.insertedLength());
+        }
+        return true;
+    }
 
-            try (FileChannel sourceChannel = r.getChannel();
-                 FileChannel targetChannel = rTemp.getChannel()) {
+    /**
+     * Returns true if there is an edit that can be reverted.
+     */
+    public boolean canUndo() {
+        return session != null && batchSnapshot == null && journal.canUndo();
+    }
 
-                long fileSize = r.length();
-                long newOffset;
+    /**
+     * Returns true if there is a reverted edit that can be applied
+     * again.
+     */
+    public boolean canRedo() {
+        return session != null && batchSnapshot == null && journal.canRedo();
+    }
 
-                if (offset + count > fileSize)
-                    count = fileSize - offset;
+    /**
+     * Replaces the document range with the given pieces, records the
+     * edit to the journal and tells the receivers about it. If the
+     * <code>offset</code> is bigger than the document length the gap
+     * is filled with zeros.
+     *
+     * @param offset      the document position of the replaced range
+     * @param removeCount the byte count of the replaced range
+     * @param inserted    the pieces to insert at the offset position
+     */
+    private void apply(long offset, long removeCount, List<Piece> inserted) {
+        PieceTable pieceTable = session.getPieceTable();
+        long length = pieceTable.length();
 
-                sourceChannel.transferTo(offset + count,
-                        (fileSize - offset - count), targetChannel);
-                sourceChannel.truncate(offset);
+        // The zero gap is made a part of the edit to be undone with it
+        if (offset > length) {
+            List<Piece> padded = new ArrayList<>();
+            padded.add(new Piece(Source.ZEROS, 0, offset - length));
+            padded.addAll(inserted);
+            inserted = padded;
+            offset = length;
+            removeCount = 0;
+        }
 
-                r.seek(offset);
+        List<Piece> removed = pieceTable.replace(offset, removeCount, inserted);
+        if (!removed.isEmpty() || !inserted.isEmpty()) {
+            journal.record(new EditJournal.Edit(offset, removed, inserted));
+        }
+        fireContentChanged(offset, EditJournal.Edit.length(removed),
+                EditJournal.Edit.length(inserted));
+        compactIfNeeded();
+    }
 
-                newOffset = r.getFilePointer();
-                targetChannel.position(0L);
-                sourceChannel.transferFrom(targetChannel, newOffset,
-                        (fileSize - offset - count));
-            } catch (IllegalArgumentException e) {
+    /**
+     * Compacts the add buffer if the bytes of the dropped journal
+     * entries are at least half of it. The bytes still referenced by
+     * the document, the journal or the batch are kept.
+     */
+    private void compactIfNeeded() {
+        dropped += journal.takeDroppedDisk();
+        AddBuffer addBuffer = session.getAddBuffer();
+        if (dropped < COMPACT_THRESHOLD || dropped < addBuffer.size() / 2) {
+            return;
+        }
+
+        PieceTable pieceTable = session.getPieceTable();
+        List<Piece> pieces = pieceTable.snapshot();
+        List<long[]> ranges = new ArrayList<>();
+        Consumer<Piece> collect = piece -> {
+            if (piece.source == Source.ADD && piece.length > 0) {
+                ranges.add(new long[]{piece.start,
+                        piece.start + piece.length});
+            }
+        };
+        pieces.forEach(collect);
+        if (batchSnapshot != null) {
+            batchSnapshot.forEach(collect);
+        }
+        journal.forEachPiece(collect);
+
+        // The overlapping and the adjacent ranges are merged
+        ranges.sort(Comparator.comparingLong(range -> range[0]));
+        List<long[]> kept = new ArrayList<>();
+        for (long[] range : ranges) {
+            long[] last = kept.isEmpty() ? null : kept.get(kept.size() - 1);
+            if (last != null && range[0] <= last[1]) {
+                last[1] = Math.max(last[1], range[1]);
+            } else {
+                kept.add(range.clone());
+            }
+        }
+
+        long[] starts = new long[kept.size()];
+        long[] lengths = new long[kept.size()];
+        long[] moved = new long[kept.size()];
+        long position = 0;
+        for (int i = 0; i < kept.size(); i++) {
+            starts[i] = kept.get(i)[0];
+            lengths[i] = kept.get(i)[1] - starts[i];
+            moved[i] = position;
+            position += lengths[i];
+        }
+
+        // The snapshots read under the lock, so they see either the
+        // old buffer with the old pieces or become stale
+        synchronized (sourceLock) {
+            try {
+                addBuffer.compact(starts, lengths);
+            } catch (IOException e) {
                 e.printStackTrace();
-                return false;
+                return;
             }
+            sourceVersion++;
+            published = null;
 
+            UnaryOperator<Piece> mapping = piece -> {
+                if (piece.source != Source.ADD || piece.length == 0) {
+                    return piece;
+                }
+                int i = Arrays.binarySearch(starts, piece.start);
+                if (i < 0) {
+                    i = -i - 2;
+                }
+                return new Piece(Source.ADD,
+                        moved[i] + piece.start - starts[i], piece.length);
+            };
+            pieceTable.restore(remap(pieces, mapping));
+            if (batchSnapshot != null) {
+                batchSnapshot = remap(batchSnapshot, mapping);
+            }
+            journal.remap(mapping);
+        }
+        dropped = 0;
+    }
+
+    /**
+     * Returns the mapped pieces.
+     *
+     * @param pieces  the pieces
+     * @param mapping the piece describing the same bytes at their new
+     *                place
+     */
+    private static List<Piece> remap(List<Piece> pieces,
+                                     UnaryOperator<Piece> mapping) {
+        List<Piece> res = new ArrayList<>(pieces.size());
+        for (Piece piece : pieces) {
+            res.add(mapping.apply(piece));
+        }
+        return res;
+    }
+
+    /**
+     * Appends the bytes to the add buffer.
+     *
+     * @param bytes the stored bytes
+     * @return the pieces describing the stored bytes
+     * @throws IOException if an I/O error occurs
+     */
+    private List<Piece> store(byte[] bytes) throws IOException {
+        if (bytes.length == 0) {
+            return Collections.emptyList();
+        }
+        long start = session.getAddBuffer().append(bytes);
+        return Collections.singletonList(
+                new Piece(Source.ADD, start, bytes.length));
+    }
+
+    /**
+     * Saves the edited data to the source file writing only the
+     * changed ranges. If it fails before the source file is changed,
+     * the journal is kept, otherwise it is cleared.
+     *
+     * @param monitor the receiver of the progress or null
+     * @throws IOException if an I/O error occurs
+     */
+    private void save(ProgressMonitor monitor) throws IOException {
+        // The other threads keep reading this snapshot while the
+        // pieces are replaced
+        snapshot();
+        PieceTable pieceTable = session.getPieceTable();
+        List<Piece> pieces = pieceTable.pieces(0, pieceTable.length());
+        long[] positions = new long[pieces.size()];
+
+        long position = 0;
+        long sourceEnd = 0;
+        boolean ordered = true;
+        int firstChanged = -1;
+        for (int i = 0; i < pieces.size(); i++) {
+            Piece piece = pieces.get(i);
+            if (piece.source == Source.ORIGINAL) {
+                ordered &= piece.start >= sourceEnd;
+                sourceEnd = piece.start + piece.length;
+            }
+            positions[i] = position;
+            position += piece.length;
+            if (firstChanged == -1 && !isClean(piece, positions[i])) {
+                firstChanged = i;
+            }
+        }
+
+        long total = 0;
+        boolean shifted = false;
+        for (int i = 0; i < pieces.size(); i++) {
+            Piece piece = pieces.get(i);
+            if (!isClean(piece, positions[i])) {
+                total += piece.length;
+                shifted |= piece.source == Source.ORIGINAL;
+            }
+        }
+
+        if (shifted && atomicSave) {
+            // A crash while the blocks are moved would lose them
+            writeTo(session.getSourcePath(), new SaveProgress(monitor,
+                    position));
+            synchronized (sourceLock) {
+                reloadSource();
+                sourceVersion++;
+                published = new SourceSnapshot(
+                        new DocumentSnapshot(session), sourceVersion);
+            }
+            return;
+        }
+
+        synchronized (sourceLock) {
+            // Nothing is changed if the file can not be opened
+            FileChannel writable = session.openWritableSource();
+            try (FileChannel channel = writable) {
+                if (ordered) {
+                    saveInPlace(channel, pieces, positions,
+                            new SaveProgress(monitor, total));
+                } else {
+                    // The reordered blocks are written to the temporary
+                    // file and copied back
+                    saveTail(channel, pieces, positions, firstChanged,
+                            new SaveProgress(monitor,
+                                    2 * (position - positions[firstChanged])));
+                }
+                channel.truncate(position);
+                channel.force(true);
+            } catch (IOException e) {
+                // The source file blocks can be already overwritten
+                clearJournal();
+                throw e;
+            }
+
+            reloadSource();
+            sourceVersion++;
+            published = new SourceSnapshot(
+                    new DocumentSnapshot(session), sourceVersion);
+        }
+    }
+
+    /**
+     * Opens the source file again after it was replaced. The journal
+     * is cleared if it fails, since the source file is already
+     * replaced.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    private void reloadSource() throws IOException {
+        try {
+            session.reloadSource();
         } catch (IOException e) {
-            e.printStackTrace();
-            return false;
+            clearJournal();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns true if the piece is the source file block which stays
+     * at its position, so it is not written.
+     *
+     * @param piece    the piece of the document
+     * @param position the document position of the piece
+     */
+    private static boolean isClean(Piece piece, long position) {
+        return piece.source == Source.ORIGINAL && piece.start == position;
+    }
+
+    /**
+     * Saves the edited data moving the source file blocks inside the
+     * file. The blocks that are moved towards large addresses are
+     * processed starting from the last one and the rest are processed
+     * starting from the first one, so no block is overwritten before
+     * it is moved. The added bytes are written after that.
+     *
+     * @param channel   the writable channel of the source file
+     * @param pieces    the pieces of the document in which the source
+     *                  file blocks are not reordered
+     * @param positions the document positions of the pieces
+     * @param progress  the receiver of the written byte counts
+     * @throws IOException if an I/O error occurs
+     */
+    private void saveInPlace(FileChannel channel, List<Piece> pieces,
+                             long[] positions, SaveProgress progress)
+            throws IOException {
+        FileShifter shifter = new FileShifter();
+
+        for (int i = pieces.size() - 1; i >= 0; i--) {
+            Piece piece = pieces.get(i);
+            if (piece.source == Source.ORIGINAL
+                    && positions[i] > piece.start) {
+                shifter.move(channel, piece.start, positions[i],
+                        piece.length, progress);
+            }
+        }
+        for (int i = 0; i < pieces.size(); i++) {
+            Piece piece = pieces.get(i);
+            if (piece.source == Source.ORIGINAL
+                    && positions[i] < piece.start) {
+                shifter.move(channel, piece.start, positions[i],
+                        piece.length, progress);
+            }
+        }
+        for (int i = 0; i < pieces.size(); i++) {
+            if (pieces.get(i).source != Source.ORIGINAL) {
+                writePiece(pieces.get(i), channel, positions[i], progress);
+            }
+        }
+    }
+
+    /**
+     * Saves the edited data collecting the pieces starting from the
+     * first changed one in a temporary file and copying it over the
+     * source file. The clean blocks before that piece are not touched.
+     *
+     * @param channel   the writable channel of the source file
+     * @param pieces    the pieces of the document
+     * @param positions the document positions of the pieces
+     * @param first     the index of the first changed piece
+     * @param progress  the receiver of the written byte counts
+     * @throws IOException if an I/O error occurs
+     */
+    private void saveTail(FileChannel channel, List<Piece> pieces,
+                          long[] positions, int first,
+                          SaveProgress progress) throws IOException {
+        Path tempFilePath = Files.createTempFile("~", ".tmp");
+        try (FileChannel temp = FileChannel.open(tempFilePath, READ, WRITE)) {
+            for (int i = first; i < pieces.size(); i++) {
+                writePiece(pieces.get(i), temp, positions[i] - positions[first],
+                        progress);
+            }
+
+            channel.position(positions[first]);
+            transfer(temp, 0, temp.size(), channel, progress);
         } finally {
-            path.toFile().delete();
+            Files.deleteIfExists(tempFilePath);
+        }
+    }
+
+    /**
+     * Writes the edited data to the temporary file which atomically
+     * replaces the specified one. The pieces are transferred between
+     * the channels without copying them through the heap.
+     *
+     * @param target   the file to write
+     * @param progress the receiver of the written byte counts
+     * @throws IOException if an I/O error occurs
+     */
+    private void writeTo(Path target, SaveProgress progress)
+            throws IOException {
+        try (AtomicFileWriter writer = new AtomicFileWriter(target)) {
+            PieceTable pieceTable = session.getPieceTable();
+
+            long position = 0;
+            for (Piece piece : pieceTable.pieces(0, pieceTable.length())) {
+                writePiece(piece, writer.getChannel(), position, progress);
+                position += piece.length;
+            }
+            writer.commit();
+        }
+    }
+
+    /**
+     * Writes the bytes of the piece to the channel.
+     *
+     * @param piece    the piece to write
+     * @param target   the channel to write
+     * @param position the target channel position
+     * @param progress the receiver of the written byte counts
+     * @throws IOException if an I/O error occurs
+     */
+    private void writePiece(Piece piece, FileChannel target, long position,
+                            LongConsumer progress) throws IOException {
+        target.position(position);
+
+        switch (piece.source) {
+            case ORIGINAL:
+                transfer(session.getSourceChannel(), piece.start,
+                        piece.length, target, progress);
+                break;
+            case ADD:
+                session.getAddBuffer().transferTo(piece.start, piece.length,
+                        target);
+                progress.accept(piece.length);
+                break;
+            case ZEROS:
+                ByteBuffer zeros = ByteBuffer.allocate(
+                        (int) Math.min(piece.length, ZERO_BUFFER_SIZE));
+                for (long n = piece.length; n > 0; ) {
+                    zeros.clear();
+                    zeros.limit((int) Math.min(n, zeros.capacity()));
+                    int written = target.write(zeros);
+                    progress.accept(written);
+                    n -= written;
+                }
+                break;
+        }
+    }
+
+    /**
+     * Transfers the bytes from the source channel to the target one.
+     *
+     * @param source   the channel to read
+     * @param position the position in the source channel
+     * @param count    transferred byte count
+     * @param target   the channel to write
+     * @param progress the receiver of the transferred byte counts
+     * @throws IOException if an I/O error occurs
+     */
+    private static void transfer(FileChannel source, long position,
+                                 long count, FileChannel target,
+                                 LongConsumer progress) throws IOException {
+        while (count > 0) {
+            long n = source.transferTo(position, count, target);
+            if (n <= 0) {
+                throw new IOException("The source file was truncated");
+            }
+            progress.accept(n);
+            position += n;
+            count -= n;
+        }
+    }
+
+    /**
+     * The snapshot of the document which becomes stale when the source
+     * file is replaced by a save or closed.
+     */
+    private final class SourceSnapshot implements ContentSnapshot {
+
+        /**
+         * The pieces of the document at the moment of the snapshot.
+         */
+        private final DocumentSnapshot document;
+
+        /**
+         * The source version the pieces refer to.
+         */
+        private final long version;
+
+        /**
+         * Constructs the snapshot.
+         *
+         * @param document the pieces of the document
+         * @param version  the source version the pieces refer to
+         */
+        SourceSnapshot(DocumentSnapshot document, long version) {
+            this.document = document;
+            this.version = version;
+        }
+
+        @Override
+        public long length() {
+            return document.length();
+        }
+
+        @Override
+        public byte[] read(long offset, int count) {
+            if (offset < 0 || offset >= document.length() || count < 0) {
+                return null;
+            }
+            byte[] bytes = new byte[(int) Math.min(count,
+                    document.length() - offset)];
+            synchronized (sourceLock) {
+                if (version != sourceVersion) {
+                    return null;
+                }
+                try {
+                    document.read(offset, bytes, 0, bytes.length);
+                } catch (IOException e) {
+                    e.printStackTrace();
+                    return null;
+                }
+            }
+            return bytes;
+        }
+
+        @Override
+        public boolean isStale() {
+            return version != sourceVersion;
+        }
+    }
+
+    /**
+     * The counter of the bytes written by a save which reports them to
+     * the monitor.
+     */
+    private static final class SaveProgress implements LongConsumer {
+
+        /**
+         * The receiver of the progress or null.
+         */
+        private final ProgressMonitor monitor;
+
+        /**
+         * The count of the bytes to write.
+         */
+        private final long total;
+
+        /**
+         * The count of the written bytes.
+         */
+        private long done = 0;
+
+        SaveProgress(ProgressMonitor monitor, long total) {
+            this.monitor = monitor;
+            this.total = total;
+        }
+
+        @Override
+        public void accept(long written) {
+            done += written;
+            if (monitor != null) {
+                monitor.progress(done, total);
+            }
         }
-        return true;
     }
 }
@@ -0,0 +1,232 @@
+package editor.impl;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The cache of the memory-mapped windows of a file. The file is
+ * divided into windows of the same size, each of them is mapped at
+ * the first access and is kept until it becomes the least recently
+ * used one. A read from a mapped window costs a copy from the page
+ * cache without any system call.
+ * <p>
+ * Java can not unmap a buffer, a dropped window is released when it is
+ * collected, so the windows are mapped again only when it can not be
+ * avoided. The window at the end of a growing file is mapped in full
+ * and extends the file, so the bytes appended later are read through
+ * it. The lock is held only while the windows are looked up, the
+ * windows are mapped and read without it.
+ */
+public class MappedWindowCache {
+
+    /**
+     * The default size of one window.
+     */
+    public static final long DEFAULT_WINDOW_SIZE = 64L * 1024 * 1024;
+
+    /**
+     * The default maximum number of the mapped windows.
+     */
+    public static final int DEFAULT_MAX_WINDOWS = 16;
+
+    /**
+     * The channel of the mapped file. It is owned by the cache user.
+     */
+    private final FileChannel channel;
+
+    /**
+     * The counters of the window hits and maps.
+     */
+    private final SessionStatistics statistics;
+
+    /**
+     * The size of one window.
+     */
+    private final long windowSize;
+
+    /**
+     * Whether the windows are mapped in full past the end of the file.
+     */
+    private final boolean growing;
+
+    /**
+     * The mapped windows by their indexes in the access order. It is
+     * the lock of the lookups.
+     */
+    private final LinkedHashMap<Long, MappedByteBuffer> windows;
+
+    /**
+     * The count of the drops of the windows. A window mapped before a
+     * drop is not cached, since it can be shorter than the file or
+     * show the old data.
+     */
+    private long drops = 0;
+
+    /**
+     * The file length the windows are mapped for.
+     */
+    private volatile long length;
+
+    /**
+     * Constructs the cache with the default window size and count.
+     *
+     * @param channel    the channel of the file to map
+     * @param length     the file length
+     * @param statistics the counters of the window hits and maps
+     */
+    public MappedWindowCache(FileChannel channel, long length,
+                             SessionStatistics statistics) {
+        this(channel, length, statistics,
+                DEFAULT_WINDOW_SIZE, DEFAULT_MAX_WINDOWS, false);
+    }
+
+    /**
+     * Constructs the cache.
+     *
+     * @param channel    the channel of the file to map
+     * @param length     the file length
+     * @param statistics the counters of the window hits and maps
+     * @param windowSize the size of one window
+     * @param maxWindows the maximum number of the mapped windows
+     * @param growing    whether the file grows at its end, then the
+     *                   channel must be writable and the file is
+     *                   extended to the end of the last mapped window
+     */
+    public MappedWindowCache(FileChannel channel, long length,
+                             SessionStatistics statistics,
+                             long windowSize, int maxWindows,
+                             boolean growing) {
+        if (windowSize <= 0 || windowSize > Integer.MAX_VALUE
+                || maxWindows <= 0) {
+            throw new IllegalArgumentException(
+                    "Invalid window size or count: "
+                            + windowSize + ", " + maxWindows);
+        }
+        this.channel = channel;
+        this.statistics = statistics;
+        this.length = length;
+        this.windowSize = windowSize;
+        this.growing = growing;
+        this.windows = new LinkedHashMap<Long, MappedByteBuffer>(
+                16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(
+                    Map.Entry<Long, MappedByteBuffer> eldest) {
+                return size() > maxWindows;
+            }
+        };
+    }
+
+    /**
+     * Reads the bytes starting from the specified file position.
+     *
+     * @param position  the file position at which the reading is to
+     *                  begin
+     * @param dst       the array to read the bytes into
+     * @param dstOffset the index in the array of the first read byte
+     * @param count     read byte count
+     * @throws IOException if an I/O error occurs or the range is out
+     *                     of the file
+     */
+    public void read(long position, byte[] dst, int dstOffset, int count)
+            throws IOException {
+        if (position < 0 || position + count > length) {
+            throw new IOException("The range is out of the mapped file: "
+                    + position + ", " + count);
+        }
+
+        while (count > 0) {
+            long index = position / windowSize;
+            int from = (int) (position - index * windowSize);
+            ByteBuffer window = window(index).duplicate();
+            int n = Math.min(count, window.limit() - from);
+
+            window.position(from);
+            window.get(dst, dstOffset, n);
+
+            position += n;
+            dstOffset += n;
+            count -= n;
+        }
+    }
+
+    /**
+     * Sets the new file length. The windows past the new end are
+     * dropped. The window at the end of the file is kept if the file
+     * is growing and the window is mapped in full, otherwise it is
+     * mapped again at the next access.
+     *
+     * @param newLength the new file length
+     */
+    public void setLength(long newLength) {
+        synchronized (windows) {
+            if (newLength == length) {
+                return;
+            }
+            long firstDropped = growing
+                    ? (newLength + windowSize - 1) / windowSize
+                    : Math.min(length, newLength) / windowSize;
+            windows.keySet().removeIf(index -> index >= firstDropped);
+            if (!growing) {
+                drops++;
+            }
+            length = newLength;
+        }
+    }
+
+    /**
+     * Drops all the windows. It must be called when the file data is
+     * changed not through the cache owner.
+     */
+    public void invalidate() {
+        synchronized (windows) {
+            windows.clear();
+            drops++;
+        }
+    }
+
+    /**
+     * Returns the mapped window with the specified index mapping it
+     * if it is necessary.
+     *
+     * @param index the window index
+     * @return the mapped window
+     * @throws IOException if an I/O error occurs
+     */
+    private MappedByteBuffer window(long index) throws IOException {
+        MappedByteBuffer window;
+        long mappedDrops;
+        long mappedLength;
+        synchronized (windows) {
+            window = windows.get(index);
+            mappedDrops = drops;
+            mappedLength = length;
+        }
+        if (window != null) {
+            statistics.windowHit();
+            return window;
+        }
+
+        long start = index * windowSize;
+        long size = growing ? windowSize
+                : Math.min(windowSize, mappedLength - start);
+        window = channel.map(FileChannel.MapMode.READ_ONLY, start, size);
+        statistics.windowMapped();
+
+        synchronized (windows) {
+            // Another reader could map the window meanwhile
+            MappedByteBuffer cached = windows.get(index);
+            if (cached != null) {
+                return cached;
+            }
+            if (mappedDrops == drops) {
+                windows.put(index, window);
+            }
+        }
+        return window;
+    }
+}
@@ -0,0 +1,399 @@
+package editor.impl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The piece table that describes the contents of an edited file as an
+ * ordered list of pieces. Every piece refers to a range of the
+ * read-only source file, to a range of the append-only add buffer or
+ * to a run of zero bytes. The edits change only the piece list, so
+ * their cost depends on the edit size and the piece count but not on
+ * the file size.
+ */
+public class PieceTable {
+
+    /**
+     * The storage a piece takes its bytes from.
+     */
+    public enum Source {
+        /**
+         * The read-only source file.
+         */
+        ORIGINAL,
+
+        /**
+         * The append-only buffer with the added bytes.
+         */
+        ADD,
+
+        /**
+         * The zero bytes that are not stored anywhere.
+         */
+        ZEROS
+    }
+
+    /**
+     * The immutable descriptor of a continuous range of bytes in one
+     * of the sources.
+     */
+    public static final class Piece {
+
+        /**
+         * The storage of the piece bytes.
+         */
+        public final Source source;
+
+        /**
+         * The position of the first piece byte in the storage.
+         */
+        public final long start;
+
+        /**
+         * The byte count of the piece.
+         */
+        public final long length;
+
+        /**
+         * Constructs the piece.
+         *
+         * @param source the storage of the piece bytes
+         * @param start  the position of the first byte in the storage
+         * @param length the byte count of the piece
+         */
+        public Piece(Source source, long start, long length) {
+            this.source = source;
+            this.start = start;
+            this.length = length;
+        }
+
+        /**
+         * Returns the part of this piece.
+         *
+         * @param from  the index of the first byte within the piece
+         * @param count the byte count of the part
+         * @return the piece describing the part
+         */
+        public Piece slice(long from, long count) {
+            return new Piece(source, start + from, count);
+        }
+
+        /**
+         * Returns true if the given piece continues this one in the
+         * same storage, so both of them can be described by one piece.
+         */
+        boolean isContinuedBy(Piece next) {
+            return source == next.source
+                    && (source == Source.ZEROS
+                    || start + length == next.start);
+        }
+    }
+
+    /**
+     * The pieces in the document order.
+     */
+    private final ArrayList<Piece> pieces = new ArrayList<>();
+
+    /**
+     * The document positions of the pieces. It is rebuilt lazily
+     * after the piece list was changed.
+     */
+    private long[] pieceOffsets = new long[0];
+
+    /**
+     * Whether the <code>pieceOffsets</code> array corresponds to the
+     * piece list.
+     */
+    private boolean offsetsValid = true;
+
+    /**
+     * The document length. It can be read from any thread while a
+     * save replaces the pieces.
+     */
+    private volatile long length;
+
+    /**
+     * Constructs the table describing the unchanged source file of
+     * the given size.
+     *
+     * @param originalSize the size of the source file
+     */
+    public PieceTable(long originalSize) {
+        reset(originalSize);
+    }
+
+    /**
+     * Drops all the edits and describes the unchanged source file of
+     * the given size.
+     *
+     * @param originalSize the size of the source file
+     */
+    public void reset(long originalSize) {
+        pieces.clear();
+        if (originalSize > 0) {
+            pieces.add(new Piece(Source.ORIGINAL, 0, originalSize));
+        }
+        length = originalSize;
+        offsetsValid = false;
+    }
+
+    /**
+     * Returns the copy of the piece list that can be passed to
+     * {@link #restore(List)} to drop the edits made after that.
+     * The pieces are immutable, so only the references are copied.
+     *
+     * @return the pieces in the document order
+     */
+    public List<Piece> snapshot() {
+        return new ArrayList<>(pieces);
+    }
+
+    /**
+     * Replaces the piece list with the given one.
+     *
+     * @param snapshot the pieces in the document order
+     */
+    public void restore(List<Piece> snapshot) {
+        pieces.clear();
+        pieces.addAll(snapshot);
+
+        long res = 0;
+        for (Piece p : pieces) {
+            res += p.length;
+        }
+        length = res;
+        offsetsValid = false;
+    }
+
+    /**
+     * Returns the document length.
+     *
+     * @return the byte count of the document
+     */
+    public long length() {
+        return length;
+    }
+
+    /**
+     * Returns the number of pieces in the table.
+     *
+     * @return the piece count
+     */
+    public int pieceCount() {
+        return pieces.size();
+    }
+
+    /**
+     * Returns the pieces describing the specified document range.
+     *
+     * @param offset the document position of the range
+     * @param count  the byte count of the range
+     * @return the pieces in the document order
+     */
+    public List<Piece> pieces(long offset, long count) {
+        if (offset < 0 || count <= 0 || offset >= length) {
+            return Collections.emptyList();
+        }
+        count = Math.min(count, length - offset);
+
+        ArrayList<Piece> res = new ArrayList<>();
+        int i = indexOf(offset);
+        long pieceOffset = pieceOffsets[i];
+
+        while (count > 0) {
+            Piece p = pieces.get(i);
+            long from = offset - pieceOffset;
+            long n = Math.min(p.length - from, count);
+            res.add(p.slice(from, n));
+
+            offset += n;
+            count -= n;
+            pieceOffset += p.length;
+            i++;
+        }
+        return res;
+    }
+
+    /**
+     * Replaces the specified document range with the given pieces.
+     * If the <code>offset</code> is bigger than the document length
+     * the gap is filled with zeros.
+     *
+     * @param offset      the document position of the replaced range
+     * @param removeCount the byte count of the replaced range
+     * @param inserted    the pieces to insert at the offset position
+     * @return the removed pieces in the document order
+     */
+    public List<Piece> replace(long offset, long removeCount,
+                               List<Piece> inserted) {
+        if (offset < 0 || removeCount < 0) {
+            throw new IllegalArgumentException(
+                    "Negative offset or count: " + offset + ", " + removeCount);
+        }
+
+        if (offset > length) {
+            pieces.add(new Piece(Source.ZEROS, 0, offset - length));
+            length = offset;
+            offsetsValid = false;
+        }
+        removeCount = Math.min(removeCount, length - offset);
+
+        int first = split(offset);
+        int last = split(offset + removeCount);
+
+        List<Piece> removedView = pieces.subList(first, last);
+        ArrayList<Piece> removed = new ArrayList<>(removedView);
+        removedView.clear();
+
+        int insertIndex = first;
+        long insertedLength = 0;
+        for (Piece p : inserted) {
+            if (p.length > 0) {
+                pieces.add(insertIndex++, p);
+                insertedLength += p.length;
+            }
+        }
+
+        length += insertedLength - removeCount;
+        offsetsValid = false;
+
+        // Merging at the both edges of the edit keeps the piece count
+        // small when bytes are typed or deleted one by one
+        merge(insertIndex);
+        merge(first);
+
+        return removed;
+    }
+
+    /**
+     * Returns the index of the piece containing the specified
+     * document position.
+     *
+     * @param offset the document position which is less than the
+     *               document length
+     * @return the piece index
+     */
+    int indexOf(long offset) {
+        validateOffsets();
+
+        int low = 0;
+        int high = pieces.size() - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (pieceOffsets[mid] <= offset) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Returns the document position of the piece at the specified
+     * index.
+     *
+     * @param index the piece index
+     * @return the document position of the piece
+     */
+    long offsetOf(int index) {
+        validateOffsets();
+        return index < pieces.size() ? pieceOffsets[index] : length;
+    }
+
+    /**
+     * Returns the piece at the specified index.
+     *
+     * @param index the piece index
+     * @return the piece
+     */
+    Piece get(int index) {
+        return pieces.get(index);
+    }
+
+    /**
+     * Splits the piece containing the specified position so the
+     * position becomes a piece boundary.
+     *
+     * @param offset the document position which is not bigger than
+     *               the document length
+     * @return the index of the piece starting at the offset
+     */
+    private int split(long offset) {
+        if (offset == length) {
+            return pieces.size();
+        }
+
+        int i = indexOf(offset);
+        long from = offset - pieceOffsets[i];
+        if (from == 0) {
+            return i;
+        }
+
+        Piece p = pieces.get(i);
+        pieces.set(i, p.slice(0, from));
+        pieces.add(i + 1, p.slice(from, p.length - from));
+
+        // Only the positions after the split piece are shifted
+        long[] offsets = growOffsets();
+        System.arraycopy(pieceOffsets, 0, offsets, 0, i + 1);
+        pieceOffsets = offsets;
+        long pos = pieceOffsets[i];
+        for (int j = i; j < pieces.size(); j++) {
+            pieceOffsets[j] = pos;
+            pos += pieces.get(j).length;
+        }
+        return i + 1;
+    }
+
+    /**
+     * Merges the piece at the specified index with the previous one
+     * if they are continuous in the same storage.
+     *
+     * @param index the piece index
+     */
+    private void merge(int index) {
+        if (index <= 0 || index >= pieces.size()) {
+            return;
+        }
+
+        Piece prev = pieces.get(index - 1);
+        Piece next = pieces.get(index);
+        if (prev.isContinuedBy(next)) {
+            pieces.set(index - 1, new Piece(
+                    prev.source, prev.start, prev.length + next.length));
+            pieces.remove(index);
+            offsetsValid = false;
+        }
+    }
+
+    /**
+     * Rebuilds the document positions of the pieces if they were
+     * changed.
+     */
+    private void validateOffsets() {
+        if (offsetsValid) {
+            return;
+        }
+
+        pieceOffsets = growOffsets();
+        long pos = 0;
+        for (int i = 0; i < pieces.size(); i++) {
+            pieceOffsets[i] = pos;
+            pos += pieces.get(i).length;
+        }
+        offsetsValid = true;
+    }
+
+    /**
+     * Returns the positions array that is big enough for the current
+     * piece count.
+     */
+    private long[] growOffsets() {
+        if (pieceOffsets.length >= pieces.size()) {
+            return pieceOffsets;
+        }
+        return new long[Math.max(pieces.size(), pieceOffsets.length * 2)];
+    }
+}
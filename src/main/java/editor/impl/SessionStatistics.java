@@ -0,0 +1,115 @@
+package editor.impl;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The counters of the I/O work that an open {@code FileSession}
+ * saved by keeping its channels, its mapped windows and the document
+ * length in memory. Every counted event is a channel open, a file size
+ * query or a map call that the editor made before the session was
+ * introduced.
+ */
+public class SessionStatistics {
+
+    /**
+     * The count of the operations that used an already opened channel
+     * instead of opening a new one.
+     */
+    private final AtomicLong channelReuses = new AtomicLong();
+
+    /**
+     * The count of the document length queries answered from memory.
+     */
+    private final AtomicLong sizeQueries = new AtomicLong();
+
+    /**
+     * The count of the reads served by an already mapped window.
+     */
+    private final AtomicLong windowHits = new AtomicLong();
+
+    /**
+     * The count of the windows that were mapped.
+     */
+    private final AtomicLong windowMaps = new AtomicLong();
+
+    /**
+     * Counts an operation that used an already opened channel.
+     */
+    void channelReused() {
+        channelReuses.incrementAndGet();
+    }
+
+    /**
+     * Counts a document length query answered from memory.
+     */
+    void sizeQueried() {
+        sizeQueries.incrementAndGet();
+    }
+
+    /**
+     * Counts a read served by an already mapped window.
+     */
+    void windowHit() {
+        windowHits.incrementAndGet();
+    }
+
+    /**
+     * Counts a mapped window.
+     */
+    void windowMapped() {
+        windowMaps.incrementAndGet();
+    }
+
+    /**
+     * Returns the count of the operations that used an already opened
+     * channel instead of opening a new one.
+     */
+    public long getChannelReuses() {
+        return channelReuses.get();
+    }
+
+    /**
+     * Returns the count of the document length queries answered from
+     * memory.
+     */
+    public long getSizeQueries() {
+        return sizeQueries.get();
+    }
+
+    /**
+     * Returns the count of the reads served by an already mapped
+     * window.
+     */
+    public long getWindowHits() {
+        return windowHits.get();
+    }
+
+    /**
+     * Returns the count of the windows that were mapped.
+     */
+    public long getWindowMaps() {
+        return windowMaps.get();
+    }
+
+    /**
+     * Returns the estimated count of the system calls that were saved.
+     * Opening and closing a channel costs two calls, a size query
+     * costs three (open, fstat, close), a read through a mapped window
+     * used to cost an open, a read and a close.
+     *
+     * @return the count of the saved system calls
+     */
+    public long getSavedSystemCalls() {
+        return 2 * getChannelReuses() + 3 * getSizeQueries()
+                + 3 * getWindowHits();
+    }
+
+    @Override
+    public String toString() {
+        return "SessionStatistics{channelReuses=" + getChannelReuses()
+                + ", sizeQueries=" + getSizeQueries()
+                + ", windowHits=" + getWindowHits()
+                + ", windowMaps=" + getWindowMaps()
+                + ", savedSystemCalls=" + getSavedSystemCalls() + '}';
+    }
+}
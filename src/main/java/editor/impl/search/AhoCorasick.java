@@ -0,0 +1,214 @@
+package editor.impl.search;
+
+import editor.MatchConsumer;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The Aho-Corasick automaton which finds all the occurrences of a set
+ * of byte patterns in one pass. The automaton is complete: every
+ * state has a transition for every byte, so each text byte costs one
+ * table lookup whatever the number of the patterns is.
+ * <p>
+ * The automaton is kept in primitive arrays. The bytes that occur in
+ * the patterns get their own classes and all the other bytes share
+ * one, so the transition table has as many columns as there are
+ * distinct pattern bytes plus one instead of 256.
+ */
+public class AhoCorasick {
+
+    /**
+     * The class of every byte value.
+     */
+    private final int[] byteClasses = new int[256];
+
+    /**
+     * The count of the byte classes.
+     */
+    private final int classCount;
+
+    /**
+     * The transitions: the next state for the state and the byte
+     * class is at <code>state * classCount + class</code>.
+     */
+    private final int[] transitions;
+
+    /**
+     * The first pattern ending in every state or -1.
+     */
+    private final int[] firstPattern;
+
+    /**
+     * The next pattern ending in the same state or -1.
+     */
+    private final int[] nextPattern;
+
+    /**
+     * The state whose patterns are reported when the state is reached:
+     * the state itself or its nearest suffix state with patterns, -1
+     * if there are none.
+     */
+    private final int[] reported;
+
+    /**
+     * The nearest proper suffix state with patterns or -1.
+     */
+    private final int[] outputLinks;
+
+    /**
+     * The lengths of the patterns.
+     */
+    private final int[] lengths;
+
+    /**
+     * The buffer the source is read into.
+     */
+    private final byte[] buffer = new byte[BlockSearch.BLOCK_SIZE];
+
+    /**
+     * Builds the automaton of the patterns.
+     *
+     * @param patterns the non-empty searched patterns; the index of a
+     *                 pattern in the list is its id
+     * @throws IllegalArgumentException if a pattern is empty
+     */
+    public AhoCorasick(List<byte[]> patterns) {
+        int total = 0;
+        int classes = 1;
+        for (byte[] p : patterns) {
+            if (p.length == 0) {
+                throw new IllegalArgumentException("Empty pattern");
+            }
+            total += p.length;
+            for (byte b : p) {
+                if (byteClasses[b & 0xFF] == 0) {
+                    byteClasses[b & 0xFF] = classes++;
+                }
+            }
+        }
+        classCount = classes;
+
+        int maxStates = total + 1;
+        transitions = new int[maxStates * classCount];
+        Arrays.fill(transitions, -1);
+        firstPattern = new int[maxStates];
+        Arrays.fill(firstPattern, -1);
+        nextPattern = new int[patterns.size()];
+        lengths = new int[patterns.size()];
+
+        // The trie of the patterns
+        int stateCount = 1;
+        for (int id = 0; id < patterns.size(); id++) {
+            byte[] p = patterns.get(id);
+            int state = 0;
+            for (byte b : p) {
+                int i = state * classCount + byteClasses[b & 0xFF];
+                if (transitions[i] == -1) {
+                    transitions[i] = stateCount++;
+                }
+                state = transitions[i];
+            }
+            nextPattern[id] = firstPattern[state];
+            firstPattern[state] = id;
+            lengths[id] = p.length;
+        }
+
+        // The failure links are resolved in the breadth-first order, so
+        // the missing transitions can be copied from the failure state
+        int[] failure = new int[stateCount];
+        outputLinks = new int[stateCount];
+        reported = new int[stateCount];
+        outputLinks[0] = -1;
+        reported[0] = -1;
+
+        int[] queue = new int[stateCount];
+        int head = 0;
+        int tail = 0;
+        for (int c = 0; c < classCount; c++) {
+            int t = transitions[c];
+            if (t == -1) {
+                transitions[c] = 0;
+            } else {
+                failure[t] = 0;
+                queue[tail++] = t;
+            }
+        }
+
+        while (head < tail) {
+            int s = queue[head++];
+            int f = failure[s];
+            outputLinks[s] = reported[f];
+            reported[s] = firstPattern[s] != -1 ? s : outputLinks[s];
+
+            for (int c = 0; c < classCount; c++) {
+                int i = s * classCount + c;
+                int t = transitions[i];
+                int ft = transitions[f * classCount + c];
+                if (t == -1) {
+                    transitions[i] = ft;
+                } else {
+                    failure[t] = ft;
+                    queue[tail++] = t;
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the count of the automaton states.
+     *
+     * @return the state count
+     */
+    public int getStateCount() {
+        return reported.length;
+    }
+
+    /**
+     * Finds all the occurrences of the patterns starting at or after
+     * the specified position. The matches are reported in the order of
+     * their ends; the matches with the same end are reported from the
+     * longest pattern to the shortest one.
+     *
+     * @param source   the bytes to search in
+     * @param from     the position at which the searching is to begin
+     * @param consumer the receiver of the matches
+     * @return the count of the reported matches
+     * @throws IOException if an I/O error occurs
+     */
+    public long scan(ByteSource source, long from, MatchConsumer consumer)
+            throws IOException {
+        long length = source.length();
+        long count = 0;
+        int state = 0;
+
+        for (long offset = Math.max(from, 0); offset < length; ) {
+            int n = source.read(offset, buffer, 0,
+                    (int) Math.min(buffer.length, length - offset));
+            if (n <= 0) {
+                break;
+            }
+            for (int i = 0; i < n; i++) {
+                state = transitions[state * classCount
+                        + byteClasses[buffer[i] & 0xFF]];
+                if (reported[state] == -1) {
+                    continue;
+                }
+
+                long end = offset + i + 1;
+                for (int s = reported[state]; s != -1; s = outputLinks[s]) {
+                    for (int id = firstPattern[s]; id != -1;
+                         id = nextPattern[id]) {
+                        count++;
+                        if (!consumer.accept(id, end - lengths[id])) {
+                            return count;
+                        }
+                    }
+                }
+            }
+            offset += n;
+        }
+        return count;
+    }
+}
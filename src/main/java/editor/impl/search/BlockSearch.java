@@ -0,0 +1,132 @@
+package editor.impl.search;
+
+import java.io.IOException;
+import java.util.function.LongSupplier;
+
+/**
+ * The sequential search of a byte pattern in a range of a
+ * {@code ByteSource}. The source is read by blocks into one buffer
+ * which is scanned in place by the {@code PatternMatcher}, forwards
+ * or backwards.
+ */
+public class BlockSearch {
+
+    /**
+     * The size of the block the source is read by.
+     */
+    public static final int BLOCK_SIZE = 1024 * 1024;
+
+    /**
+     * Finds the first match which starts within the specified range.
+     * The bytes after the range are read as far as a match starting
+     * in the range can reach.
+     *
+     * @param source  the bytes to search in
+     * @param from    the position of the first byte of the range
+     * @param to      the position after the last byte of the range
+     * @param matcher the matcher of the searched pattern
+     * @param bound   the position which makes the search stop when
+     *                it is reached by the scanned block; it is
+     *                checked before every block, so other threads can
+     *                lower it
+     * @return the match position or -1 if it was not found
+     * @throws IOException if an I/O error occurs
+     */
+    public static long find(ByteSource source, long from, long to,
+                            PatternMatcher matcher, LongSupplier bound)
+            throws IOException {
+        return find(source, from, to, matcher, bound,
+                new byte[Math.max(matcher.length() * 2, BLOCK_SIZE)]);
+    }
+
+    /**
+     * Finds the first match which starts within the specified range
+     * reading the source into the given buffer, so it can be reused
+     * by the searches of many small ranges.
+     *
+     * @param source  the bytes to search in
+     * @param from    the position of the first byte of the range
+     * @param to      the position after the last byte of the range
+     * @param matcher the matcher of the searched pattern
+     * @param bound   the position which makes the search stop when
+     *                it is reached by the scanned block
+     * @param buffer  the buffer at least twice as long as the pattern
+     * @return the match position or -1 if it was not found
+     * @throws IOException if an I/O error occurs
+     */
+    public static long find(ByteSource source, long from, long to,
+                            PatternMatcher matcher, LongSupplier bound,
+                            byte[] buffer) throws IOException {
+        int m = matcher.length();
+        long end = Math.min(source.length(), to + Math.max(m - 1, 0));
+        int kept = 0;
+        long offset = from;
+
+        while (offset < end && offset - kept < to
+                && offset - kept < bound.getAsLong()) {
+            int n = source.read(offset, buffer, kept, (int) Math.min(
+                    buffer.length - kept, end - offset));
+            if (n <= 0) {
+                break;
+            }
+            int len = kept + n;
+
+            int res = matcher.indexOf(buffer, 0, len);
+            if (res != -1) {
+                long pos = offset - kept + res;
+                return pos < to ? pos : -1;
+            }
+
+            // The tail shorter than the pattern is kept to consider
+            // the case when the required sequence is divided between
+            // two blocks
+            kept = Math.min(m - 1, len);
+            System.arraycopy(buffer, len - kept, buffer, 0, kept);
+            offset += n;
+        }
+        return -1;
+    }
+
+    /**
+     * Finds the last match which starts within the specified range.
+     * The blocks are read from the end of the range towards its
+     * beginning, and the first bytes of every block are kept at the
+     * end of the buffer for the match divided between two blocks.
+     *
+     * @param source  the bytes to search in
+     * @param from    the position of the first byte of the range
+     * @param to      the position after the last byte of the range
+     * @param matcher the matcher of the searched pattern
+     * @param buffer  the buffer at least twice as long as the pattern
+     * @return the match position or -1 if it was not found
+     * @throws IOException if an I/O error occurs
+     */
+    public static long findLast(ByteSource source, long from, long to,
+                                PatternMatcher matcher, byte[] buffer)
+            throws IOException {
+        int m = matcher.length();
+        long blockEnd = Math.min(source.length(), to + Math.max(m - 1, 0));
+        // The kept bytes are at the end of the buffer and start at
+        // the position blockEnd
+        int kept = 0;
+
+        while (blockEnd > from) {
+            int n = (int) Math.min(buffer.length - kept, blockEnd - from);
+            long start = blockEnd - n;
+            int base = buffer.length - kept - n;
+            if (source.read(start, buffer, base, n) != n) {
+                throw new IOException("Unexpected end of the source");
+            }
+
+            int res = matcher.lastIndexOf(buffer, base, buffer.length);
+            if (res != -1) {
+                return start + res - base;
+            }
+
+            kept = Math.min(m - 1, n + kept);
+            System.arraycopy(buffer, base, buffer, buffer.length - kept, kept);
+            blockEnd = start;
+        }
+        return -1;
+    }
+}
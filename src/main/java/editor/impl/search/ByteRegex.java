@@ -0,0 +1,601 @@
+package editor.impl.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The regular expression over bytes compiled into two nondeterministic
+ * automata: the forward one, which finds where the matches end, and
+ * the one of the reversed expression, which finds where they begin.
+ * The automata are not run directly, they are the source of the
+ * states of the {@code LazyDfa}.
+ * <p>
+ * The bytes are written as two hex digits where any digit can be
+ * replaced with <code>?</code>. The whitespace is ignored. The syntax:
+ * <ul>
+ * <li><code>.</code> - any byte;</li>
+ * <li><code>[00-1F 7F]</code> - any of the listed bytes or ranges,
+ * <code>[^0D 0A]</code> - any byte except the listed ones;</li>
+ * <li><code>(...)</code> - a group,
+ * <code>a|b</code> - the alternation;</li>
+ * <li><code>*</code>, <code>+</code>, <code>{n}</code>,
+ * <code>{n,}</code>, <code>{n,m}</code> - the repetitions; the optional
+ * item is written as <code>{0,1}</code>, since <code>?</code> is a
+ * digit wildcard.</li>
+ * </ul>
+ * For example <code>FF D8 .{0,64} FF C0</code>.
+ */
+public class ByteRegex {
+
+    /**
+     * The maximum count of the automaton states.
+     */
+    public static final int MAX_STATES = 1 << 20;
+
+    /**
+     * The maximum count in a bounded repetition.
+     */
+    private static final int MAX_REPEAT = 100_000;
+
+    /**
+     * The state that consumes one byte of its set.
+     */
+    static final byte BYTES = 0;
+
+    /**
+     * The state that moves to both of its successors without input.
+     */
+    static final byte SPLIT = 1;
+
+    /**
+     * The accepting state.
+     */
+    static final byte MATCH = 2;
+
+    /**
+     * The source text of the expression.
+     */
+    private final String text;
+
+    /**
+     * The automaton finding the ends of the matches.
+     */
+    private final Program forward;
+
+    /**
+     * The automaton of the reversed expression.
+     */
+    private final Program reverse;
+
+    /**
+     * Whether the expression matches the empty sequence.
+     */
+    private final boolean matchesEmpty;
+
+    /**
+     * Compiles the expression.
+     *
+     * @param text the expression
+     * @throws IllegalArgumentException if the expression is not valid
+     */
+    public ByteRegex(String text) {
+        this.text = text;
+
+        Node root = new Parser(text).parse();
+        forward = new Program(root, false);
+        reverse = new Program(root, true);
+        matchesEmpty = forward.acceptsEmpty();
+    }
+
+    /**
+     * Returns the source text of the expression.
+     *
+     * @return the expression
+     */
+    public String getText() {
+        return text;
+    }
+
+    /**
+     * Returns true if the expression matches the empty sequence.
+     */
+    public boolean matchesEmpty() {
+        return matchesEmpty;
+    }
+
+    /**
+     * Returns the automaton finding the ends of the matches.
+     */
+    Program forward() {
+        return forward;
+    }
+
+    /**
+     * Returns the automaton of the reversed expression.
+     */
+    Program reverse() {
+        return reverse;
+    }
+
+    /**
+     * Returns the source text of the expression.
+     */
+    @Override
+    public String toString() {
+        return text;
+    }
+
+    /**
+     * The nondeterministic automaton stored in parallel arrays.
+     */
+    static final class Program {
+
+        /**
+         * The state kinds.
+         */
+        byte[] kinds = new byte[16];
+
+        /**
+         * The first successors.
+         */
+        int[] out1 = new int[16];
+
+        /**
+         * The second successors of the split states.
+         */
+        int[] out2 = new int[16];
+
+        /**
+         * The byte sets of the consuming states as four words each.
+         */
+        long[] sets = new long[64];
+
+        /**
+         * The state count.
+         */
+        int size = 0;
+
+        /**
+         * The initial state.
+         */
+        final int start;
+
+        /**
+         * Builds the automaton of the expression or of the reversed one.
+         *
+         * @param root    the parsed expression
+         * @param reverse true - to build the automaton of the reversed
+         *                expression
+         */
+        Program(Node root, boolean reverse) {
+            int match = add(MATCH, -1, -1);
+            start = compile(root, match, reverse);
+        }
+
+        /**
+         * Returns true if the byte is in the set of the consuming state.
+         */
+        boolean accepts(int state, int b) {
+            return (sets[state * 4 + (b >>> 6)] & (1L << b)) != 0;
+        }
+
+        /**
+         * Returns true if the accepting state is reachable from the
+         * initial one without input.
+         */
+        boolean acceptsEmpty() {
+            boolean[] seen = new boolean[size];
+            int[] stack = new int[size];
+            int top = 0;
+            stack[top++] = start;
+            seen[start] = true;
+            while (top > 0) {
+                int s = stack[--top];
+                if (kinds[s] == MATCH) {
+                    return true;
+                }
+                if (kinds[s] == SPLIT) {
+                    for (int t : new int[]{out1[s], out2[s]}) {
+                        if (!seen[t]) {
+                            seen[t] = true;
+                            stack[top++] = t;
+                        }
+                    }
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Compiles the node so that the control goes to the given state
+         * after it. The automaton is built from the end, so no
+         * dangling transitions have to be patched.
+         *
+         * @param node    the compiled node
+         * @param next    the state following the node
+         * @param reverse true - to compile the reversed node
+         * @return the initial state of the node
+         */
+        private int compile(Node node, int next, boolean reverse) {
+            switch (node.kind) {
+                case Node.SET: {
+                    int s = add(BYTES, next, -1);
+                    System.arraycopy(node.set, 0, sets, s * 4, 4);
+                    return s;
+                }
+                case Node.CONCAT: {
+                    int s = next;
+                    int n = node.children.size();
+                    for (int i = 0; i < n; i++) {
+                        Node child = node.children.get(reverse ? i : n - 1 - i);
+                        s = compile(child, s, reverse);
+                    }
+                    return s;
+                }
+                case Node.ALT: {
+                    int n = node.children.size();
+                    int s = compile(node.children.get(n - 1), next, reverse);
+                    for (int i = n - 2; i >= 0; i--) {
+                        s = add(SPLIT,
+                                compile(node.children.get(i), next, reverse), s);
+                    }
+                    return s;
+                }
+                default: {
+                    Node body = node.children.get(0);
+                    int s = next;
+                    if (node.max == -1) {
+                        int loop = add(SPLIT, -1, next);
+                        out1[loop] = compile(body, loop, reverse);
+                        s = loop;
+                    } else {
+                        for (int i = node.min; i < node.max; i++) {
+                            s = add(SPLIT, compile(body, s, reverse), next);
+                        }
+                    }
+                    for (int i = 0; i < node.min; i++) {
+                        s = compile(body, s, reverse);
+                    }
+                    return s;
+                }
+            }
+        }
+
+        /**
+         * Adds the state.
+         *
+         * @return the index of the state
+         */
+        private int add(byte kind, int first, int second) {
+            if (size == MAX_STATES) {
+                throw new IllegalArgumentException("Expression is too big");
+            }
+            if (size == kinds.length) {
+                int capacity = size * 2;
+                kinds = Arrays.copyOf(kinds, capacity);
+                out1 = Arrays.copyOf(out1, capacity);
+                out2 = Arrays.copyOf(out2, capacity);
+                sets = Arrays.copyOf(sets, capacity * 4);
+            }
+            kinds[size] = kind;
+            out1[size] = first;
+            out2[size] = second;
+            return size++;
+        }
+    }
+
+    /**
+     * The node of the parsed expression.
+     */
+    private static final class Node {
+
+        /**
+         * The node kinds: a byte set, a sequence, an alternation and
+         * a repetition.
+         */
+        static final int SET = 0;
+        static final int CONCAT = 1;
+        static final int ALT = 2;
+        static final int REPEAT = 3;
+
+        /**
+         * The node kind.
+         */
+        final int kind;
+
+        /**
+         * The byte set of the SET node as four words.
+         */
+        final long[] set;
+
+        /**
+         * The items of the CONCAT and ALT nodes or the body of the
+         * REPEAT node.
+         */
+        final List<Node> children;
+
+        /**
+         * The minimum repetition count.
+         */
+        final int min;
+
+        /**
+         * The maximum repetition count or -1 if it is unbounded.
+         */
+        final int max;
+
+        Node(int kind, long[] set, List<Node> children, int min, int max) {
+            this.kind = kind;
+            this.set = set;
+            this.children = children;
+            this.min = min;
+            this.max = max;
+        }
+    }
+
+    /**
+     * The recursive descent parser of the expression.
+     */
+    private static final class Parser {
+
+        /**
+         * The expression without whitespace.
+         */
+        private final String text;
+
+        /**
+         * The index of the current character.
+         */
+        private int pos = 0;
+
+        Parser(String text) {
+            this.text = text.replaceAll("\\s+", "");
+        }
+
+        /**
+         * Parses the whole expression.
+         */
+        Node parse() {
+            Node res = alternation();
+            if (pos < text.length()) {
+                throw error("Unexpected '" + text.charAt(pos) + "'");
+            }
+            return res;
+        }
+
+        /**
+         * Parses the items separated with <code>|</code>.
+         */
+        private Node alternation() {
+            List<Node> items = new ArrayList<>();
+            items.add(concatenation());
+            while (peek() == '|') {
+                pos++;
+                items.add(concatenation());
+            }
+            return items.size() == 1 ? items.get(0)
+                    : new Node(Node.ALT, null, items, 0, 0);
+        }
+
+        /**
+         * Parses the sequence of the repeated items.
+         */
+        private Node concatenation() {
+            List<Node> items = new ArrayList<>();
+            while (pos < text.length() && peek() != '|' && peek() != ')') {
+                items.add(repetition());
+            }
+            return items.size() == 1 ? items.get(0)
+                    : new Node(Node.CONCAT, null, items, 0, 0);
+        }
+
+        /**
+         * Parses the item with its repetition operators.
+         */
+        private Node repetition() {
+            Node res = atom();
+            while (true) {
+                char c = peek();
+                if (c == '*') {
+                    pos++;
+                    res = repeat(res, 0, -1);
+                } else if (c == '+') {
+                    pos++;
+                    res = repeat(res, 1, -1);
+                } else if (c == '{') {
+                    pos++;
+                    int min = number();
+                    int max = min;
+                    if (peek() == ',') {
+                        pos++;
+                        max = peek() == '}' ? -1 : number();
+                    }
+                    expect('}');
+                    if (max != -1 && max < min) {
+                        throw error("Bad repetition range");
+                    }
+                    res = repeat(res, min, max);
+                } else {
+                    return res;
+                }
+            }
+        }
+
+        /**
+         * Parses the group, the byte class, any byte or one byte.
+         */
+        private Node atom() {
+            char c = peek();
+            if (c == '(') {
+                pos++;
+                Node res = alternation();
+                expect(')');
+                return res;
+            }
+            if (c == '[') {
+                pos++;
+                return byteClass();
+            }
+            if (c == '.') {
+                pos++;
+                long[] set = new long[4];
+                Arrays.fill(set, -1L);
+                return set(set);
+            }
+            return set(hexByte());
+        }
+
+        /**
+         * Parses the byte class after the opening bracket.
+         */
+        private Node byteClass() {
+            boolean negated = peek() == '^';
+            if (negated) {
+                pos++;
+            }
+
+            long[] set = new long[4];
+            do {
+                long[] first = hexByte();
+                if (peek() == '-') {
+                    pos++;
+                    int low = single(first);
+                    int high = single(hexByte());
+                    if (high < low) {
+                        throw error("Bad byte range");
+                    }
+                    for (int b = low; b <= high; b++) {
+                        set[b >>> 6] |= 1L << b;
+                    }
+                } else {
+                    for (int i = 0; i < 4; i++) {
+                        set[i] |= first[i];
+                    }
+                }
+            } while (peek() != ']' && pos < text.length());
+            expect(']');
+
+            if (negated) {
+                for (int i = 0; i < 4; i++) {
+                    set[i] = ~set[i];
+                }
+            }
+            return set(set);
+        }
+
+        /**
+         * Parses two hex digits where any of them can be a wildcard.
+         *
+         * @return the set of the matching bytes
+         */
+        private long[] hexByte() {
+            if (pos + 2 > text.length()) {
+                throw error("Byte expected");
+            }
+            int value = 0;
+            int mask = 0;
+            for (int i = 0; i < 2; i++) {
+                char c = text.charAt(pos++);
+                value <<= 4;
+                mask <<= 4;
+                if (c != '?') {
+                    int digit = Character.digit(c, 16);
+                    if (digit == -1) {
+                        pos--;
+                        throw error("Hex digit expected");
+                    }
+                    value |= digit;
+                    mask |= 0x0F;
+                }
+            }
+
+            long[] set = new long[4];
+            for (int b = 0; b < 256; b++) {
+                if ((b & mask) == value) {
+                    set[b >>> 6] |= 1L << b;
+                }
+            }
+            return set;
+        }
+
+        /**
+         * Returns the only byte of the set.
+         */
+        private int single(long[] set) {
+            int res = -1;
+            for (int b = 0; b < 256; b++) {
+                if ((set[b >>> 6] & (1L << b)) != 0) {
+                    if (res != -1) {
+                        throw error("Exact byte expected in range");
+                    }
+                    res = b;
+                }
+            }
+            return res;
+        }
+
+        /**
+         * Parses the repetition count.
+         */
+        private int number() {
+            int start = pos;
+            while (pos < text.length() && Character.isDigit(text.charAt(pos))) {
+                pos++;
+            }
+            if (start == pos) {
+                throw error("Number expected");
+            }
+            try {
+                int res = Integer.parseInt(text.substring(start, pos));
+                if (res <= MAX_REPEAT) {
+                    return res;
+                }
+            } catch (NumberFormatException e) {
+                // Reported below as too big
+            }
+            throw error("Repetition count is too big");
+        }
+
+        /**
+         * Returns the repetition node.
+         */
+        private Node repeat(Node body, int min, int max) {
+            List<Node> children = new ArrayList<>();
+            children.add(body);
+            return new Node(Node.REPEAT, null, children, min, max);
+        }
+
+        /**
+         * Returns the byte set node.
+         */
+        private Node set(long[] set) {
+            return new Node(Node.SET, set, null, 0, 0);
+        }
+
+        /**
+         * Returns the current character or zero at the end.
+         */
+        private char peek() {
+            return pos < text.length() ? text.charAt(pos) : '\0';
+        }
+
+        /**
+         * Skips the required character.
+         */
+        private void expect(char c) {
+            if (peek() != c) {
+                throw error("'" + c + "' expected");
+            }
+            pos++;
+        }
+
+        /**
+         * Returns the syntax error at the current position.
+         */
+        private IllegalArgumentException error(String message) {
+            return new IllegalArgumentException(
+                    message + " at " + pos + " in " + text);
+        }
+    }
+}
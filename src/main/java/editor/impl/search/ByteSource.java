@@ -0,0 +1,31 @@
+package editor.impl.search;
+
+import java.io.IOException;
+
+/**
+ * The random access source of bytes the search engines scan.
+ */
+public interface ByteSource {
+
+    /**
+     * Returns the byte count of the source.
+     *
+     * @return the source length
+     */
+    long length();
+
+    /**
+     * Reads the bytes starting from the specified position into the
+     * given array.
+     *
+     * @param offset    the position at which the reading is to begin
+     * @param dst       the array to read the bytes into
+     * @param dstOffset the index in the array of the first read byte
+     * @param count     the maximum read byte count
+     * @return the read byte count which is less than the
+     * <code>count</code> only at the end of the source
+     * @throws IOException if an I/O error occurs
+     */
+    int read(long offset, byte[] dst, int dstOffset, int count)
+            throws IOException;
+}
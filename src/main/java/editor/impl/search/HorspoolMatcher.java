@@ -0,0 +1,156 @@
+package editor.impl.search;
+
+/**
+ * The exact byte pattern matcher based on the Boyer-Moore-Horspool
+ * algorithm. The shift table is computed once for the pattern, the
+ * search is performed directly in the given array without any
+ * allocation, and on average it skips most of the text positions.
+ * The backward search uses the mirrored table keyed by the first byte
+ * of the window, so it skips as far as the forward one.
+ */
+public class HorspoolMatcher implements PatternMatcher {
+
+    /**
+     * The searched pattern.
+     */
+    private final byte[] pattern;
+
+    /**
+     * The shift of the search window for every value of the last
+     * byte of the window.
+     */
+    private final int[] shift = new int[256];
+
+    /**
+     * The backward shift of the search window for every value of the
+     * first byte of the window.
+     */
+    private final int[] backShift = new int[256];
+
+    /**
+     * Constructs the matcher for the given pattern.
+     *
+     * @param pattern the searched bytes
+     */
+    public HorspoolMatcher(byte[] pattern) {
+        this.pattern = pattern.clone();
+
+        int m = pattern.length;
+        for (int i = 0; i < shift.length; i++) {
+            shift[i] = Math.max(m, 1);
+        }
+        for (int i = 0; i < m - 1; i++) {
+            shift[pattern[i] & 0xFF] = m - 1 - i;
+        }
+
+        for (int i = 0; i < backShift.length; i++) {
+            backShift[i] = Math.max(m, 1);
+        }
+        for (int i = m - 1; i > 0; i--) {
+            backShift[pattern[i] & 0xFF] = i;
+        }
+    }
+
+    /**
+     * Returns the length of the pattern.
+     *
+     * @return the byte count of the pattern
+     */
+    @Override
+    public int length() {
+        return pattern.length;
+    }
+
+    /**
+     * Finds the first occurrence of the pattern which lies entirely
+     * within the specified range of the array.
+     *
+     * @param text the array to search in
+     * @param from the index of the first byte of the range
+     * @param to   the index after the last byte of the range
+     * @return the index of the first match or -1 if it was not found
+     */
+    @Override
+    public int indexOf(byte[] text, int from, int to) {
+        int m = pattern.length;
+        if (m == 0) {
+            return from <= to ? from : -1;
+        }
+
+        int last = m - 1;
+        byte lastByte = pattern[last];
+
+        for (int i = from; i <= to - m; ) {
+            byte b = text[i + last];
+            if (b == lastByte && matchesAt(text, i)) {
+                return i;
+            }
+            i += shift[b & 0xFF];
+        }
+        return -1;
+    }
+
+    /**
+     * Finds the last occurrence of the pattern which lies entirely
+     * within the specified range of the array.
+     *
+     * @param text the array to search in
+     * @param from the index of the first byte of the range
+     * @param to   the index after the last byte of the range
+     * @return the index of the last match or -1 if it was not found
+     */
+    @Override
+    public int lastIndexOf(byte[] text, int from, int to) {
+        int m = pattern.length;
+        if (m == 0) {
+            return from <= to ? to : -1;
+        }
+
+        byte firstByte = pattern[0];
+
+        for (int i = to - m; i >= from; ) {
+            byte b = text[i];
+            if (b == firstByte && matchesFrom(text, i)) {
+                return i;
+            }
+            i -= backShift[b & 0xFF];
+        }
+        return -1;
+    }
+
+    /**
+     * Compares the pattern with the array bytes at the specified
+     * position except the first pattern byte which is already
+     * compared.
+     *
+     * @param text the array to search in
+     * @param pos  the index of the compared window
+     * @return true if the pattern matches
+     */
+    private boolean matchesFrom(byte[] text, int pos) {
+        for (int j = 1; j < pattern.length; j++) {
+            if (text[pos + j] != pattern[j]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Compares the pattern with the array bytes at the specified
+     * position except the last pattern byte which is already
+     * compared.
+     *
+     * @param text the array to search in
+     * @param pos  the index of the compared window
+     * @return true if the pattern matches
+     */
+    private boolean matchesAt(byte[] text, int pos) {
+        for (int j = pattern.length - 2; j >= 0; j--) {
+            if (text[pos + j] != pattern[j]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,346 @@
+package editor.impl.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * The deterministic automaton which is built from the nondeterministic
+ * one while it runs. Every state is the set of the automaton states
+ * reached so far, and a transition is computed the first time it is
+ * taken, so only the states the text really leads to are built. Once
+ * a transition is known it costs one table lookup.
+ * <p>
+ * The states are kept in a cache of a bounded size. When it is full
+ * the cache is dropped and the building continues from the current
+ * state, so the memory stays bounded and the time stays linear in the
+ * text length for any expression.
+ */
+public class LazyDfa {
+
+    /**
+     * The default maximum count of the cached states.
+     */
+    public static final int DEFAULT_MAX_STATES = 4096;
+
+    /**
+     * The transition which is not computed yet.
+     */
+    private static final int UNKNOWN = -1;
+
+    /**
+     * The state without any automaton states, it never accepts.
+     */
+    public static final int DEAD = 0;
+
+    /**
+     * The automaton the states are built from.
+     */
+    private final ByteRegex.Program program;
+
+    /**
+     * Whether a match can start at any position, so the initial
+     * automaton state is added to every state.
+     */
+    private final boolean unanchored;
+
+    /**
+     * The maximum count of the cached states.
+     */
+    private final int maxStates;
+
+    /**
+     * The automaton states of every cached state.
+     */
+    private final List<int[]> sets = new ArrayList<>();
+
+    /**
+     * The cached states by their automaton states.
+     */
+    private final HashMap<StateKey, Integer> ids = new HashMap<>();
+
+    /**
+     * The transitions of every cached state, 256 per state.
+     */
+    private final int[] transitions;
+
+    /**
+     * Whether every cached state accepts.
+     */
+    private final boolean[] accepting;
+
+    /**
+     * The initial automaton states.
+     */
+    private final int[] startSet;
+
+    /**
+     * The initial state.
+     */
+    private int start;
+
+    /**
+     * The count of the times the cache was dropped.
+     */
+    private int flushCount = 0;
+
+    /**
+     * The visited marks of the automaton states.
+     */
+    private final int[] marks;
+
+    /**
+     * The current value of the visited marks.
+     */
+    private int generation = 0;
+
+    /**
+     * The stack of the closure traversal.
+     */
+    private final int[] stack;
+
+    /**
+     * The reached states of the closure traversal.
+     */
+    private final int[] reached;
+
+    /**
+     * Constructs the automaton.
+     *
+     * @param program    the automaton the states are built from
+     * @param unanchored true - if a match can start at any position
+     * @param maxStates  the maximum count of the cached states
+     */
+    LazyDfa(ByteRegex.Program program, boolean unanchored, int maxStates) {
+        if (maxStates < 3) {
+            throw new IllegalArgumentException(
+                    "Too few states: " + maxStates);
+        }
+        this.program = program;
+        this.unanchored = unanchored;
+        this.maxStates = maxStates;
+        this.marks = new int[program.size];
+        this.stack = new int[program.size];
+        this.reached = new int[program.size];
+        this.transitions = new int[maxStates * 256];
+        this.accepting = new boolean[maxStates];
+
+        startSet = closure(new int[]{program.start}, 1);
+        flush();
+    }
+
+    /**
+     * Returns the automaton which finds the ends of the matches
+     * starting at any position.
+     *
+     * @param regex     the expression
+     * @param maxStates the maximum count of the cached states
+     * @return the forward automaton
+     */
+    public static LazyDfa forward(ByteRegex regex, int maxStates) {
+        return new LazyDfa(regex.forward(), true, maxStates);
+    }
+
+    /**
+     * Returns the automaton of the reversed expression which is run
+     * backwards from the end of a match to find its beginning.
+     *
+     * @param regex     the expression
+     * @param maxStates the maximum count of the cached states
+     * @return the reverse automaton
+     */
+    public static LazyDfa reverse(ByteRegex regex, int maxStates) {
+        return new LazyDfa(regex.reverse(), false, maxStates);
+    }
+
+    /**
+     * Returns the initial state.
+     */
+    public int start() {
+        return start;
+    }
+
+    /**
+     * Returns the state after the given byte. The states are valid
+     * until the cache is dropped by one of the calls, so only the
+     * current state can be kept between them.
+     *
+     * @param state the current state
+     * @param b     the byte value from 0 to 255
+     * @return the next state
+     */
+    public int next(int state, int b) {
+        int res = transitions[state * 256 + b];
+        if (res != UNKNOWN) {
+            return res;
+        }
+        return computeNext(state, b);
+    }
+
+    /**
+     * Returns true if the state contains a match.
+     */
+    public boolean isAccepting(int state) {
+        return accepting[state];
+    }
+
+    /**
+     * Returns the count of the times the state cache was dropped.
+     */
+    public int getFlushCount() {
+        return flushCount;
+    }
+
+    /**
+     * Returns the count of the cached states.
+     */
+    public int getStateCount() {
+        return sets.size();
+    }
+
+    /**
+     * Computes the transition and stores it in the table.
+     *
+     * @param state the current state
+     * @param b     the byte value
+     * @return the next state
+     */
+    private int computeNext(int state, int b) {
+        int[] set = sets.get(state);
+        int[] moved = new int[set.length + (unanchored ? 1 : 0)];
+        int count = 0;
+        for (int s : set) {
+            if (program.kinds[s] == ByteRegex.BYTES && program.accepts(s, b)) {
+                moved[count++] = program.out1[s];
+            }
+        }
+        if (unanchored) {
+            moved[count++] = program.start;
+        }
+
+        int[] next = closure(moved, count);
+        Integer id = ids.get(new StateKey(next));
+        if (id == null) {
+            if (sets.size() == maxStates) {
+                // The current state is dropped with the cache, so the
+                // transition is not stored
+                flush();
+                return intern(next);
+            }
+            id = intern(next);
+        }
+        transitions[state * 256 + b] = id;
+        return id;
+    }
+
+    /**
+     * Drops all the cached states except the dead and the initial ones.
+     */
+    private void flush() {
+        if (!sets.isEmpty()) {
+            flushCount++;
+        }
+        sets.clear();
+        ids.clear();
+        Arrays.fill(transitions, UNKNOWN);
+        Arrays.fill(accepting, false);
+
+        intern(new int[0]);
+        Arrays.fill(transitions, 0, 256, DEAD);
+        start = intern(startSet);
+    }
+
+    /**
+     * Adds the state to the cache.
+     *
+     * @param set the sorted automaton states
+     * @return the state index
+     */
+    private int intern(int[] set) {
+        Integer id = ids.get(new StateKey(set));
+        if (id != null) {
+            return id;
+        }
+
+        int res = sets.size();
+        sets.add(set);
+        ids.put(new StateKey(set), res);
+        for (int s : set) {
+            if (program.kinds[s] == ByteRegex.MATCH) {
+                accepting[res] = true;
+            }
+        }
+        return res;
+    }
+
+    /**
+     * Returns the consuming and the accepting states reachable from
+     * the given ones without input.
+     *
+     * @param states the states to start from
+     * @param count  the count of the states in the array
+     * @return the sorted states
+     */
+    private int[] closure(int[] states, int count) {
+        generation++;
+        int top = 0;
+        for (int i = 0; i < count; i++) {
+            if (marks[states[i]] != generation) {
+                marks[states[i]] = generation;
+                stack[top++] = states[i];
+            }
+        }
+
+        int size = 0;
+        while (top > 0) {
+            int s = stack[--top];
+            if (program.kinds[s] == ByteRegex.SPLIT) {
+                for (int t : new int[]{program.out1[s], program.out2[s]}) {
+                    if (marks[t] != generation) {
+                        marks[t] = generation;
+                        stack[top++] = t;
+                    }
+                }
+            } else {
+                reached[size++] = s;
+            }
+        }
+
+        int[] res = Arrays.copyOf(reached, size);
+        Arrays.sort(res);
+        return res;
+    }
+
+    /**
+     * The key of the state cache comparing the automaton states.
+     */
+    private static final class StateKey {
+
+        /**
+         * The sorted automaton states.
+         */
+        private final int[] set;
+
+        /**
+         * The cached hash code.
+         */
+        private final int hash;
+
+        StateKey(int[] set) {
+            this.set = set;
+            this.hash = Arrays.hashCode(set);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof StateKey
+                    && Arrays.equals(set, ((StateKey) o).set);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
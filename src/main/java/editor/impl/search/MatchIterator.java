@@ -0,0 +1,164 @@
+package editor.impl.search;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+/**
+ * The lazy iterator over the positions of all the matches of a
+ * byte pattern, overlapping ones included. The source is read in one
+ * pass by blocks into one reused buffer, and the next block is read
+ * only when the previous one has no more matches, so the consumer can
+ * stop at any time without reading the rest of the source.
+ */
+public class MatchIterator implements PrimitiveIterator.OfLong {
+
+    /**
+     * The bytes to search in.
+     */
+    private final ByteSource source;
+
+    /**
+     * The matcher of the searched pattern.
+     */
+    private final PatternMatcher matcher;
+
+    /**
+     * The buffer with the current block.
+     */
+    private final byte[] buffer;
+
+    /**
+     * The source position of the first buffer byte.
+     */
+    private long bufferStart;
+
+    /**
+     * The count of the valid bytes in the buffer.
+     */
+    private int bufferLength = 0;
+
+    /**
+     * The buffer index the scanning is to continue from.
+     */
+    private int scanIndex = 0;
+
+    /**
+     * The count of the matches that can still be returned.
+     */
+    private long remaining;
+
+    /**
+     * The position of the next match or -1 if it was not found yet.
+     */
+    private long next = -1;
+
+    /**
+     * Whether the whole source was read.
+     */
+    private boolean exhausted;
+
+    /**
+     * Constructs the iterator. Nothing is read until the first match
+     * is requested.
+     *
+     * @param source  the bytes to search in
+     * @param from    the position at which the searching is to begin
+     * @param matcher the matcher of the searched pattern which must
+     *                not be empty
+     * @param limit   the maximum count of the returned matches
+     */
+    public MatchIterator(ByteSource source, long from,
+                         PatternMatcher matcher, long limit) {
+        if (matcher.length() == 0) {
+            throw new IllegalArgumentException("Empty pattern");
+        }
+        this.source = source;
+        this.matcher = matcher;
+        this.buffer = new byte[Math.max(matcher.length() * 2,
+                BlockSearch.BLOCK_SIZE)];
+        this.bufferStart = Math.max(from, 0);
+        this.remaining = limit;
+        this.exhausted = limit <= 0;
+    }
+
+    /**
+     * Returns true if there is one more match.
+     *
+     * @throws UncheckedIOException if an I/O error occurs
+     */
+    @Override
+    public boolean hasNext() {
+        if (next != -1) {
+            return true;
+        }
+        if (remaining <= 0) {
+            return false;
+        }
+
+        try {
+            next = scan();
+        } catch (IOException e) {
+            exhausted = true;
+            throw new UncheckedIOException(e);
+        }
+        return next != -1;
+    }
+
+    /**
+     * Returns the position of the next match.
+     *
+     * @throws NoSuchElementException if there are no more matches
+     * @throws UncheckedIOException   if an I/O error occurs
+     */
+    @Override
+    public long nextLong() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        long res = next;
+        next = -1;
+        remaining--;
+        return res;
+    }
+
+    /**
+     * Scans the buffer reading the next blocks until a match is found.
+     *
+     * @return the match position or -1 if the source has no more
+     * matches
+     * @throws IOException if an I/O error occurs
+     */
+    private long scan() throws IOException {
+        int m = matcher.length();
+
+        while (true) {
+            int res = matcher.indexOf(buffer, scanIndex, bufferLength);
+            if (res != -1) {
+                scanIndex = res + 1;
+                return bufferStart + res;
+            }
+            if (exhausted) {
+                return -1;
+            }
+
+            // The tail shorter than the pattern is kept to consider
+            // the case when a match is divided between two blocks
+            int keepFrom = Math.max(scanIndex, bufferLength - (m - 1));
+            int kept = bufferLength - keepFrom;
+            System.arraycopy(buffer, keepFrom, buffer, 0, kept);
+            bufferStart += keepFrom;
+            bufferLength = kept;
+            scanIndex = 0;
+
+            int n = source.read(bufferStart + kept, buffer, kept,
+                    buffer.length - kept);
+            if (n <= 0) {
+                exhausted = true;
+                return -1;
+            }
+            bufferLength += n;
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package editor.impl.search;
+
+import editor.ProgressMonitor;
+
+import java.io.IOException;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The {@code ByteSource} which reports every read to a
+ * {@code ProgressMonitor} and stops the search once the monitor is
+ * cancelled. The cancellation is checked before every read, so the
+ * search stops within one block whatever engine runs it.
+ */
+public class MonitoredSource implements ByteSource {
+
+    /**
+     * The source the bytes are read from.
+     */
+    private final ByteSource source;
+
+    /**
+     * The receiver of the progress.
+     */
+    private final ProgressMonitor monitor;
+
+    /**
+     * The count of the bytes the search is expected to read.
+     */
+    private final long total;
+
+    /**
+     * The count of the read bytes.
+     */
+    private final AtomicLong done = new AtomicLong();
+
+    /**
+     * Constructs the source.
+     *
+     * @param source  the source the bytes are read from
+     * @param monitor the receiver of the progress
+     * @param total   the count of the bytes the search is expected to
+     *                read
+     */
+    public MonitoredSource(ByteSource source, ProgressMonitor monitor,
+                           long total) {
+        this.source = source;
+        this.monitor = monitor;
+        this.total = total;
+    }
+
+    /**
+     * Returns the byte count of the source.
+     *
+     * @return the source length
+     */
+    @Override
+    public long length() {
+        return source.length();
+    }
+
+    /**
+     * Reads the bytes and reports the progress.
+     *
+     * @throws CancellationException if the monitor was cancelled
+     * @throws IOException           if an I/O error occurs
+     */
+    @Override
+    public int read(long offset, byte[] dst, int dstOffset, int count)
+            throws IOException {
+        if (monitor.isCancelled()) {
+            throw new CancellationException("Search cancelled");
+        }
+        int n = source.read(offset, dst, dstOffset, count);
+        monitor.progress(done.addAndGet(n), total);
+        return n;
+    }
+}
@@ -0,0 +1,460 @@
+package editor.impl.search;
+
+import editor.BytePattern;
+import editor.ProgressMonitor;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+
+import static java.nio.file.StandardOpenOption.DELETE_ON_CLOSE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * The index of the 4-byte grams of a read-only file. The file is split
+ * into blocks, and for every gram the index keeps the sorted list of
+ * the blocks in which it starts. The grams are hashed into a fixed
+ * number of buckets, so a list may contain some blocks of other grams
+ * too: the index only tells in which blocks a match can start, the
+ * blocks are still scanned.
+ * <p>
+ * While the index is built the postings are collected in a buffer of
+ * a bounded size which is sorted and spilled to a temporary run file
+ * when it is full. At the end the runs are merged into one temporary
+ * file with the lists encoded as variable-length gaps; only the
+ * positions of the lists are kept in memory.
+ */
+public class NGramIndex implements Closeable {
+
+    /**
+     * The length of the indexed grams.
+     */
+    public static final int GRAM_LENGTH = 4;
+
+    /**
+     * The default size of the indexed block.
+     */
+    public static final int DEFAULT_BLOCK_SIZE = 64 * 1024;
+
+    /**
+     * The default binary logarithm of the bucket count.
+     */
+    public static final int DEFAULT_BUCKET_BITS = 20;
+
+    /**
+     * The default memory budget of the posting buffer.
+     */
+    public static final long DEFAULT_MEMORY_LIMIT = 64L * 1024 * 1024;
+
+    /**
+     * The maximum count of the grams of a pattern used in one query.
+     */
+    private static final int MAX_QUERY_GRAMS = 8;
+
+    /**
+     * The size of the indexed block.
+     */
+    private final int blockSize;
+
+    /**
+     * The binary logarithm of the bucket count.
+     */
+    private final int bucketBits;
+
+    /**
+     * The length of the indexed file.
+     */
+    private final long length;
+
+    /**
+     * The positions of the lists of every bucket in the postings file
+     * with the end of the last list after them.
+     */
+    private final long[] directory;
+
+    /**
+     * The temporary file with the posting lists.
+     */
+    private final FileChannel postings;
+
+    /**
+     * Constructs the built index.
+     */
+    private NGramIndex(int blockSize, int bucketBits, long length,
+                       long[] directory, FileChannel postings) {
+        this.blockSize = blockSize;
+        this.bucketBits = bucketBits;
+        this.length = length;
+        this.directory = directory;
+        this.postings = postings;
+    }
+
+    /**
+     * Builds the index with the default parameters.
+     *
+     * @param source  the indexed bytes which must not change
+     * @param monitor the receiver of the progress which can cancel the
+     *                building or null
+     * @return the built index
+     * @throws IOException           if an I/O error occurs
+     * @throws CancellationException if the building was cancelled
+     */
+    public static NGramIndex build(ByteSource source, ProgressMonitor monitor)
+            throws IOException {
+        return build(source, monitor, DEFAULT_BLOCK_SIZE,
+                DEFAULT_BUCKET_BITS, DEFAULT_MEMORY_LIMIT);
+    }
+
+    /**
+     * Builds the index.
+     *
+     * @param source      the indexed bytes which must not change
+     * @param monitor     the receiver of the progress which can cancel
+     *                    the building or null
+     * @param blockSize   the size of the indexed block
+     * @param bucketBits  the binary logarithm of the bucket count
+     * @param memoryLimit the memory budget of the posting buffer
+     * @return the built index
+     * @throws IOException           if an I/O error occurs
+     * @throws CancellationException if the building was cancelled
+     */
+    public static NGramIndex build(ByteSource source, ProgressMonitor monitor,
+                                   int blockSize, int bucketBits,
+                                   long memoryLimit) throws IOException {
+        if (blockSize < GRAM_LENGTH || bucketBits < 1 || bucketBits > 28) {
+            throw new IllegalArgumentException("Bad index parameters: "
+                    + blockSize + ", " + bucketBits);
+        }
+
+        long length = source.length();
+        int buckets = 1 << bucketBits;
+        long[] pairs = new long[(int) Math.max(blockSize,
+                Math.min(memoryLimit / Long.BYTES, Integer.MAX_VALUE - 8))];
+        int pairCount = 0;
+        List<Path> runs = new ArrayList<>();
+
+        // The block in which every bucket was last seen
+        int[] seen = new int[buckets];
+        Arrays.fill(seen, -1);
+        byte[] buffer = new byte[blockSize + GRAM_LENGTH - 1];
+
+        try {
+            long blockCount = (length + blockSize - 1) / blockSize;
+            for (int block = 0; block < blockCount; block++) {
+                if (monitor != null && monitor.isCancelled()) {
+                    throw new CancellationException("Indexing cancelled");
+                }
+
+                long start = (long) block * blockSize;
+                int n = (int) Math.min(buffer.length, length - start);
+                if (source.read(start, buffer, 0, n) != n) {
+                    throw new IOException("Unexpected end of the source");
+                }
+
+                if (pairCount + blockSize > pairs.length) {
+                    runs.add(writeRun(pairs, pairCount));
+                    pairCount = 0;
+                }
+                for (int i = 0; i + GRAM_LENGTH <= n && i < blockSize; i++) {
+                    int bucket = bucketOf(gramAt(buffer, i), bucketBits);
+                    if (seen[bucket] != block) {
+                        seen[bucket] = block;
+                        pairs[pairCount++] = (long) bucket << 32 | block;
+                    }
+                }
+
+                if (monitor != null) {
+                    monitor.progress(Math.min(start + blockSize, length),
+                            length);
+                }
+            }
+            runs.add(writeRun(pairs, pairCount));
+            pairs = null;
+
+            return merge(runs, blockSize, bucketBits, length);
+        } finally {
+            for (Path run : runs) {
+                Files.deleteIfExists(run);
+            }
+        }
+    }
+
+    /**
+     * Returns the size of the indexed block.
+     */
+    public int getBlockSize() {
+        return blockSize;
+    }
+
+    /**
+     * Returns the length of the indexed file.
+     */
+    public long length() {
+        return length;
+    }
+
+    /**
+     * Returns the blocks in which a match of the pattern can start.
+     * Only the grams of the exact pattern bytes are used.
+     *
+     * @param pattern the searched pattern
+     * @return the sorted block indices or null if the pattern has no
+     * exact gram, so every block is a candidate
+     * @throws IOException if an I/O error occurs
+     */
+    public int[] candidateBlocks(BytePattern pattern) throws IOException {
+        int[] res = null;
+        int used = 0;
+
+        // The grams are spread over the pattern to make them differ
+        List<Integer> offsets = exactGramOffsets(pattern);
+        int step = Math.max(1, offsets.size() / MAX_QUERY_GRAMS);
+        for (int k = 0; k < offsets.size() && used < MAX_QUERY_GRAMS;
+             k += step, used++) {
+            int j = offsets.get(k);
+            byte[] gram = new byte[GRAM_LENGTH];
+            for (int i = 0; i < GRAM_LENGTH; i++) {
+                gram[i] = pattern.getValue(j + i);
+            }
+
+            // The gram at the offset j starts in the block of the
+            // match or in one of the next blocks
+            int[] blocks = shiftBack(readList(bucketOf(
+                    gramAt(gram, 0), bucketBits)), j);
+            res = res == null ? blocks : intersect(res, blocks);
+            if (res.length == 0) {
+                break;
+            }
+        }
+        return res;
+    }
+
+    /**
+     * Deletes the postings file.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    @Override
+    public void close() throws IOException {
+        postings.close();
+    }
+
+    /**
+     * Returns the offsets of the pattern grams which consist of the
+     * exact bytes.
+     */
+    private static List<Integer> exactGramOffsets(BytePattern pattern) {
+        List<Integer> res = new ArrayList<>();
+        int exact = 0;
+        for (int i = 0; i < pattern.length(); i++) {
+            exact = pattern.getMask(i) == (byte) 0xFF ? exact + 1 : 0;
+            if (exact >= GRAM_LENGTH) {
+                res.add(i - GRAM_LENGTH + 1);
+            }
+        }
+        return res;
+    }
+
+    /**
+     * Returns the blocks in which the match can start if its gram at
+     * the given offset starts in one of the given blocks.
+     *
+     * @param blocks the sorted blocks of the gram
+     * @param offset the offset of the gram in the pattern
+     * @return the sorted blocks of the match
+     */
+    private int[] shiftBack(int[] blocks, int offset) {
+        int spread = (offset + blockSize - 1) / blockSize;
+        int[] res = new int[blocks.length * (spread + 1)];
+        int count = 0;
+        for (int b : blocks) {
+            for (int s = Math.max(0, b - spread); s <= b; s++) {
+                if (count == 0 || res[count - 1] < s) {
+                    res[count++] = s;
+                }
+            }
+        }
+        return Arrays.copyOf(res, count);
+    }
+
+    /**
+     * Returns the blocks present in both sorted arrays.
+     */
+    private static int[] intersect(int[] a, int[] b) {
+        int[] res = new int[Math.min(a.length, b.length)];
+        int count = 0;
+        for (int i = 0, j = 0; i < a.length && j < b.length; ) {
+            if (a[i] < b[j]) {
+                i++;
+            } else if (a[i] > b[j]) {
+                j++;
+            } else {
+                res[count++] = a[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(res, count);
+    }
+
+    /**
+     * Reads the posting list of the bucket.
+     *
+     * @param bucket the bucket index
+     * @return the sorted blocks
+     * @throws IOException if an I/O error occurs
+     */
+    private int[] readList(int bucket) throws IOException {
+        long from = directory[bucket];
+        int size = (int) (directory[bucket + 1] - from);
+        ByteBuffer bytes = ByteBuffer.allocate(size);
+        while (bytes.hasRemaining()) {
+            if (postings.read(bytes, from + bytes.position()) == -1) {
+                throw new IOException("Unexpected end of the index");
+            }
+        }
+
+        // Every gap takes at least one byte
+        int[] res = new int[size];
+        int count = 0;
+        int block = -1;
+        int pos = 0;
+        byte[] data = bytes.array();
+        while (pos < size) {
+            int gap = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = data[pos++];
+                gap |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            block += gap;
+            res[count++] = block;
+        }
+        return Arrays.copyOf(res, count);
+    }
+
+    /**
+     * Sorts the postings and writes them to a run file.
+     *
+     * @return the path of the run file
+     */
+    private static Path writeRun(long[] pairs, int count) throws IOException {
+        Arrays.sort(pairs, 0, count);
+        Path run = Files.createTempFile("~", ".run");
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(run), 1 << 16))) {
+            out.writeInt(count);
+            for (int i = 0; i < count; i++) {
+                out.writeLong(pairs[i]);
+            }
+        }
+        return run;
+    }
+
+    /**
+     * Merges the runs into the postings file. The runs cover the
+     * increasing ranges of the blocks, so the list of a bucket is the
+     * concatenation of its parts in the run order.
+     */
+    private static NGramIndex merge(List<Path> runs, int blockSize,
+                                    int bucketBits, long length)
+            throws IOException {
+        int buckets = 1 << bucketBits;
+        long[] directory = new long[buckets + 1];
+
+        DataInputStream[] inputs = new DataInputStream[runs.size()];
+        int[] remaining = new int[runs.size()];
+        long[] heads = new long[runs.size()];
+        Path path = Files.createTempFile("~", ".idx");
+        FileChannel channel = FileChannel.open(path, READ, WRITE, DELETE_ON_CLOSE);
+
+        // The stream is only flushed, since closing it would close the
+        // channel the lists are read from
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                Channels.newOutputStream(channel), 1 << 16));
+        try {
+            for (int r = 0; r < inputs.length; r++) {
+                inputs[r] = new DataInputStream(new BufferedInputStream(
+                        Files.newInputStream(runs.get(r)), 1 << 16));
+                remaining[r] = inputs[r].readInt();
+                heads[r] = remaining[r] > 0 ? inputs[r].readLong() : -1;
+            }
+
+            long written = 0;
+            for (int bucket = 0; bucket < buckets; bucket++) {
+                directory[bucket] = written;
+                int previous = -1;
+                for (int r = 0; r < inputs.length; r++) {
+                    while (heads[r] != -1 && (int) (heads[r] >>> 32) == bucket) {
+                        int block = (int) heads[r];
+                        written += writeGap(out, block - previous);
+                        previous = block;
+                        remaining[r]--;
+                        heads[r] = remaining[r] > 0 ? inputs[r].readLong() : -1;
+                    }
+                }
+            }
+            directory[buckets] = written;
+            out.flush();
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        } finally {
+            for (DataInputStream in : inputs) {
+                if (in != null) {
+                    in.close();
+                }
+            }
+        }
+
+        return new NGramIndex(blockSize, bucketBits, length, directory,
+                channel);
+    }
+
+    /**
+     * Writes the gap as the 7-bit groups with the continuation bit.
+     *
+     * @return the count of the written bytes
+     */
+    private static int writeGap(DataOutputStream out, int gap)
+            throws IOException {
+        int count = 1;
+        while ((gap & ~0x7F) != 0) {
+            out.writeByte((gap & 0x7F) | 0x80);
+            gap >>>= 7;
+            count++;
+        }
+        out.writeByte(gap);
+        return count;
+    }
+
+    /**
+     * Returns the gram starting at the specified index as an int.
+     */
+    private static int gramAt(byte[] data, int index) {
+        return (data[index] & 0xFF) << 24 | (data[index + 1] & 0xFF) << 16
+                | (data[index + 2] & 0xFF) << 8 | (data[index + 3] & 0xFF);
+    }
+
+    /**
+     * Returns the bucket of the gram.
+     */
+    private static int bucketOf(int gram, int bucketBits) {
+        return (gram * 0x9E3779B1) >>> (32 - bucketBits);
+    }
+}
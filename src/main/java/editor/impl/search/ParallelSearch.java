@@ -0,0 +1,163 @@
+package editor.impl.search;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The search of a byte pattern which splits the range into
+ * segments and scans them on a {@code ForkJoinPool}. Every segment is
+ * read as far as a match starting in it can reach, so the matches on
+ * the segment borders are found. The lowest found position is shared
+ * by the tasks: once a match is confirmed the segments which start
+ * after it are cancelled.
+ */
+public class ParallelSearch {
+
+    /**
+     * The minimum size of one segment.
+     */
+    public static final long MIN_SEGMENT_SIZE = 16L * 1024 * 1024;
+
+    /**
+     * The pool the segments are scanned on.
+     */
+    private final ForkJoinPool pool;
+
+    /**
+     * The minimum size of one segment used by this search.
+     */
+    private final long minSegmentSize;
+
+    /**
+     * Constructs the search that uses the common pool.
+     */
+    public ParallelSearch() {
+        this(ForkJoinPool.commonPool(), MIN_SEGMENT_SIZE);
+    }
+
+    /**
+     * Constructs the search.
+     *
+     * @param pool           the pool the segments are scanned on
+     * @param minSegmentSize the minimum size of one segment
+     */
+    public ParallelSearch(ForkJoinPool pool, long minSegmentSize) {
+        if (minSegmentSize <= 0) {
+            throw new IllegalArgumentException(
+                    "Non-positive segment size: " + minSegmentSize);
+        }
+        this.pool = pool;
+        this.minSegmentSize = minSegmentSize;
+    }
+
+    /**
+     * Finds the first match which starts at or after the specified
+     * position.
+     *
+     * @param source  the bytes to search in; it must allow reading
+     *                from several threads
+     * @param from    the position at which the searching is to begin
+     * @param matcher the matcher of the searched pattern
+     * @return the lowest match position or -1 if it was not found
+     * @throws IOException if an I/O error occurs
+     */
+    public long find(ByteSource source, long from, PatternMatcher matcher)
+            throws IOException {
+        long length = source.length();
+        if (from >= length) {
+            return -1;
+        }
+
+        long segmentSize = Math.max(minSegmentSize,
+                (length - from) / (pool.getParallelism() * 4L) + 1);
+        AtomicLong best = new AtomicLong(Long.MAX_VALUE);
+
+        try {
+            pool.invoke(new SegmentTask(source, from, length, segmentSize,
+                    matcher, best));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        long res = best.get();
+        return res == Long.MAX_VALUE ? -1 : res;
+    }
+
+    /**
+     * The task that scans a range splitting it into halves until it
+     * is not bigger than one segment.
+     */
+    private static class SegmentTask extends RecursiveAction {
+
+        /**
+         * The bytes to search in.
+         */
+        private final ByteSource source;
+
+        /**
+         * The position of the first byte of the range.
+         */
+        private final long from;
+
+        /**
+         * The position after the last byte of the range.
+         */
+        private final long to;
+
+        /**
+         * The maximum range size that is scanned without splitting.
+         */
+        private final long segmentSize;
+
+        /**
+         * The matcher of the searched pattern.
+         */
+        private final PatternMatcher matcher;
+
+        /**
+         * The lowest match position found by all the tasks.
+         */
+        private final AtomicLong best;
+
+        SegmentTask(ByteSource source, long from, long to, long segmentSize,
+                    PatternMatcher matcher, AtomicLong best) {
+            this.source = source;
+            this.from = from;
+            this.to = to;
+            this.segmentSize = segmentSize;
+            this.matcher = matcher;
+            this.best = best;
+        }
+
+        @Override
+        protected void compute() {
+            // An earlier match makes this range useless
+            if (from >= best.get()) {
+                return;
+            }
+
+            if (to - from > segmentSize) {
+                long mid = from + (to - from) / 2;
+                invokeAll(
+                        new SegmentTask(source, from, mid, segmentSize,
+                                matcher, best),
+                        new SegmentTask(source, mid, to, segmentSize,
+                                matcher, best));
+                return;
+            }
+
+            try {
+                long res = BlockSearch.find(source, from, to, matcher,
+                        best::get);
+                if (res != -1) {
+                    best.accumulateAndGet(res, Math::min);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
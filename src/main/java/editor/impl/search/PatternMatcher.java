@@ -0,0 +1,37 @@
+package editor.impl.search;
+
+/**
+ * The matcher of a fixed-length byte pattern that scans a range of an
+ * array in place.
+ */
+public interface PatternMatcher {
+
+    /**
+     * Returns the length of the pattern.
+     *
+     * @return the byte count of the pattern
+     */
+    int length();
+
+    /**
+     * Finds the first occurrence of the pattern which lies entirely
+     * within the specified range of the array.
+     *
+     * @param text the array to search in
+     * @param from the index of the first byte of the range
+     * @param to   the index after the last byte of the range
+     * @return the index of the first match or -1 if it was not found
+     */
+    int indexOf(byte[] text, int from, int to);
+
+    /**
+     * Finds the last occurrence of the pattern which lies entirely
+     * within the specified range of the array.
+     *
+     * @param text the array to search in
+     * @param from the index of the first byte of the range
+     * @param to   the index after the last byte of the range
+     * @return the index of the last match or -1 if it was not found
+     */
+    int lastIndexOf(byte[] text, int from, int to);
+}
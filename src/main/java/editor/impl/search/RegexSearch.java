@@ -0,0 +1,152 @@
+package editor.impl.search;
+
+import java.io.IOException;
+
+/**
+ * The search of a {@code ByteRegex} in a {@code ByteSource}. The source
+ * is read by blocks, and every byte is fed to the lazily built forward
+ * automaton, so the time is linear in the scanned length and a match
+ * may cross any block border. When the automaton accepts, the end of
+ * the first match is known; its beginning is found by running the
+ * automaton of the reversed expression backwards from that end.
+ * <p>
+ * The found match is the one that ends first, and among the matches
+ * with that end the longest one.
+ */
+public class RegexSearch {
+
+    /**
+     * The expression to search.
+     */
+    private final ByteRegex regex;
+
+    /**
+     * The automaton finding the ends of the matches.
+     */
+    private final LazyDfa forward;
+
+    /**
+     * The automaton finding the beginnings of the matches.
+     */
+    private final LazyDfa reverse;
+
+    /**
+     * The buffer the source is read into.
+     */
+    private final byte[] buffer = new byte[BlockSearch.BLOCK_SIZE];
+
+    /**
+     * The end of the last found match.
+     */
+    private long matchEnd = -1;
+
+    /**
+     * Constructs the search with the default state cache size.
+     *
+     * @param regex the expression to search
+     */
+    public RegexSearch(ByteRegex regex) {
+        this(regex, LazyDfa.DEFAULT_MAX_STATES);
+    }
+
+    /**
+     * Constructs the search.
+     *
+     * @param regex     the expression to search
+     * @param maxStates the maximum count of the cached states of each
+     *                  of the automata
+     */
+    public RegexSearch(ByteRegex regex, int maxStates) {
+        this.regex = regex;
+        this.forward = LazyDfa.forward(regex, maxStates);
+        this.reverse = LazyDfa.reverse(regex, maxStates);
+    }
+
+    /**
+     * Finds the first match which starts at or after the specified
+     * position.
+     *
+     * @param source the bytes to search in
+     * @param from   the position at which the searching is to begin
+     * @return the match position or -1 if it was not found
+     * @throws IOException if an I/O error occurs
+     */
+    public long find(ByteSource source, long from) throws IOException {
+        matchEnd = -1;
+        long length = source.length();
+        if (from < 0 || from > length) {
+            return -1;
+        }
+        if (regex.matchesEmpty()) {
+            matchEnd = from;
+            return from;
+        }
+
+        int state = forward.start();
+        long offset = from;
+        while (offset < length) {
+            int n = source.read(offset, buffer, 0,
+                    (int) Math.min(buffer.length, length - offset));
+            if (n <= 0) {
+                break;
+            }
+            for (int i = 0; i < n; i++) {
+                state = forward.next(state, buffer[i] & 0xFF);
+                if (forward.isAccepting(state)) {
+                    matchEnd = offset + i + 1;
+                    return findStart(source, from, matchEnd);
+                }
+            }
+            offset += n;
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the end of the match found by the last call of
+     * {@link #find(ByteSource, long)}.
+     *
+     * @return the position after the last byte of the match or -1 if
+     * it was not found
+     */
+    public long getMatchEnd() {
+        return matchEnd;
+    }
+
+    /**
+     * Runs the reverse automaton backwards from the match end and
+     * returns the lowest position it accepts at.
+     *
+     * @param source the bytes to search in
+     * @param from   the position before which the matches can not
+     *               start
+     * @param end    the end of the match
+     * @return the match position
+     * @throws IOException if an I/O error occurs
+     */
+    private long findStart(ByteSource source, long from, long end)
+            throws IOException {
+        int state = reverse.start();
+        long res = end;
+        long offset = end;
+
+        while (offset > from) {
+            int n = (int) Math.min(buffer.length, offset - from);
+            offset -= n;
+            int read = source.read(offset, buffer, 0, n);
+            if (read != n) {
+                throw new IOException("Unexpected end of the source");
+            }
+            for (int i = n - 1; i >= 0; i--) {
+                state = reverse.next(state, buffer[i] & 0xFF);
+                if (state == LazyDfa.DEAD) {
+                    return res;
+                }
+                if (reverse.isAccepting(state)) {
+                    res = offset + i;
+                }
+            }
+        }
+        return res;
+    }
+}
@@ -0,0 +1,190 @@
+package editor.impl.search;
+
+import editor.BytePattern;
+
+/**
+ * The matcher of a masked byte pattern based on the bit-parallel
+ * shift-and algorithm. For every byte value the table keeps the set
+ * of the pattern positions it matches, so the wildcards cost nothing:
+ * every text byte is handled by one table lookup, a shift and an AND
+ * whatever the masks are.
+ * <p>
+ * The state fits one <code>long</code>, so the automaton covers the
+ * first 64 pattern bytes; the rest of a longer pattern is compared
+ * directly after the automaton accepts. The backward search runs the
+ * same automaton over the reversed pattern, which covers its last 64
+ * bytes.
+ */
+public class ShiftAndMatcher implements PatternMatcher {
+
+    /**
+     * The maximum count of the pattern bytes handled by the automaton.
+     */
+    private static final int STATE_BITS = Long.SIZE;
+
+    /**
+     * The searched pattern.
+     */
+    private final BytePattern pattern;
+
+    /**
+     * The pattern positions matched by every byte value.
+     */
+    private final long[] positions = new long[256];
+
+    /**
+     * The positions of the reversed pattern matched by every byte
+     * value.
+     */
+    private final long[] reversePositions = new long[256];
+
+    /**
+     * The state bit which means that the automaton prefix matched.
+     */
+    private final long accept;
+
+    /**
+     * The count of the pattern bytes handled by the automaton.
+     */
+    private final int prefixLength;
+
+    /**
+     * Constructs the matcher for the given pattern.
+     *
+     * @param pattern the searched pattern
+     */
+    public ShiftAndMatcher(BytePattern pattern) {
+        this.pattern = pattern;
+        prefixLength = Math.min(pattern.length(), STATE_BITS);
+        accept = prefixLength == 0 ? 0 : 1L << (prefixLength - 1);
+
+        for (int b = 0; b < positions.length; b++) {
+            long bits = 0;
+            for (int j = 0; j < prefixLength; j++) {
+                if (pattern.matches(j, (byte) b)) {
+                    bits |= 1L << j;
+                }
+            }
+            positions[b] = bits;
+
+            bits = 0;
+            for (int j = 0; j < prefixLength; j++) {
+                if (pattern.matches(pattern.length() - 1 - j, (byte) b)) {
+                    bits |= 1L << j;
+                }
+            }
+            reversePositions[b] = bits;
+        }
+    }
+
+    /**
+     * Returns the length of the pattern.
+     *
+     * @return the byte count of the pattern
+     */
+    @Override
+    public int length() {
+        return pattern.length();
+    }
+
+    /**
+     * Finds the first occurrence of the pattern which lies entirely
+     * within the specified range of the array.
+     *
+     * @param text the array to search in
+     * @param from the index of the first byte of the range
+     * @param to   the index after the last byte of the range
+     * @return the index of the first match or -1 if it was not found
+     */
+    @Override
+    public int indexOf(byte[] text, int from, int to) {
+        int m = pattern.length();
+        if (m == 0) {
+            return from <= to ? from : -1;
+        }
+
+        int last = to - m;
+        long state = 0;
+        for (int i = from; i < to; i++) {
+            state = ((state << 1) | 1) & positions[text[i] & 0xFF];
+            if ((state & accept) != 0) {
+                int start = i - prefixLength + 1;
+                if (start > last) {
+                    return -1;
+                }
+                if (matchesSuffix(text, start)) {
+                    return start;
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Finds the last occurrence of the pattern which lies entirely
+     * within the specified range of the array.
+     *
+     * @param text the array to search in
+     * @param from the index of the first byte of the range
+     * @param to   the index after the last byte of the range
+     * @return the index of the last match or -1 if it was not found
+     */
+    @Override
+    public int lastIndexOf(byte[] text, int from, int to) {
+        int m = pattern.length();
+        if (m == 0) {
+            return from <= to ? to : -1;
+        }
+
+        // The automaton covers the last bytes of the pattern, the
+        // first ones are compared directly
+        int head = m - prefixLength;
+        long state = 0;
+        for (int i = to - 1; i >= from; i--) {
+            state = ((state << 1) | 1) & reversePositions[text[i] & 0xFF];
+            if ((state & accept) != 0) {
+                int start = i - head;
+                if (start < from) {
+                    return -1;
+                }
+                if (matchesHead(text, start, head)) {
+                    return start;
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Compares the pattern bytes before the automaton suffix.
+     *
+     * @param text  the array to search in
+     * @param pos   the index of the compared window
+     * @param count the count of the compared bytes
+     * @return true if the pattern matches
+     */
+    private boolean matchesHead(byte[] text, int pos, int count) {
+        for (int j = 0; j < count; j++) {
+            if (!pattern.matches(j, text[pos + j])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Compares the pattern bytes after the automaton prefix.
+     *
+     * @param text the array to search in
+     * @param pos  the index of the compared window
+     * @return true if the pattern matches
+     */
+    private boolean matchesSuffix(byte[] text, int pos) {
+        for (int j = prefixLength; j < pattern.length(); j++) {
+            if (!pattern.matches(j, text[pos + j])) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,215 @@
+package gui.actions;
+
+import editor.ProgressMonitor;
+import gui.dialog.windows.ProgressWindow;
+
+import javax.swing.JFrame;
+import javax.swing.JOptionPane;
+import javax.swing.SwingUtilities;
+import javax.swing.SwingWorker;
+import javax.swing.Timer;
+import java.util.List;
+
+/**
+ * The job running on a worker thread. The table can be scrolled while
+ * it runs, since the job reads the snapshot of the file contents, and
+ * the result is delivered on the event dispatch thread. The file and
+ * the editing actions are blocked until the job finishes, and the
+ * progress window is shown only if the job takes noticeable time.
+ * Only one job runs at a time. If the work fails, the error is shown
+ * instead of the result.
+ */
+public abstract class BackgroundJob extends SwingWorker<Long, Long>
+        implements ProgressMonitor {
+
+    /**
+     * The delay before the progress window is shown in milliseconds.
+     */
+    private static final int SHOW_DELAY = 300;
+
+    /**
+     * The running job or null.
+     */
+    private static BackgroundJob running = null;
+
+    /**
+     * The count of the bytes to process, it is updated by the job.
+     */
+    private volatile long total;
+
+    /**
+     * The exception thrown by the work or null.
+     */
+    private volatile RuntimeException failure = null;
+
+    /**
+     * The action run after the job finishes or null.
+     */
+    private Runnable then = null;
+
+    /**
+     * Whether the job can be stopped.
+     */
+    private final boolean cancellable;
+
+    /**
+     * The main application window.
+     */
+    private final JFrame frame;
+
+    /**
+     * The name of the job.
+     */
+    private final String name;
+
+    /**
+     * The window with the progress.
+     */
+    private final ProgressWindow window;
+
+    /**
+     * The timer which shows the window.
+     */
+    private final Timer showTimer;
+
+    /**
+     * Constructs the job. It must be called on the event dispatch
+     * thread.
+     *
+     * @param frame       the main application window
+     * @param name        the title of the progress window
+     * @param total       the count of the bytes to process
+     * @param cancellable true - if the job can be stopped
+     */
+    protected BackgroundJob(JFrame frame, String name, long total,
+                            boolean cancellable) {
+        this.total = total;
+        this.cancellable = cancellable;
+        this.frame = frame;
+        this.name = name;
+
+        window = new ProgressWindow(frame, name,
+                cancellable ? this::cancelJob : null);
+        showTimer = new Timer(SHOW_DELAY, e -> window.setVisible(true));
+        showTimer.setRepeats(false);
+    }
+
+    /**
+     * Returns true if a job is running.
+     */
+    public static boolean isRunning() {
+        return running != null;
+    }
+
+    /**
+     * Cancels the running job and runs the action when it finishes.
+     * The job is not interrupted, so it can read the file for a while
+     * after it is cancelled. The action is run at once if no job is
+     * running.
+     *
+     * @param then the action run on the event dispatch thread when
+     *             no job is running
+     * @return false if the running job can not be stopped, then the
+     * action is not run
+     */
+    public static boolean cancelRunning(Runnable then) {
+        if (running == null) {
+            then.run();
+            return true;
+        }
+        if (!running.cancellable) {
+            return false;
+        }
+        running.then = then;
+        running.cancelJob();
+        return true;
+    }
+
+    /**
+     * Blocks the actions and starts the job.
+     */
+    public void start() {
+        StandardFileActions.blockFileActions(true);
+        running = this;
+        showTimer.start();
+        execute();
+    }
+
+    /**
+     * Does the work on the worker thread.
+     *
+     * @return the result passed to {@link #succeed(long)}
+     */
+    protected abstract long work();
+
+    /**
+     * Shows the result of the job which was not cancelled on the
+     * event dispatch thread.
+     *
+     * @param res the result of {@link #work()}
+     */
+    protected abstract void succeed(long res);
+
+    /**
+     * Stops the job. The thread is not interrupted, since an
+     * interrupted read closes the channel of the file.
+     */
+    private void cancelJob() {
+        cancel(false);
+    }
+
+    @Override
+    protected Long doInBackground() {
+        long res = -1;
+        try {
+            res = work();
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+            failure = e;
+        } finally {
+            // The actions are unblocked only when the file is not
+            // read any more, even if the job was cancelled
+            long result = res;
+            SwingUtilities.invokeLater(() -> finish(result));
+        }
+        return res;
+    }
+
+    @Override
+    public void progress(long done, long total) {
+        this.total = total;
+        publish(done);
+    }
+
+    @Override
+    protected void process(List<Long> chunks) {
+        window.setProgress(chunks.get(chunks.size() - 1), total);
+    }
+
+    /**
+     * Closes the progress window, unblocks the actions, shows the
+     * result or the error of the work and runs the action waiting for
+     * the job.
+     *
+     * @param res the result of {@link #work()}
+     */
+    private void finish(long res) {
+        showTimer.stop();
+        window.dispose();
+        if (running == this) {
+            running = null;
+        }
+        StandardFileActions.blockFileActions(false);
+
+        if (failure != null) {
+            JOptionPane.showMessageDialog(frame,
+                    name + " failed: " + failure, name,
+                    JOptionPane.ERROR_MESSAGE);
+        } else if (!isCancelled()) {
+            succeed(res);
+        }
+        if (then != null) {
+            then.run();
+        }
+    }
+}
@@ -1,15 +1,14 @@
 package gui.actions;
 
+import editor.BytePattern;
 import editor.HexEditor;
 import gui.dialog.windows.InputDialogWindow;
-import gui.tables.HexTable;
-import gui.tables.HexTableModel;
+import gui.tables.HexView;
 import gui.window.MainWindow;
 
 import javax.swing.AbstractAction;
 import javax.swing.KeyStroke;
 import javax.swing.JOptionPane;
-import java.awt.Adjustable;
 import java.awt.event.KeyAdapter;
 import java.awt.event.KeyEvent;
 import java.awt.event.InputEvent;
@@ -29,7 +28,11 @@ public class EditFileActions {
     public static EditFileAction addAct;
     public static EditFileAction insertAct;
     public static EditFileAction findAct;
+    public static EditFileAction findPreviousAct;
+    public static EditFileAction indexAct;
     public static EditFileAction zeroAct;
+    public static EditFileAction undoAct;
+    public static EditFileAction redoAct;
 
     /**
      * The main application window.
@@ -39,12 +42,7 @@ public class EditFileActions {
     /**
      * The table in which file data is displayed.
      */
-    private static HexTable hexTable;
-
-    /**
-     * The table model of the HexTable.
-     */
-    private static HexTableModel tableModel;
+    private static HexView hexView;
 
     /**
      * The maximum size of the buffer.
@@ -66,12 +64,12 @@ public class EditFileActions {
      * The byte offset in the file which corresponds to the anchor
      * selected cell.
      */
-    private static int offset = 0;
+    private static long offset = 0;
 
     /**
      * Selected cell count.
      */
-    private static int count;
+    private static long count;
 
     static {
         makeActions();
@@ -111,11 +109,31 @@ public class EditFileActions {
                 KeyEvent.VK_F,
                 KeyEvent.VK_F,
                 "Find a pattern.");
+        findPreviousAct = new EditFileAction(
+                "Find previous",
+                KeyEvent.VK_P,
+                KeyEvent.VK_F,
+                "Find a pattern before the selection (Ctrl+Shift+F)");
+        indexAct = new EditFileAction(
+                "Index",
+                KeyEvent.VK_B,
+                KeyEvent.VK_B,
+                "Build the index which speeds up the next searches.");
         zeroAct = new EditFileAction(
                 "Zero",
                 KeyEvent.VK_Z,
                 KeyEvent.VK_Z,
                 "Replace the selected with zeros.");
+        undoAct = new EditFileAction(
+                "Undo",
+                KeyEvent.VK_U,
+                KeyEvent.VK_Z,
+                "Undo (Alt+Z)");
+        redoAct = new EditFileAction(
+                "Redo",
+                KeyEvent.VK_R,
+                KeyEvent.VK_Y,
+                "Redo (Alt+Y)");
 
         copyAct.putValue(
                 AbstractAction.ACCELERATOR_KEY,
@@ -129,6 +147,19 @@ public class EditFileActions {
                 AbstractAction.ACCELERATOR_KEY,
                 KeyStroke.getKeyStroke(KeyEvent.VK_V, InputEvent.ALT_DOWN_MASK)
         );
+        undoAct.putValue(
+                AbstractAction.ACCELERATOR_KEY,
+                KeyStroke.getKeyStroke(KeyEvent.VK_Z, InputEvent.ALT_DOWN_MASK)
+        );
+        redoAct.putValue(
+                AbstractAction.ACCELERATOR_KEY,
+                KeyStroke.getKeyStroke(KeyEvent.VK_Y, InputEvent.ALT_DOWN_MASK)
+        );
+        findPreviousAct.putValue(
+                AbstractAction.ACCELERATOR_KEY,
+                KeyStroke.getKeyStroke(KeyEvent.VK_F,
+                        InputEvent.CTRL_DOWN_MASK | InputEvent.SHIFT_DOWN_MASK)
+        );
 
         // The functions are not available until a file is opened
         unblockEditActions(false);
@@ -137,14 +168,13 @@ public class EditFileActions {
     /**
      * Initializes the static variables.
      *
-     * @param hexTable   the table with file data
+     * @param hexView    the view with file data
      * @param hex        the file to edit
      * @param win        the main application window
      */
-    public static void init(HexTable hexTable, HexEditor hex, MainWindow win) {
-        EditFileActions.hexTable = hexTable;
-        hexTable.addKeyListener(new CellInput());
-        EditFileActions.tableModel = hexTable.getModel();
+    public static void init(HexView hexView, HexEditor hex, MainWindow win) {
+        EditFileActions.hexView = hexView;
+        hexView.addKeyListener(new CellInput());
         EditFileActions.hexEditor = hex;
         EditFileActions.frame = win;
     }
@@ -161,7 +191,11 @@ public class EditFileActions {
         insertAct.setEnabled(newValue);
         addAct.setEnabled(newValue);
         findAct.setEnabled(newValue);
+        findPreviousAct.setEnabled(newValue);
+        indexAct.setEnabled(newValue);
         zeroAct.setEnabled(newValue);
+        undoAct.setEnabled(newValue);
+        redoAct.setEnabled(newValue);
     }
 
     /**
@@ -169,8 +203,14 @@ public class EditFileActions {
      * table.
      */
     private static void updateSelection() {
-        int start = hexTable.getStartOffset();
-        int end = hexTable.getEndOffset();
+        long start = hexView.getStartOffset();
+        long end = hexView.getEndOffset();
+
+        if (start == -1) {
+            offset = -1;
+            count = -1;
+            return;
+        }
 
         offset = Math.min(start, end);
         end = Math.max(start, end);
@@ -185,7 +225,7 @@ public class EditFileActions {
         if (count >= maxBufferSize) {
             return false;
         }
-        byteBuffer = hexEditor.read(offset, count);
+        byteBuffer = hexEditor.read(offset, (int) count);
         return byteBuffer != null;
     }
 
@@ -195,7 +235,6 @@ public class EditFileActions {
     private static void cut() {
         if (copy()) {
             hexEditor.delete(offset, count);
-            tableModel.updateModel();
         }
     }
 
@@ -208,7 +247,6 @@ public class EditFileActions {
             return;
         }
         hexEditor.add(offset, byteBuffer);
-        tableModel.updateModel();
     }
 
     /**
@@ -223,7 +261,6 @@ public class EditFileActions {
             return;
         }
         hexEditor.insert(offset, bytes);
-        tableModel.updateModel();
     }
 
     /**
@@ -238,74 +275,155 @@ public class EditFileActions {
             return;
         }
         hexEditor.add(offset, bytes);
-        tableModel.updateModel();
     }
 
     /**
      * Replaces selection with zeros.
      */
     private static void resetToZero() {
-        hexEditor.insertZeros(count, offset);
-        tableModel.updateModel();
+        // The selection longer than 2 GB is zeroed by parts which are
+        // undone at once
+        hexEditor.beginBatch();
+        for (long done = 0; done < count; ) {
+            int n = (int) Math.min(count - done, Integer.MAX_VALUE);
+            hexEditor.insertZeros(n, offset + done);
+            done += n;
+        }
+        hexEditor.commit();
     }
 
     /**
-     * Opens the dialog window for entering bytes to search in the file.
-     * Highlights the cell from which the match begins or displays the
-     * message that the specified sequence has not been found.
+     * Reverts the most recent edit.
      */
-    private static void find() {
-        InputDialogWindow win = new InputDialogWindow(frame, "Find");
-        byte[] bytes = win.getData();
+    private static void undo() {
+        hexEditor.undo();
+    }
+
+    /**
+     * Applies again the most recently reverted edit.
+     */
+    private static void redo() {
+        hexEditor.redo();
+    }
+
+    /**
+     * Opens the dialog window for entering bytes to search in the file
+     * and starts the search in the background. The editing and the
+     * file actions are blocked until it finishes.
+     *
+     * @param backward true - to find the match before the selected
+     *                 cell, false - to find it starting from the cell
+     */
+    private static void find(boolean backward) {
+        InputDialogWindow win = new InputDialogWindow(frame,
+                backward ? "Find previous" : "Find", true);
+        BytePattern pattern = win.getPattern();
 
-        if (bytes == null || bytes.length == 0)
+        if (pattern == null || pattern.length() == 0)
             return;
 
-        long res = hexEditor.find(offset, bytes);
+        new SearchWorker(offset, pattern, backward).start();
+    }
+
+    /**
+     * Starts building the search index of the opened file in the
+     * background. The editing and the file actions are blocked until
+     * it finishes.
+     */
+    private static void buildIndex() {
+        new IndexWorker().start();
+    }
 
+    /**
+     * Highlights the cell from which the match begins or displays the
+     * message that the specified sequence has not been found.
+     *
+     * @param res the match position or -1
+     */
+    private static void showFound(long res) {
         if (res == -1) {
             JOptionPane.showMessageDialog(
                     frame, "A pattern was not found.");
             return;
         }
 
-        int col = (int) (res % (tableModel.getColumnCount() - 1)) + 1;
-        int row = (int) (res / (tableModel.getColumnCount() - 1));
-
-        highlightCell(row, col);
-        scrollToCell(row, col);
-
+        hexView.showOffset(res);
         frame.updateFrame();
     }
 
     /**
-     * Selects the specified cell.
-     *
-     * @param row row index
-     * @param col column index
+     * The search of a pattern which highlights the found match.
      */
-    private static void highlightCell(int row, int col) {
-        // Select the found cell
-        hexTable.getSelectionModel().addSelectionInterval(row, row);
-        hexTable.getColumnModel()
-                .getSelectionModel().setSelectionInterval(col, col);
+    private static class SearchWorker extends BackgroundJob {
+
+        /**
+         * The file position at which the searching begins.
+         */
+        private final long from;
+
+        /**
+         * The searched pattern.
+         */
+        private final BytePattern pattern;
+
+        /**
+         * Whether the file is searched towards the beginning.
+         */
+        private final boolean backward;
+
+        /**
+         * Constructs the search.
+         *
+         * @param from     the file position at which the searching
+         *                 begins
+         * @param pattern  the searched pattern
+         * @param backward true - to find the last match before the
+         *                 position
+         */
+        SearchWorker(long from, BytePattern pattern, boolean backward) {
+            super(frame, "Find", backward ? from
+                    : Math.max(hexEditor.getFileSize() - from, 0), true);
+            this.from = from;
+            this.pattern = pattern;
+            this.backward = backward;
+        }
+
+        @Override
+        protected long work() {
+            return backward ? hexEditor.findPrevious(from, pattern, this)
+                    : hexEditor.find(from, pattern, this);
+        }
+
+        @Override
+        protected void succeed(long res) {
+            showFound(res);
+        }
     }
 
     /**
-     * Scrolls window to specified cell.
-     *
-     * @param row row index
-     * @param col column index
+     * The building of the search index of the opened file.
      */
-    private static void scrollToCell(int row, int col) {
-        // Move vertical scroll bar to the match cell
-        Adjustable e = frame.fileViewPanel.getVerticalScrollBar();
-        // One line corresponds to the 40 value of the scrollbar
-        e.setValue(row * 40);
-
-        // Move horizontal scroll bar to the match cell
-        e = frame.fileViewPanel.getHorizontalScrollBar();
-        e.setValue(col * 40);
+    private static class IndexWorker extends BackgroundJob {
+
+        /**
+         * Constructs the building.
+         */
+        IndexWorker() {
+            super(frame, "Index", hexEditor.getFileSize(), true);
+        }
+
+        @Override
+        protected long work() {
+            return hexEditor.buildIndex(this) ? 1 : 0;
+        }
+
+        @Override
+        protected void succeed(long res) {
+            if (res == 0) {
+                JOptionPane.showMessageDialog(
+                        frame, "The index was not built.");
+            }
+        }
     }
 
     /**
@@ -324,6 +442,19 @@ public class EditFileActions {
         @Override
         public void actionPerformed(ActionEvent e) {
             String comStr = e.getActionCommand();
+
+            // The history does not depend on the selection
+            if (comStr.equals("Undo")) {
+                undo();
+                return;
+            } else if (comStr.equals("Redo")) {
+                redo();
+                return;
+            } else if (comStr.equals("Index")) {
+                buildIndex();
+                return;
+            }
+
             updateSelection();
 
             // If user hasn't selected any cells
@@ -331,6 +462,9 @@ public class EditFileActions {
                 if (comStr.equals("Find")) {
                     // Sets the find position from the file beginning
                     offset = 0;
+                } else if (comStr.equals("Find previous")) {
+                    // Sets the find position to the file end
+                    offset = hexEditor.getFileSize();
                 }
                 else {
                     return;
@@ -354,7 +488,10 @@ public class EditFileActions {
                     add();
                     break;
                 case "Find":
-                    find();
+                    find(false);
+                    break;
+                case "Find previous":
+                    find(true);
                     break;
                 case "Zero":
                     resetToZero();
@@ -364,7 +501,7 @@ public class EditFileActions {
     }
 
     /**
-     * The class that provides filling in the table cell using a
+     * The class that provides filling in the selected byte using a
      * keyboard.
      */
     public static class CellInput extends KeyAdapter {
@@ -377,14 +514,14 @@ public class EditFileActions {
         /**
          * The byte offset which corresponds to the anchor selected cell.
          */
-        private int offset = -1;
+        private long offset = -1;
 
         public CellInput() {
-            hexTable.addMouseListener(new MouseAdapter() {
+            hexView.addMouseListener(new MouseAdapter() {
                 @Override
                 public void mouseReleased(MouseEvent e) {
                     num.delete(0, num.length());
-                    offset = hexTable.getEndOffset();
+                    offset = hexView.getEndOffset();
                 }
             });
         }
@@ -393,7 +530,8 @@ public class EditFileActions {
         public void keyPressed(KeyEvent e) {
             int keyCode = e.getKeyCode();
 
-            if (offset == -1 || e.isAltDown() || e.isControlDown())
+            if (offset == -1 || e.isAltDown() || e.isControlDown()
+                    || BackgroundJob.isRunning())
                 return;
 
             if  ((KeyEvent.VK_A <= keyCode && keyCode <= KeyEvent.VK_F)
@@ -403,7 +541,6 @@ public class EditFileActions {
 
                 byte b = getNum(e.getKeyChar());
                 hexEditor.insert(offset, b);
-                tableModel.updateModel();
             }
         }
 
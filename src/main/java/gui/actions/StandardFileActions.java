@@ -1,8 +1,9 @@
 package gui.actions;
 
+import editor.ByteSequence;
 import editor.HexEditor;
 import editor.impl.HexEditorImpl;
-import gui.tables.HexTable;
+import gui.tables.HexView;
 import gui.window.MainWindow;
 
 import javax.swing.AbstractAction;
@@ -12,8 +13,6 @@ import java.awt.FileDialog;
 import java.awt.event.ActionEvent;
 import java.awt.event.KeyEvent;
 import java.awt.event.InputEvent;
-import java.awt.event.ComponentEvent;
-import java.awt.event.ComponentAdapter;
 
 /**
  * The class that provides file operations: open, close, save, exit
@@ -82,7 +81,7 @@ public class StandardFileActions {
                     close();
                     break;
                 case "Save":
-                    saveFile();
+                    saveFile(() -> { });
                     break;
                 case "Save As":
                     saveAsNewFile();
@@ -146,24 +145,47 @@ public class StandardFileActions {
         EditFileActions.unblockEditActions(fileIsOpened);
     }
 
+    /**
+     * Blocks the file and the editing actions while a background job
+     * reads the file. The exit stays available and cancels the job.
+     *
+     * @param blocked true - to block, false - to restore the actions
+     *                depending on whether a file is open
+     */
+    public static void blockFileActions(boolean blocked) {
+        if (blocked) {
+            openAct.setEnabled(false);
+            saveAct.setEnabled(false);
+            saveAsNewAct.setEnabled(false);
+            closeAct.setEnabled(false);
+            EditFileActions.unblockEditActions(false);
+        } else {
+            openAct.setEnabled(true);
+            unblockFileButtons();
+        }
+    }
+
     /**
      * Shows the dialog window in which the user is prompted to save
-     * the file.
+     * the file and runs the action after the file is saved or the
+     * saving is declined.
      *
-     * @return false if the cancel was pressed, true otherwise
+     * @param then the action which is not run if the cancel was
+     *             pressed or the file was not saved
      */
-    private static boolean maybeSave() {
+    private static void maybeSave(Runnable then) {
         if (!fileIsOpened) {
-            return true;
+            then.run();
+            return;
         }
 
         int response = JOptionPane.showConfirmDialog(
                 frame, "Do you want to save changes?");
 
         if (response == JOptionPane.YES_OPTION) {
-            return saveFile();
-        } else {
-            return response != JOptionPane.CANCEL_OPTION;
+            saveFile(then);
+        } else if (response != JOptionPane.CANCEL_OPTION) {
+            then.run();
         }
     }
 
@@ -192,14 +214,17 @@ public class StandardFileActions {
 
     /**
      * Launches the file manager window to open an existing file.
-     * If the file has been selected creates the table and displays
+     * If the file has been selected creates the view and displays
      * it on the screen.
      */
     private static void open() {
-        if (!maybeSave()) {
-            return;
-        }
+        maybeSave(StandardFileActions::openChosen);
+    }
 
+    /**
+     * Opens the file chosen in the file manager window.
+     */
+    private static void openChosen() {
         String path = maybeOpen();
 
         if (path == null) {
@@ -219,68 +244,62 @@ public class StandardFileActions {
     }
 
     /**
-     * Makes the table and all the listeners for it.
+     * Makes the view and all the listeners for it.
      */
     private static void createTable() {
-        HexTable table = HexTable.createTable(hexEditor);
+        HexView view = HexView.createView(hexEditor);
 
-        table.updateTableView(frame.getBounds().width);
-
-        // By clicking the mouse button on the cell, the
+        // By clicking the mouse button on the byte, the
         // ByteRepresentPanel is filled in.
-        table.addMouseListener(new java.awt.event.MouseAdapter() {
+        view.addMouseListener(new java.awt.event.MouseAdapter() {
             @Override
             public void mouseReleased(java.awt.event.MouseEvent evt) {
 
-                // If user clicked on the offset column
-                if (table.columnAtPoint(evt.getPoint()) == 0) {
+                // If user clicked beside the bytes
+                if (view.offsetAt(evt.getPoint()) < 0) {
                     return;
                 }
 
-                // Checking that the cell is not empty
-                if (table.getEndOffset() < hexEditor.getFileSize()) {
-                    frame.decodePanel.fillPane(table.getByteSequence());
+                // Checking that the byte is not past the end and the
+                // bytes are not being read
+                if (view.getEndOffset() < hexEditor.getFileSize()) {
+                    ByteSequence bytes = view.getByteSequence();
+                    if (bytes != null) {
+                        frame.decodePanel.fillPane(bytes);
+                    }
                 }
             }
         });
 
-        // "Binds" editing actions to the table, file and frame
-        EditFileActions.init(table, hexEditor, frame);
-
-        // Monitors the window resizing events for the table redrawing
-        frame.addComponentListener(new ComponentAdapter() {
-            public void componentResized(ComponentEvent componentEvent) {
-                if (fileIsOpened) {
-                    table.updateTableView(frame.getBounds().width);
-                }
-            }
-        });
+        // "Binds" editing actions to the view, file and frame
+        EditFileActions.init(view, hexEditor, frame);
 
-        frame.fileViewPanel.setViewportView(table);
+        frame.fileViewPanel.setView(view);
     }
 
     /**
      * Closes the current opened file.
      */
     private static void close() {
-        if (maybeSave()) {
+        maybeSave(() -> {
             hexEditor.closeFile();
-            frame.fileViewPanel.getViewport().remove(0);
+            frame.fileViewPanel.setView(null);
             fileIsOpened = false;
             unblockFileButtons();
             frame.updateFrame();
-        }
+        });
     }
 
     /**
-     * Saves the current opened file.
+     * Saves the current opened file in the background.
+     *
+     * @param then the action run after the file is saved
      */
-    private static boolean saveFile() {
+    private static void saveFile(Runnable then) {
         if (!fileIsOpened) {
-            return false;
-        } else {
-            return hexEditor.saveFile();
+            return;
         }
+        new SaveWorker(null, then).start();
     }
 
     /**
@@ -302,18 +321,73 @@ public class StandardFileActions {
             return;
         }
 
-        hexEditor.saveAsNewFile(dir + filename);
+        new SaveWorker(dir + filename, () -> { }).start();
     }
 
     /**
      * Closes the program.
      */
     private static void exit() {
-        if (!maybeSave()) {
-            return;
+        // The save starts only when the cancelled job stops reading
+        // the file
+        boolean cancelled = BackgroundJob.cancelRunning(() ->
+                maybeSave(() -> {
+                    hexEditor.closeFile();
+                    System.exit(0);
+                }));
+        if (!cancelled) {
+            // The file being saved must not be left half-written
+            JOptionPane.showMessageDialog(
+                    frame, "Wait until the file is saved.");
         }
+    }
 
-        hexEditor.closeFile();
-        System.exit(0);
+    /**
+     * The save of the opened file which does not block the window.
+     * The data is written to a temporary file which replaces the
+     * target, so the save can not be cancelled.
+     */
+    private static class SaveWorker extends BackgroundJob {
+
+        /**
+         * The path of the new file or null to save the opened one.
+         */
+        private final String path;
+
+        /**
+         * The action run after the file is saved.
+         */
+        private final Runnable then;
+
+        /**
+         * Constructs the save.
+         *
+         * @param path the path of the new file or null to save the
+         *             opened one
+         * @param then the action run after the file is saved
+         */
+        SaveWorker(String path, Runnable then) {
+            super(frame, "Save", hexEditor.getFileSize(), false);
+            this.path = path;
+            this.then = then;
+        }
+
+        @Override
+        protected long work() {
+            boolean saved = path == null ? hexEditor.saveFile(this)
+                    : hexEditor.saveAsNewFile(path, this);
+            return saved ? 1 : 0;
+        }
+
+        @Override
+        protected void succeed(long res) {
+            if (res == 0) {
+                JOptionPane.showMessageDialog(
+                        frame, "The file was not saved.");
+                return;
+            }
+            frame.updateFrame();
+            then.run();
+        }
     }
 }
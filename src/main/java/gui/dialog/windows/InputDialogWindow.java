@@ -1,5 +1,6 @@
 package gui.dialog.windows;
 
+import editor.BytePattern;
 import gui.tables.InputTable;
 import gui.window.MainWindow;
 
@@ -10,6 +11,8 @@ import javax.swing.JButton;
 import javax.swing.JScrollPane;
 import javax.swing.JPanel;
 import javax.swing.JLabel;
+import javax.swing.JTextField;
+import javax.swing.JOptionPane;
 import javax.swing.BorderFactory;
 import java.awt.Dimension;
 import java.awt.FlowLayout;
@@ -20,7 +23,8 @@ import java.awt.event.KeyEvent;
 
 /**
  * The class describes the dialog window in which a user can enter a
- * block of bytes.
+ * block of bytes. The dialog for searching also has the field for
+ * the pattern with wildcards, for example <code>4D 5A ?? ?? 50 45</code>.
  */
 public class InputDialogWindow extends JDialog {
 
@@ -29,6 +33,11 @@ public class InputDialogWindow extends JDialog {
      */
     private byte[] data;
 
+    /**
+     * The inputted pattern.
+     */
+    private BytePattern pattern;
+
     /**
      * The button which performs the action.
      */
@@ -59,16 +68,32 @@ public class InputDialogWindow extends JDialog {
      */
     private InputTable table;
 
+    /**
+     * The field for the pattern with wildcards or null.
+     */
+    private JTextField patternField;
+
     /**
      * Constructs the dialog window.
      */
     public InputDialogWindow(JFrame owner, String name) {
+        this(owner, name, false);
+    }
+
+    /**
+     * Constructs the dialog window.
+     *
+     * @param acceptPattern true - to show the field for the pattern
+     *                      with wildcards
+     */
+    public InputDialogWindow(JFrame owner, String name,
+                             boolean acceptPattern) {
         super(owner, name, true);
 
         MainWindow.setUIFont(new javax.swing.plaf.FontUIResource(
                 "Arial", Font.PLAIN, 18));
 
-        this.setMinimumSize(new Dimension(420, 350));
+        this.setMinimumSize(new Dimension(420, acceptPattern ? 420 : 350));
 
         this.setLocationRelativeTo(null);
 
@@ -80,7 +105,14 @@ public class InputDialogWindow extends JDialog {
 
         this.add(panelLabel, BorderLayout.NORTH);
         this.add(panelTable, BorderLayout.CENTER);
-        this.add(panelButtons, BorderLayout.SOUTH);
+        if (acceptPattern) {
+            JPanel panelSouth = new JPanel(new BorderLayout());
+            panelSouth.add(makePatternPanel(), BorderLayout.NORTH);
+            panelSouth.add(panelButtons, BorderLayout.SOUTH);
+            this.add(panelSouth, BorderLayout.SOUTH);
+        } else {
+            this.add(panelButtons, BorderLayout.SOUTH);
+        }
 
         this.setVisible(true);
         this.dispose();
@@ -95,6 +127,16 @@ public class InputDialogWindow extends JDialog {
         return data;
     }
 
+    /**
+     * Returns the pattern entered by the user. If the pattern field is
+     * empty the bytes of the table are matched exactly.
+     *
+     * @return the pattern or null if the input was cancelled
+     */
+    public BytePattern getPattern() {
+        return pattern;
+    }
+
     /**
      * Creates the panel that contains the label.
      */
@@ -116,6 +158,18 @@ public class InputDialogWindow extends JDialog {
 
         btnDo.addActionListener(e -> {
             data = table.getData();
+            if (patternField != null
+                    && !patternField.getText().trim().isEmpty()) {
+                try {
+                    pattern = BytePattern.parse(patternField.getText());
+                } catch (IllegalArgumentException ex) {
+                    JOptionPane.showMessageDialog(this,
+                            "Invalid pattern. " + ex.getMessage());
+                    return;
+                }
+            } else {
+                pattern = BytePattern.of(data);
+            }
             this.setVisible(false);
         });
 
@@ -125,6 +179,26 @@ public class InputDialogWindow extends JDialog {
         panelButtons.add(btnCancel);
     }
 
+    /**
+     * Constructs the panel with the field for the pattern.
+     *
+     * @return the panel
+     */
+    private JPanel makePatternPanel() {
+        JPanel panelPattern = new JPanel(new BorderLayout(10, 0));
+        panelPattern.setBorder(BorderFactory.createEmptyBorder(
+                10, 10, 0, 10));
+
+        patternField = new JTextField();
+        patternField.setToolTipText(
+                "For example: 4D 5A ?? ?? 50 45 or 1F & F0");
+        patternField.addActionListener(e -> btnDo.doClick());
+
+        panelPattern.add(new JLabel("or pattern"), BorderLayout.WEST);
+        panelPattern.add(patternField, BorderLayout.CENTER);
+        return panelPattern;
+    }
+
     /**
      * Constructs the panel that contains the table.
      */
@@ -0,0 +1,106 @@
+package gui.dialog.windows;
+
+import javax.swing.BorderFactory;
+import javax.swing.JButton;
+import javax.swing.JDialog;
+import javax.swing.JFrame;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.JProgressBar;
+import java.awt.BorderLayout;
+import java.awt.Dimension;
+import java.awt.FlowLayout;
+
+/**
+ * The modeless window that shows the progress of a background job:
+ * the processed and the total byte counts and the throughput. The job
+ * can be stopped with the Cancel button if it is cancellable.
+ */
+public class ProgressWindow extends JDialog {
+
+    /**
+     * The count of the progress bar steps.
+     */
+    private static final int STEPS = 1000;
+
+    /**
+     * The count of the bytes in one megabyte.
+     */
+    private static final double MB = 1024 * 1024;
+
+    /**
+     * The bar showing the processed part.
+     */
+    private final JProgressBar progressBar = new JProgressBar(0, STEPS);
+
+    /**
+     * The label with the byte counts and the throughput.
+     */
+    private final JLabel status = new JLabel(" ");
+
+    /**
+     * The button which cancels the job.
+     */
+    private final JButton btnCancel = new JButton("Cancel");
+
+    /**
+     * The time the job was started at in nanoseconds.
+     */
+    private final long startTime = System.nanoTime();
+
+    /**
+     * Constructs the window. It is not shown until
+     * {@code setVisible(true)} is called.
+     *
+     * @param owner    the main application window
+     * @param name     the window title
+     * @param onCancel the action which cancels the job or null if the
+     *                 job can not be cancelled
+     */
+    public ProgressWindow(JFrame owner, String name, Runnable onCancel) {
+        super(owner, name, false);
+
+        this.setMinimumSize(new Dimension(420, 170));
+        this.setLocationRelativeTo(owner);
+        this.setResizable(false);
+        this.setDefaultCloseOperation(JDialog.DO_NOTHING_ON_CLOSE);
+
+        progressBar.setStringPainted(true);
+
+        JPanel panelProgress = new JPanel(new BorderLayout(0, 10));
+        panelProgress.setBorder(BorderFactory.createEmptyBorder(
+                10, 10, 0, 10));
+        panelProgress.add(progressBar, BorderLayout.NORTH);
+        panelProgress.add(status, BorderLayout.CENTER);
+
+        JPanel panelButtons = new JPanel(new FlowLayout());
+        if (onCancel != null) {
+            btnCancel.addActionListener(e -> {
+                btnCancel.setEnabled(false);
+                onCancel.run();
+            });
+            panelButtons.add(btnCancel);
+        }
+
+        this.add(panelProgress, BorderLayout.CENTER);
+        this.add(panelButtons, BorderLayout.SOUTH);
+    }
+
+    /**
+     * Shows the progress of the job. It must be called on the event
+     * dispatch thread.
+     *
+     * @param done  the count of the processed bytes
+     * @param total the count of the bytes to process
+     */
+    public void setProgress(long done, long total) {
+        done = Math.min(done, total);
+        progressBar.setValue(total == 0 ? STEPS
+                : (int) (done * (double) STEPS / total));
+
+        double seconds = (System.nanoTime() - startTime) / 1e9;
+        double speed = seconds > 0 ? done / MB / seconds : 0;
+        status.setText(String.format("%.0f of %.0f MB, %.0f MB/s",
+                done / MB, total / MB, speed));
+    }
+}
@@ -0,0 +1,159 @@
+package gui.tables;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+
+/**
+ * The image with the pre-drawn characters of a monospaced font: the
+ * sixteen hex digits and a glyph for every byte value. A character is
+ * painted by copying its part of the image, so the painting neither
+ * lays out the text nor makes strings.
+ */
+public class GlyphAtlas {
+
+    /**
+     * The hex digits.
+     */
+    private static final String DIGITS = "0123456789ABCDEF";
+
+    /**
+     * The glyph of the bytes which are not printable.
+     */
+    public static final char NON_PRINTABLE = '.';
+
+    /**
+     * The glyph of the bytes which could not be read.
+     */
+    public static final char UNREADABLE = '?';
+
+    /**
+     * The image with the digits in the first line and the byte glyphs
+     * in the second one.
+     */
+    private final BufferedImage image;
+
+    /**
+     * The width of one character.
+     */
+    private final int charWidth;
+
+    /**
+     * The height of one line.
+     */
+    private final int lineHeight;
+
+    /**
+     * Draws the characters of the font.
+     *
+     * @param font  the monospaced font
+     * @param color the color of the characters
+     */
+    public GlyphAtlas(Font font, Color color) {
+        BufferedImage probe = new BufferedImage(1, 1,
+                BufferedImage.TYPE_INT_ARGB);
+        Graphics probeGraphics = probe.getGraphics();
+        FontMetrics metrics = probeGraphics.getFontMetrics(font);
+        probeGraphics.dispose();
+
+        charWidth = Math.max(1, metrics.charWidth('0'));
+        lineHeight = metrics.getHeight();
+        image = new BufferedImage(256 * charWidth, 2 * lineHeight,
+                BufferedImage.TYPE_INT_ARGB);
+
+        Graphics2D g = image.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING,
+                RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+        g.setFont(font);
+        g.setColor(color);
+        int ascent = metrics.getAscent();
+        for (int i = 0; i < DIGITS.length(); i++) {
+            g.drawString(DIGITS.substring(i, i + 1),
+                    i * charWidth, ascent);
+        }
+        for (int i = 0; i < 256; i++) {
+            g.drawString(String.valueOf(glyphOf(i)),
+                    i * charWidth, lineHeight + ascent);
+        }
+        g.dispose();
+    }
+
+    /**
+     * Returns the character shown for the byte value.
+     *
+     * @param value the unsigned byte value
+     * @return the printable ASCII character or {@link #NON_PRINTABLE}
+     */
+    public static char glyphOf(int value) {
+        return value >= 0x20 && value < 0x7F ? (char) value : NON_PRINTABLE;
+    }
+
+    /**
+     * Returns the width of one character.
+     */
+    public int getCharWidth() {
+        return charWidth;
+    }
+
+    /**
+     * Returns the height of one line.
+     */
+    public int getLineHeight() {
+        return lineHeight;
+    }
+
+    /**
+     * Paints the hex digit.
+     *
+     * @param g     the graphics to paint on
+     * @param digit the digit value from 0 to 15
+     * @param x     the left side of the character
+     * @param y     the top side of the line
+     */
+    public void drawDigit(Graphics g, int digit, int x, int y) {
+        draw(g, digit * charWidth, 0, x, y);
+    }
+
+    /**
+     * Paints the byte value as two hex digits.
+     *
+     * @param g     the graphics to paint on
+     * @param value the unsigned byte value
+     * @param x     the left side of the first digit
+     * @param y     the top side of the line
+     */
+    public void drawHex(Graphics g, int value, int x, int y) {
+        drawDigit(g, value >> 4, x, y);
+        drawDigit(g, value & 0xF, x + charWidth, y);
+    }
+
+    /**
+     * Paints the glyph of the byte value.
+     *
+     * @param g     the graphics to paint on
+     * @param value the unsigned byte value
+     * @param x     the left side of the character
+     * @param y     the top side of the line
+     */
+    public void drawGlyph(Graphics g, int value, int x, int y) {
+        draw(g, value * charWidth, lineHeight, x, y);
+    }
+
+    /**
+     * Copies the character from the image.
+     *
+     * @param g  the graphics to paint on
+     * @param sx the left side of the character in the image
+     * @param sy the top side of the character in the image
+     * @param x  the left side of the painted character
+     * @param y  the top side of the painted character
+     */
+    private void draw(Graphics g, int sx, int sy, int x, int y) {
+        g.drawImage(image, x, y, x + charWidth, y + lineHeight,
+                sx, sy, sx + charWidth, sy + lineHeight, null);
+    }
+}
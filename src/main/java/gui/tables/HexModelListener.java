@@ -0,0 +1,18 @@
+package gui.tables;
+
+/**
+ * The receiver of the changes of the {@link HexTableModel} window.
+ */
+@FunctionalInterface
+public interface HexModelListener {
+
+    /**
+     * Receives the change of the window rows. The rows from
+     * <code>firstRow</code> to {@link HexTableModel#ALL_ROWS} mean that
+     * the row count, the row length or the offset width changed too.
+     *
+     * @param firstRow the first changed row of the window
+     * @param lastRow  the last changed row of the window
+     */
+    void rowsChanged(int firstRow, int lastRow);
+}
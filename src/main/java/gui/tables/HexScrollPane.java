@@ -0,0 +1,142 @@
+package gui.tables;
+
+import javax.swing.JPanel;
+import javax.swing.JScrollBar;
+import javax.swing.JScrollPane;
+import java.awt.BorderLayout;
+
+/**
+ * The pane showing the {@link HexView} with the virtual vertical
+ * scrolling. The view has only the rows that fit the pane and the
+ * scroll bar moves the window of the model over the file, so neither
+ * the row count nor the height in pixels depends on the file size.
+ * The scroll bar is mapped to the file rows by
+ * {@link RowScrollModel}: one drag of the thumb reaches any row of a
+ * file of any size, the mouse wheel moves the window by exact rows
+ * and the view moves it by the keys.
+ */
+public class HexScrollPane extends JPanel {
+
+    /**
+     * The row count scrolled by one notch of the mouse wheel.
+     */
+    private static final int WHEEL_ROWS = 3;
+
+    /**
+     * The pane with the view which scrolls only horizontally.
+     */
+    private final JScrollPane viewPane;
+
+    /**
+     * The vertical scroll bar of the file.
+     */
+    private final JScrollBar scrollBar;
+
+    /**
+     * The mapping between the scroll bar values and the file rows.
+     */
+    private final RowScrollModel scrollModel = new RowScrollModel(0, 1);
+
+    /**
+     * The listener that moves the scroll bar after the model.
+     */
+    private final HexModelListener modelListener =
+            (firstRow, lastRow) -> updateScrollBar();
+
+    /**
+     * The shown view or null.
+     */
+    private HexView view;
+
+    /**
+     * Whether the scroll bar is set by the model, so its events must
+     * not move the window.
+     */
+    private boolean updating = false;
+
+    /**
+     * Constructs the empty pane.
+     */
+    public HexScrollPane() {
+        super(new BorderLayout());
+
+        viewPane = new JScrollPane(null,
+                JScrollPane.VERTICAL_SCROLLBAR_NEVER,
+                JScrollPane.HORIZONTAL_SCROLLBAR_AS_NEEDED);
+        viewPane.setWheelScrollingEnabled(false);
+        viewPane.addMouseWheelListener(e ->
+                scrollBy((long) e.getWheelRotation() * WHEEL_ROWS));
+
+        scrollBar = new JScrollBar(JScrollBar.VERTICAL);
+        scrollBar.addAdjustmentListener(e -> {
+            if (!updating && view != null) {
+                view.getModel().setFirstRow(
+                        scrollModel.toRow(scrollBar.getValue()));
+            }
+        });
+
+        add(viewPane, BorderLayout.CENTER);
+        add(scrollBar, BorderLayout.EAST);
+        updateScrollBar();
+    }
+
+    /**
+     * Shows the view in the pane instead of the previous one.
+     *
+     * @param view the shown view or null to leave the pane empty
+     */
+    public void setView(HexView view) {
+        if (this.view != null) {
+            this.view.getModel().removeModelListener(modelListener);
+        }
+        this.view = view;
+        viewPane.setViewportView(view);
+        if (view != null) {
+            view.getModel().addModelListener(modelListener);
+        }
+        updateScrollBar();
+    }
+
+    /**
+     * Returns the shown view or null.
+     */
+    public HexView getView() {
+        return view;
+    }
+
+    /**
+     * Moves the window by the specified count of rows.
+     *
+     * @param rows the row count, negative to scroll up
+     */
+    public void scrollBy(long rows) {
+        if (view != null) {
+            HexTableModel model = view.getModel();
+            model.setFirstRow(model.getFirstRow() + rows);
+        }
+    }
+
+    /**
+     * Sets the range and the thumb of the scroll bar from the model.
+     */
+    private void updateScrollBar() {
+        updating = true;
+        try {
+            if (view == null) {
+                scrollBar.setValues(0, 1, 0, 1);
+                scrollBar.setEnabled(false);
+                return;
+            }
+            HexTableModel model = view.getModel();
+            scrollModel.setRows(model.getFileRowCount(),
+                    model.getWindowRows());
+            int extent = scrollModel.getExtent();
+            scrollBar.setValues(scrollModel.toValue(model.getFirstRow()),
+                    extent, 0, scrollModel.getMaximum());
+            scrollBar.setBlockIncrement(Math.max(1, extent - 1));
+            scrollBar.setEnabled(true);
+        } finally {
+            updating = false;
+        }
+    }
+}
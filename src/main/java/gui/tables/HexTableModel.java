@@ -1,26 +1,59 @@
 package gui.tables;
 
 import editor.ByteSequence;
+import editor.ContentListener;
 import editor.HexEditor;
-import editor.impl.ByteSequenceImpl;
+import editor.impl.ByteBufferSequence;
 
-import javax.swing.table.AbstractTableModel;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
- * Describes TableModel with dynamic column count provides displaying
- * contents of a file in binary format.
+ * The rows of a file in binary format shown by the {@link HexView}.
+ * <p>
+ * The rows of the model are a window of the file rows starting from
+ * the first row of the window, the window has at most
+ * {@link #MAX_ROWS} rows. The view makes the window as high as its
+ * visible part, so only the shown rows exist and the scrolling moves
+ * the window. All the byte offsets are <code>long</code>, so the
+ * window can be moved to any part of a file of any size. The bytes are
+ * read through the {@link PageCache} and the listeners are told which
+ * rows of the window changed.
  */
-public class HexTableModel extends AbstractTableModel {
+public class HexTableModel {
 
     /**
-     * The buffer size in which file data is saved.
+     * The maximum row count of the window. The view height in pixels
+     * stays in the int range for the rows up to 64 pixels high.
      */
-    private final int bufferSize = 1024;
+    public static final int MAX_ROWS = Integer.MAX_VALUE / 64;
 
     /**
-     * The position of the current saved buffer in the file.
+     * The last row passed to the listeners when the whole window
+     * changed.
      */
-    private int offset = 0;
+    public static final int ALL_ROWS = Integer.MAX_VALUE;
+
+    /**
+     * The minimum digit count of the offset column.
+     */
+    private static final int MIN_OFFSET_DIGITS = 8;
+
+    /**
+     * The receivers of the changes of the window.
+     */
+    private final List<HexModelListener> listeners = new ArrayList<>();
+
+    /**
+     * The file row shown in the first row of the window.
+     */
+    private long firstRow = 0;
+
+    /**
+     * The row count of the window.
+     */
+    private int windowRows = MAX_ROWS;
 
     /**
      * The file to edit in binary format.
@@ -28,167 +61,340 @@ public class HexTableModel extends AbstractTableModel {
     private HexEditor hexEditor;
 
     /**
-     * The buffer to save a part of the file data.
+     * The cache of the shown file pages.
      */
-    private byte[] buffer;
+    private PageCache pageCache;
 
     /**
-     * The column count of the model.
+     * The receiver of the edits of the data source.
      */
-    private int columnCount;
+    private final ContentListener contentListener = this::contentChanged;
 
     /**
-     * Creates the TableModel with the specified column count
-     * allocated for displaying bytes.
-     * The first column is always assigned to the offset.
+     * The count of the bytes in one row.
+     */
+    private int bytesPerRow;
+
+    /**
+     * Creates the model with the specified count of the bytes in one
+     * row.
      *
-     * @param byteColumnCount the byte column count of the model
+     * @param bytesPerRow the count of the bytes in one row
      */
-    public HexTableModel(int byteColumnCount) {
-        this.columnCount = byteColumnCount + 1;
+    public HexTableModel(int bytesPerRow) {
+        this.bytesPerRow = bytesPerRow;
     }
 
     /**
-     * Returns the number of rows calculated from the number of
-     * columns.
+     * Adds the receiver of the changes of the window.
      *
-     * @return the row count of the TableModel
+     * @param listener the receiver of the changes
+     */
+    public void addModelListener(HexModelListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Removes the receiver of the changes of the window.
+     *
+     * @param listener the receiver of the changes
+     */
+    public void removeModelListener(HexModelListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Tells the listeners that the rows of the window changed.
+     *
+     * @param from the first changed row
+     * @param to   the last changed row or {@link #ALL_ROWS}
+     */
+    private void fireRowsChanged(int from, int to) {
+        for (HexModelListener listener : new ArrayList<>(listeners)) {
+            listener.rowsChanged(from, to);
+        }
+    }
+
+    /**
+     * Tells the listeners that the whole window changed.
+     */
+    private void fireModelChanged() {
+        fireRowsChanged(0, ALL_ROWS);
+    }
+
+    /**
+     * Returns the number of the window rows which show the file rows.
+     *
+     * @return the row count, which is less than the window at the end
+     * of the file
      */
-    @Override
     public int getRowCount() {
-        if (hexEditor == null) {
-            return 0;
+        return (int) Math.min(getFileRowCount() - firstRow, windowRows);
+    }
+
+    /**
+     * Returns the row count of the window.
+     */
+    public int getWindowRows() {
+        return windowRows;
+    }
+
+    /**
+     * Sets the row count of the window.
+     *
+     * @param rows the row count of the window, from 1 to
+     *             {@link #MAX_ROWS}
+     */
+    public void setWindowRows(int rows) {
+        rows = Math.max(1, Math.min(rows, MAX_ROWS));
+        if (rows == windowRows) {
+            return;
         }
-        return (int) Math.ceil(
-                (double) hexEditor.getFileSize() / (getColumnCount() - 1));
+        windowRows = rows;
+        firstRow = clampRow(firstRow);
+        fireModelChanged();
     }
 
     /**
-     * Returns the column count of the model.
+     * Returns the number of the file rows calculated from the row
+     * length.
      *
-     * @return the column count
+     * @return the row count of the whole file
      */
-    @Override
-    public int getColumnCount() {
-        return columnCount;
+    public long getFileRowCount() {
+        return (getFileSize() + bytesPerRow - 1) / bytesPerRow;
     }
 
     /**
-     * Sets the column count allocated for displaying bytes of the
-     * TableModel. Also notifies all listeners that the table's
-     * structure has changed.
+     * Returns the count of the bytes in one row.
+     */
+    public int getBytesPerRow() {
+        return bytesPerRow;
+    }
+
+    /**
+     * Sets the count of the bytes in one row. The window keeps showing
+     * the same bytes.
      *
-     * @param byteColumnCount - new byte column count
+     * @param bytesPerRow the new count of the bytes in one row
+     */
+    public void setBytesPerRow(int bytesPerRow) {
+        long firstOffset = firstRow * this.bytesPerRow;
+        this.bytesPerRow = bytesPerRow;
+        firstRow = clampRow(firstOffset / bytesPerRow);
+        fireModelChanged();
+    }
+
+    /**
+     * Returns the file row shown in the first row of the window.
      */
-    public void setColumnCount(int byteColumnCount) {
-        this.columnCount = byteColumnCount + 1;
-        fireTableStructureChanged();
+    public long getFirstRow() {
+        return firstRow;
     }
 
     /**
-     * Returns the string represent of the byte value at the specified
-     * cell. If there is no byte at the given position returns empty string.
-     * If the columnIndex equals to 0 return calculated offset
-     * which value depends on current column count in the model.
+     * Moves the window so that it starts from the specified file row.
      *
-     * @param rowIndex    the row whose value is to be queried
-     * @param columnIndex the column whose value is to be queried
-     * @return the Object value at the specified cell
+     * @param row the file row of the first window row
      */
-    @Override
-    public Object getValueAt(int rowIndex, int columnIndex) {
-        if (columnIndex == 0) {
-            // Return calculated offset
-            return String.format("%08X", rowIndex * (getColumnCount() - 1));
+    public void setFirstRow(long row) {
+        row = clampRow(row);
+        if (row != firstRow) {
+            pageCache.setDirection(Long.signum(row - firstRow));
+            firstRow = row;
+            fireRowsChanged(0, windowRows - 1);
         }
+    }
 
-        int index = getOffset(rowIndex, columnIndex);
-        if (index >= bufferSize + offset || index < offset) {
-            offset = index - index % bufferSize;
-            buffer = hexEditor.read(offset, bufferSize);
-        }
+    /**
+     * Returns the nearest first row of the window which is filled
+     * with the file rows as far as the file allows.
+     *
+     * @param row the file row
+     * @return the valid first row
+     */
+    private long clampRow(long row) {
+        return Math.max(0, Math.min(row, getFileRowCount() - windowRows));
+    }
 
-        try {
-            return String.format("%02X", buffer[index - offset]);
-        } catch (ArrayIndexOutOfBoundsException e) {
-            // If there is no bytes return empty string.
-            // It is necessary to fill with empty strings those cells
-            // of the last row for which there are not enough bytes.
-            return "";
+    /**
+     * Moves the window so that it contains the row of the specified
+     * byte offset, the row is placed in the middle of the window if
+     * the window is moved.
+     *
+     * @param offset the byte offset in the file
+     * @return the window row of the offset
+     */
+    public int showOffset(long offset) {
+        long row = offset / bytesPerRow;
+        if (row < firstRow || row >= firstRow + windowRows) {
+            setFirstRow(row - windowRows / 2);
         }
+        return (int) (row - firstRow);
     }
 
     /**
-     * Returns the class of the column.
+     * Returns the count of the hex digits of the offset column, which
+     * is enough to show the biggest offset of the file.
      *
-     * @param columnIndex the column being queried
-     * @return column class
+     * @return the digit count, at least 8
      */
-    @Override
-    public Class getColumnClass(int columnIndex) {
-        if (columnIndex == 0) {
-            return String.class;
-        }
-        return Number.class;
+    public int getOffsetDigits() {
+        return offsetDigits(getFileSize());
     }
 
     /**
-     * Returns the name of the column. The first column corresponds
-     * to the offset the rest are byte position.
+     * Returns the count of the hex digits of the offset column of the
+     * file of the specified size.
      *
-     * @param columnIndex the column being queried
-     * @return column name
+     * @param size the file size
+     * @return the digit count, at least 8
      */
-    @Override
-    public String getColumnName(int columnIndex) {
-        if (columnIndex == 0) {
-            return "Offset";
-        }
-        return String.format("%02X", columnIndex - 1);
+    private static int offsetDigits(long size) {
+        int bits = Long.SIZE - Long.numberOfLeadingZeros(Math.max(size, 1));
+        return Math.max(MIN_OFFSET_DIGITS, (bits + 3) / 4);
     }
 
     /**
-     * Sets the binary file from which the data is taken.
+     * Returns the unsigned value of the byte at the specified offset.
+     *
+     * @param offset the byte offset in the file
+     * @return the byte value, -1 if there is no such byte,
+     * {@link PageCache#LOADING} if it is being read or
+     * {@link PageCache#FAILED} if it could not be read
+     */
+    public int getByte(long offset) {
+        return pageCache.get(offset);
+    }
+
+    /**
+     * Returns the size of the shown file.
+     */
+    public long getFileSize() {
+        return hexEditor == null ? 0 : Math.max(hexEditor.getFileSize(), 0);
+    }
+
+    /**
+     * Sets the binary file from which the data is taken. The model
+     * follows the edits of the file.
      *
      * @param hex the file which data is read
      */
     public void setDataSource(HexEditor hex) {
+        if (hexEditor != null) {
+            hexEditor.removeContentListener(contentListener);
+        }
         hexEditor = hex;
-        buffer = hexEditor.read(0, bufferSize);
-        fireTableStructureChanged();
+        hexEditor.addContentListener(contentListener);
+        firstRow = 0;
+        setPageCache(new PageCache(hex));
     }
 
     /**
-     * Returns true if the cell at row and column is editable.
-     * The offset column is not editable.
+     * Sets the cache the shown bytes are read through.
      *
-     * @param row    the row whose value is to be queried
-     * @param column the column whose value is to be queried
-     * @return true if the cell is editable
+     * @param cache the cache of the pages of the data source
      */
-    @Override
-    public boolean isCellEditable(int row, int column) {
-        return false;
+    public void setPageCache(PageCache cache) {
+        if (pageCache != null) {
+            pageCache.setPageListener(null);
+        }
+        pageCache = cache;
+        pageCache.setPageListener(this::pageLoaded);
+        fireModelChanged();
     }
 
     /**
-     * Returns the byte offset in the file by row and column number
-     * of the cell.
+     * Repaints the rows of the window which show the arrived page.
      *
-     * @param rowIndex    row index of the cell
-     * @param columnIndex column index of the cell
+     * @param page the page index or {@link PageCache#ALL_PAGES}
+     */
+    private void pageLoaded(long page) {
+        int rowCount = getRowCount();
+        if (rowCount <= 0) {
+            return;
+        }
+        if (page == PageCache.ALL_PAGES) {
+            fireRowsChanged(0, rowCount - 1);
+            return;
+        }
+        long pageSize = pageCache.getPageSize();
+        long from = page * pageSize / bytesPerRow - firstRow;
+        long to = ((page + 1) * pageSize - 1) / bytesPerRow - firstRow;
+        if (to >= 0 && from < rowCount) {
+            fireRowsChanged((int) Math.max(from, 0),
+                    (int) Math.min(to, rowCount - 1));
+        }
+    }
+
+    /**
+     * Returns the byte offset in the file of the byte of the window
+     * row.
+     *
+     * @param row   the row of the window
+     * @param index the index of the byte in the row
      * @return the byte offset
      */
-    public int getOffset(int rowIndex, int columnIndex) {
-        return rowIndex * (getColumnCount() - 1) + columnIndex - 1;
+    public long getOffset(int row, int index) {
+        return (firstRow + row) * bytesPerRow + index;
     }
 
     /**
-     * Updates current visible model part.
+     * Moves the cached pages after the edit of the file and repaints
+     * the rows of the window which show the changed bytes. The bytes
+     * after the replaced range move only if its length changed, so the
+     * replacement by as many bytes repaints only its own rows.
+     *
+     * @param offset         the file position of the replaced range
+     * @param removedLength  the byte count of the replaced range
+     * @param insertedLength the byte count of the inserted bytes
+     */
+    private void contentChanged(long offset, long removedLength,
+                                long insertedLength) {
+        pageCache.contentChanged(offset, removedLength, insertedLength);
+
+        long size = getFileSize();
+        long oldSize = size - insertedLength + removedLength;
+        long oldRows = Math.min((oldSize + bytesPerRow - 1) / bytesPerRow
+                - firstRow, windowRows);
+        long oldFirstRow = firstRow;
+        firstRow = clampRow(firstRow);
+        if (offsetDigits(size) != offsetDigits(oldSize)
+                || oldRows != getRowCount()) {
+            // The offset column or the shown rows are resized
+            fireModelChanged();
+            return;
+        }
+
+        long from = firstRow != oldFirstRow ? 0
+                : offset / bytesPerRow - firstRow;
+        long to = insertedLength != removedLength ? windowRows - 1
+                : (offset + insertedLength - 1) / bytesPerRow - firstRow;
+        if (to >= 0 && from < windowRows) {
+            fireRowsChanged((int) Math.max(from, 0),
+                    (int) Math.min(to, windowRows - 1));
+        }
+    }
+
+    /**
+     * Updates current visible model part. The window is moved back if
+     * the file became shorter than its first row. The edits are
+     * followed without it, it is needed only when the file is
+     * replaced.
      */
     public void updateModel() {
-        buffer = hexEditor.read(offset, bufferSize);
-        fireTableDataChanged();
+        pageCache.invalidate();
+        firstRow = clampRow(firstRow);
+        fireModelChanged();
+    }
+
+    /**
+     * Returns the cache of the shown file pages. Its budget and read
+     * ahead can be tuned and its statistics show how often the
+     * painting had to read the file.
+     */
+    public PageCache getPageCache() {
+        return pageCache;
     }
 
     /**
@@ -196,8 +402,57 @@ public class HexTableModel extends AbstractTableModel {
      * bytes starting from the specified offset. If there are no
      * enough bytes to the right of the offset position then returns
      * sequence of less length.
+     *
+     * @param offset the byte offset in the file
+     * @return the sequence or null if some of the bytes are being read
+     * or could not be read
      */
     public ByteSequence getByteSequence(long offset) {
-        return new ByteSequenceImpl(hexEditor.read(offset, 8));
+        return getByteSequence(offset, 8);
+    }
+
+    /**
+     * Returns the ByteSequence of the bytes starting from the
+     * specified offset. The bytes are taken from the cached pages, so
+     * the call never waits for the file: the sequence of the bytes of
+     * one page is the view of the page, and the bytes which lie across
+     * two pages are copied. A missing page is requested.
+     *
+     * @param offset the byte offset in the file
+     * @param length the maximum length of the sequence
+     * @return the sequence, which is shorter at the end of the file, or
+     * null if some of the bytes are being read or could not be read
+     */
+    public ByteSequence getByteSequence(long offset, int length) {
+        length = (int) Math.max(0, Math.min(length, getFileSize() - offset));
+        if (length == 0) {
+            return ByteBufferSequence.wrap(new byte[0]);
+        }
+        int pageSize = pageCache.getPageSize();
+        int start = (int) (offset % pageSize);
+        byte[] page = pageCache.page(offset / pageSize);
+        if (page == null) {
+            return null;
+        }
+        if (start + length <= page.length) {
+            // The page is shared with the cache, so it is not written
+            return new ByteBufferSequence(
+                    ByteBuffer.wrap(page).asReadOnlyBuffer(), start, length);
+        }
+
+        // The bytes lie across the pages
+        byte[] bytes = new byte[length];
+        for (int done = 0; done < length; ) {
+            long position = offset + done;
+            page = pageCache.page(position / pageSize);
+            int skip = (int) (position % pageSize);
+            if (page == null || page.length <= skip) {
+                return null;
+            }
+            int n = Math.min(length - done, page.length - skip);
+            System.arraycopy(page, skip, bytes, done, n);
+            done += n;
+        }
+        return ByteBufferSequence.wrap(bytes);
     }
 }
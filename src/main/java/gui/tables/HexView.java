@@ -0,0 +1,584 @@
+package gui.tables;
+
+import editor.ByteSequence;
+import editor.HexEditor;
+
+import javax.swing.JComponent;
+import javax.swing.JViewport;
+import javax.swing.Scrollable;
+import javax.swing.SwingConstants;
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Font;
+import java.awt.Graphics;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.event.KeyAdapter;
+import java.awt.event.KeyEvent;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+
+/**
+ * The component which shows the contents of a file in binary format:
+ * the offset column, the hex column and the glyph column. It paints
+ * the rows of the {@link HexTableModel} window itself, copying the
+ * characters from a {@link GlyphAtlas}, so the cost of a frame depends
+ * only on the count of the shown bytes and not on the count of the
+ * cells or the file size. The selection is kept as byte offsets and
+ * the cells are found by the view itself.
+ */
+public class HexView extends JComponent implements Scrollable {
+
+    /**
+     * The minimum count of the bytes in one row.
+     */
+    public static final int MIN_BYTES_PER_ROW = 16;
+
+    /**
+     * The background of the selected bytes.
+     */
+    public static final Color SELECTED_BACKGROUND = new Color(0xA2DEEB);
+
+    /**
+     * The background of the view.
+     */
+    public static final Color BACKGROUND = new Color(0xFFFFFF);
+
+    /**
+     * The color of the header and the offsets.
+     */
+    public static final Color HEADER_COLOR = new Color(0x606060);
+
+    /**
+     * The font of the view.
+     */
+    private static final Font FONT = new Font(Font.MONOSPACED, Font.PLAIN, 18);
+
+    /**
+     * The vertical space between the lines in pixels.
+     */
+    private static final int LINE_GAP = 10;
+
+    /**
+     * The space around the columns in characters.
+     */
+    private static final int COLUMN_GAP = 2;
+
+    /**
+     * The rows of the file shown by the view.
+     */
+    private final HexTableModel model;
+
+    /**
+     * The characters of the bytes.
+     */
+    private final GlyphAtlas atlas;
+
+    /**
+     * The characters of the header and the offsets.
+     */
+    private final GlyphAtlas headerAtlas;
+
+    /**
+     * The reused bounds of the painted area.
+     */
+    private final Rectangle clip = new Rectangle();
+
+    /**
+     * The byte offset of the anchor selected byte or -1.
+     */
+    private long anchorOffset = -1;
+
+    /**
+     * The byte offset of the lead selected byte or -1.
+     */
+    private long leadOffset = -1;
+
+    /**
+     * Constructs the view of the model.
+     *
+     * @param model the rows of the file
+     */
+    public HexView(HexTableModel model) {
+        this.model = model;
+        atlas = new GlyphAtlas(FONT, Color.BLACK);
+        headerAtlas = new GlyphAtlas(FONT, HEADER_COLOR);
+
+        setOpaque(true);
+        setFocusable(true);
+
+        model.addModelListener(this::rowsChanged);
+
+        MouseAdapter mouse = new MouseAdapter() {
+            @Override
+            public void mousePressed(MouseEvent e) {
+                requestFocusInWindow();
+                long offset = offsetAt(e.getPoint());
+                if (offset >= 0) {
+                    select(e.isShiftDown() && anchorOffset >= 0
+                            ? anchorOffset : offset, offset);
+                }
+            }
+
+            @Override
+            public void mouseDragged(MouseEvent e) {
+                if (anchorOffset >= 0) {
+                    dragTo(e.getPoint());
+                }
+            }
+        };
+        addMouseListener(mouse);
+        addMouseMotionListener(mouse);
+
+        addKeyListener(new KeyAdapter() {
+            @Override
+            public void keyPressed(KeyEvent e) {
+                moveByKey(e);
+            }
+        });
+    }
+
+    /**
+     * Creates a view containing the data of the given file.
+     */
+    public static HexView createView(HexEditor dataSource) {
+        HexTableModel model = new HexTableModel(MIN_BYTES_PER_ROW);
+        model.setDataSource(dataSource);
+        return new HexView(model);
+    }
+
+    /**
+     * Returns the model of the shown rows.
+     */
+    public HexTableModel getModel() {
+        return model;
+    }
+
+    /**
+     * Returns the height of one row in pixels.
+     */
+    public int getRowHeight() {
+        return atlas.getLineHeight() + LINE_GAP;
+    }
+
+    /**
+     * Returns the width of one character in pixels.
+     */
+    private int charWidth() {
+        return atlas.getCharWidth();
+    }
+
+    /**
+     * Returns the left side of the hex column.
+     */
+    private int hexX() {
+        return (model.getOffsetDigits() + 2 * COLUMN_GAP) * charWidth();
+    }
+
+    /**
+     * Returns the left side of the glyph column.
+     */
+    private int glyphX() {
+        return hexX() + (3 * model.getBytesPerRow() + COLUMN_GAP) * charWidth();
+    }
+
+    /**
+     * Returns the width needed to show the rows of the specified
+     * length.
+     *
+     * @param bytesPerRow the count of the bytes in one row
+     */
+    private int widthFor(int bytesPerRow) {
+        return (model.getOffsetDigits() + 4 * bytesPerRow
+                + 4 * COLUMN_GAP) * charWidth();
+    }
+
+    /**
+     * Returns the top side of the window row, the header is above the
+     * first row.
+     *
+     * @param row the row of the window
+     */
+    private int rowY(int row) {
+        return (row + 1) * getRowHeight();
+    }
+
+    /**
+     * Overridden to fit the rows to the new size: the row length to
+     * the width and the window of the model to the height.
+     */
+    @Override
+    public void setBounds(int x, int y, int width, int height) {
+        super.setBounds(x, y, width, height);
+        int bytesPerRow = Math.max(MIN_BYTES_PER_ROW,
+                (width - widthFor(0)) / (4 * charWidth()));
+        if (bytesPerRow != model.getBytesPerRow()) {
+            model.setBytesPerRow(bytesPerRow);
+        }
+        model.setWindowRows(height / getRowHeight() - 1);
+    }
+
+    @Override
+    public Dimension getPreferredSize() {
+        return new Dimension(widthFor(model.getBytesPerRow()),
+                rowY(model.getRowCount()));
+    }
+
+    @Override
+    public Dimension getPreferredScrollableViewportSize() {
+        return getPreferredSize();
+    }
+
+    @Override
+    public int getScrollableUnitIncrement(Rectangle visibleRect,
+                                          int orientation, int direction) {
+        return orientation == SwingConstants.VERTICAL
+                ? getRowHeight() : charWidth();
+    }
+
+    @Override
+    public int getScrollableBlockIncrement(Rectangle visibleRect,
+                                           int orientation, int direction) {
+        return orientation == SwingConstants.VERTICAL
+                ? visibleRect.height : visibleRect.width;
+    }
+
+    /**
+     * Returns true while the viewport is wide enough for the shortest
+     * rows, otherwise the view is scrolled horizontally.
+     */
+    @Override
+    public boolean getScrollableTracksViewportWidth() {
+        return !(getParent() instanceof JViewport)
+                || getParent().getWidth() >= widthFor(MIN_BYTES_PER_ROW);
+    }
+
+    /**
+     * Returns true since the view shows only the rows which fit it.
+     */
+    @Override
+    public boolean getScrollableTracksViewportHeight() {
+        return true;
+    }
+
+    /**
+     * Paints the header and the rows crossing the painted area.
+     */
+    @Override
+    protected void paintComponent(Graphics g) {
+        g.getClipBounds(clip);
+        if (clip.isEmpty()) {
+            clip.setBounds(0, 0, getWidth(), getHeight());
+        }
+        g.setColor(BACKGROUND);
+        g.fillRect(clip.x, clip.y, clip.width, clip.height);
+
+        int rowHeight = getRowHeight();
+        int textY = LINE_GAP / 2;
+        if (clip.y < rowHeight) {
+            paintHeader(g, textY);
+        }
+
+        int first = Math.max(0, clip.y / rowHeight - 1);
+        int last = Math.min(model.getRowCount() - 1,
+                (clip.y + clip.height) / rowHeight - 1);
+        for (int row = first; row <= last; row++) {
+            paintRow(g, row, rowY(row) + textY);
+        }
+    }
+
+    /**
+     * Paints the numbers of the bytes in a row.
+     *
+     * @param g the graphics to paint on
+     * @param y the top side of the text
+     */
+    private void paintHeader(Graphics g, int y) {
+        int x = hexX();
+        for (int i = 0; i < model.getBytesPerRow(); i++) {
+            headerAtlas.drawHex(g, i & 0xFF, x + 3 * i * charWidth(), y);
+        }
+    }
+
+    /**
+     * Paints the offset, the bytes and the glyphs of the window row.
+     *
+     * @param g   the graphics to paint on
+     * @param row the row of the window
+     * @param y   the top side of the text
+     */
+    private void paintRow(Graphics g, int row, int y) {
+        int bytesPerRow = model.getBytesPerRow();
+        int cw = charWidth();
+        long rowOffset = model.getOffset(row, 0);
+
+        paintSelection(g, rowOffset, bytesPerRow, rowY(row));
+
+        int digits = model.getOffsetDigits();
+        int x = COLUMN_GAP * cw;
+        for (int i = digits - 1; i >= 0; i--) {
+            headerAtlas.drawDigit(g, (int) (rowOffset >>> (4 * i)) & 0xF,
+                    x, y);
+            x += cw;
+        }
+
+        int hexX = hexX();
+        int glyphX = glyphX();
+        for (int i = 0; i < bytesPerRow; i++) {
+            int value = model.getByte(rowOffset + i);
+            if (value == -1) {
+                break;
+            }
+            if (value == PageCache.LOADING) {
+                atlas.drawGlyph(g, GlyphAtlas.NON_PRINTABLE, hexX, y);
+                atlas.drawGlyph(g, GlyphAtlas.NON_PRINTABLE, hexX + cw, y);
+            } else if (value == PageCache.FAILED) {
+                atlas.drawGlyph(g, GlyphAtlas.UNREADABLE, hexX, y);
+                atlas.drawGlyph(g, GlyphAtlas.UNREADABLE, hexX + cw, y);
+                atlas.drawGlyph(g, GlyphAtlas.UNREADABLE, glyphX, y);
+            } else {
+                atlas.drawHex(g, value, hexX, y);
+                atlas.drawGlyph(g, value, glyphX, y);
+            }
+            hexX += 3 * cw;
+            glyphX += cw;
+        }
+    }
+
+    /**
+     * Paints the background of the selected bytes of the row in the
+     * hex and the glyph columns.
+     *
+     * @param g           the graphics to paint on
+     * @param rowOffset   the offset of the first byte of the row
+     * @param bytesPerRow the count of the bytes in the row
+     * @param y           the top side of the row
+     */
+    private void paintSelection(Graphics g, long rowOffset, int bytesPerRow,
+                                int y) {
+        if (anchorOffset < 0) {
+            return;
+        }
+        long from = Math.max(getSelectionStart(), rowOffset);
+        long to = Math.min(getSelectionEnd(), rowOffset + bytesPerRow - 1);
+        if (from > to) {
+            return;
+        }
+        int cw = charWidth();
+        int first = (int) (from - rowOffset);
+        int count = (int) (to - from) + 1;
+        g.setColor(SELECTED_BACKGROUND);
+        g.fillRect(hexX() + 3 * first * cw - cw / 2, y,
+                3 * count * cw, getRowHeight());
+        g.fillRect(glyphX() + first * cw, y, count * cw, getRowHeight());
+    }
+
+    /**
+     * Returns the byte offset of the byte at the point of the view.
+     *
+     * @param point the point in the view
+     * @return the byte offset, which may be past the end of the file
+     * in the last row, or -1 if there is no byte at the point
+     */
+    public long offsetAt(Point point) {
+        int row = point.y / getRowHeight() - 1;
+        if (point.y < 0 || row < 0 || row >= model.getRowCount()) {
+            return -1;
+        }
+        int bytesPerRow = model.getBytesPerRow();
+        int cw = charWidth();
+        int col;
+        if (point.x >= glyphX()) {
+            col = (point.x - glyphX()) / cw;
+        } else if (point.x >= hexX() - cw / 2) {
+            col = (point.x - hexX() + cw / 2) / (3 * cw);
+        } else {
+            return -1;
+        }
+        if (col >= bytesPerRow) {
+            return -1;
+        }
+        return model.getOffset(row, col);
+    }
+
+    /**
+     * Extends the selection to the byte at the dragged point. The view
+     * scrolls when the point is above or below the rows.
+     *
+     * @param point the point in the view
+     */
+    private void dragTo(Point point) {
+        int bytesPerRow = model.getBytesPerRow();
+        int rowHeight = getRowHeight();
+        if (point.y < rowHeight) {
+            model.setFirstRow(model.getFirstRow() - 1);
+            select(anchorOffset, Math.max(0, leadOffset - bytesPerRow));
+            return;
+        }
+        if (point.y >= rowY(model.getRowCount())) {
+            model.setFirstRow(model.getFirstRow() + 1);
+            select(anchorOffset, leadOffset + bytesPerRow);
+            return;
+        }
+        long offset = offsetAt(point);
+        if (offset < 0) {
+            // The point is beside the bytes of the row
+            int row = point.y / rowHeight - 1;
+            offset = model.getOffset(row,
+                    point.x < hexX() ? 0 : bytesPerRow - 1);
+        }
+        select(anchorOffset, offset);
+    }
+
+    /**
+     * Moves the lead selected byte by the navigation keys. The
+     * selection is extended if shift is pressed.
+     *
+     * @param e the pressed key
+     */
+    private void moveByKey(KeyEvent e) {
+        if (leadOffset < 0) {
+            return;
+        }
+        long bytesPerRow = model.getBytesPerRow();
+        long page = Math.max(1, model.getWindowRows() - 1) * bytesPerRow;
+        long lead = leadOffset;
+
+        switch (e.getKeyCode()) {
+            case KeyEvent.VK_LEFT:
+                lead--;
+                break;
+            case KeyEvent.VK_RIGHT:
+                lead++;
+                break;
+            case KeyEvent.VK_UP:
+                lead -= bytesPerRow;
+                break;
+            case KeyEvent.VK_DOWN:
+                lead += bytesPerRow;
+                break;
+            case KeyEvent.VK_PAGE_UP:
+                lead -= page;
+                break;
+            case KeyEvent.VK_PAGE_DOWN:
+                lead += page;
+                break;
+            case KeyEvent.VK_HOME:
+                lead = e.isControlDown() ? 0 : lead - lead % bytesPerRow;
+                break;
+            case KeyEvent.VK_END:
+                lead = e.isControlDown() ? Long.MAX_VALUE
+                        : lead - lead % bytesPerRow + bytesPerRow - 1;
+                break;
+            default:
+                return;
+        }
+        e.consume();
+
+        long size = model.getFileSize();
+        lead = Math.max(0, Math.min(lead, size - 1));
+        select(e.isShiftDown() ? anchorOffset : lead, lead);
+        scrollToOffset(lead);
+    }
+
+    /**
+     * Sets the selected bytes and repaints the view.
+     *
+     * @param anchor the byte offset of the anchor byte
+     * @param lead   the byte offset of the lead byte
+     */
+    private void select(long anchor, long lead) {
+        anchorOffset = anchor;
+        leadOffset = lead;
+        repaint();
+    }
+
+    /**
+     * Moves the window by the least count of rows to show the byte.
+     *
+     * @param offset the byte offset in the file
+     */
+    private void scrollToOffset(long offset) {
+        long row = offset / model.getBytesPerRow();
+        long firstRow = model.getFirstRow();
+        int windowRows = model.getWindowRows();
+        if (row < firstRow) {
+            model.setFirstRow(row);
+        } else if (row >= firstRow + windowRows) {
+            model.setFirstRow(row - windowRows + 1);
+        }
+    }
+
+    /**
+     * Repaints the rows changed in the model.
+     *
+     * @param firstRow the first changed row of the window
+     * @param lastRow  the last changed row or
+     *                 {@link HexTableModel#ALL_ROWS}
+     */
+    private void rowsChanged(int firstRow, int lastRow) {
+        if (lastRow != HexTableModel.ALL_ROWS) {
+            int y = rowY(firstRow);
+            repaint(0, y, getWidth(), rowY(lastRow + 1) - y);
+            return;
+        }
+        revalidate();
+        repaint();
+    }
+
+    /**
+     * Returns the byte offset in the file of the anchor selected byte.
+     *
+     * @return the offset or -1 if no byte is selected
+     */
+    public long getStartOffset() {
+        return anchorOffset;
+    }
+
+    /**
+     * Returns the byte offset in the file of the lead selected byte.
+     *
+     * @return the offset or -1 if no byte is selected
+     */
+    public long getEndOffset() {
+        return leadOffset;
+    }
+
+    /**
+     * Returns the least selected byte offset or -1.
+     */
+    private long getSelectionStart() {
+        return Math.min(anchorOffset, leadOffset);
+    }
+
+    /**
+     * Returns the greatest selected byte offset or -1.
+     */
+    private long getSelectionEnd() {
+        return Math.max(anchorOffset, leadOffset);
+    }
+
+    /**
+     * Selects the byte and moves the window of the model to it if the
+     * byte is outside of it.
+     *
+     * @param offset the byte offset in the file
+     */
+    public void showOffset(long offset) {
+        model.showOffset(offset);
+        select(offset, offset);
+    }
+
+    /**
+     * Returns the ByteSequence of length 8 which filling with the
+     * bytes starting from the lead selected byte. If there are no
+     * enough bytes to the right of it then returns sequence of less
+     * length.
+     *
+     * @return the sequence or null if some of the bytes are being read
+     * or could not be read
+     */
+    public ByteSequence getByteSequence() {
+        return model.getByteSequence(getEndOffset());
+    }
+}
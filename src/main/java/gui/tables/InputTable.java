@@ -25,7 +25,9 @@ public class InputTable extends JTable {
         this.setShowGrid(true);
         this.setAutoResizeMode(JTable.AUTO_RESIZE_OFF);
         this.setCellSelectionEnabled(false);
-        HexTable.setColumnsWidth(this, 50);
+        for (int i = 1; i < getColumnCount(); i++) {
+            getColumnModel().getColumn(i).setPreferredWidth(50);
+        }
         this.addKeyListener(new TableKeyboardInput(this.getModel()));
         getTableHeader().setReorderingAllowed(false);
     }
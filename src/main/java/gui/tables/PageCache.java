@@ -0,0 +1,797 @@
+package gui.tables;
+
+import editor.ContentSnapshot;
+import editor.HexEditor;
+
+import javax.swing.SwingUtilities;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongConsumer;
+
+/**
+ * The cache of the file pages shown by the table. The file is divided
+ * into pages of the same size, a page is read at the first access and
+ * is kept until it becomes the least recently used one and the pages
+ * exceed the memory budget. When a page is missed the next pages in
+ * the scroll direction are read too, so the scrolling finds them in
+ * the cache.
+ * <p>
+ * The pages are read on the I/O thread from the snapshot of the file,
+ * so the painting never waits for the disk: a missing byte is reported
+ * as {@link #LOADING} and the listener is told when its page arrives.
+ * The pages requested by the view are read before the pages read
+ * ahead. A page which could not be read is reported as {@link #FAILED}
+ * and is not read again until the contents change or the cache is
+ * invalidated. The cache itself is used only on the event dispatch
+ * thread.
+ */
+public class PageCache {
+
+    /**
+     * The default size of one page.
+     */
+    public static final int DEFAULT_PAGE_SIZE = 4096;
+
+    /**
+     * The default memory budget of the pages.
+     */
+    public static final long DEFAULT_BUDGET = 1024 * 1024;
+
+    /**
+     * The default count of the pages read ahead.
+     */
+    public static final int DEFAULT_READ_AHEAD = 2;
+
+    /**
+     * The value of a byte whose page is being read.
+     */
+    public static final int LOADING = -2;
+
+    /**
+     * The value of a byte whose page could not be read.
+     */
+    public static final int FAILED = -3;
+
+    /**
+     * The page index passed to the listener when all the pages were
+     * dropped.
+     */
+    public static final long ALL_PAGES = -1;
+
+    /**
+     * The priority of the pages requested by the view.
+     */
+    private static final int VIEW = 0;
+
+    /**
+     * The priority of the pages read ahead.
+     */
+    private static final int READ_AHEAD = 1;
+
+    /**
+     * The count of the recently used pages checked before the map.
+     */
+    private static final int RECENT_PAGES = 8;
+
+    /**
+     * The page of the missing bytes.
+     */
+    private static final byte[] EMPTY_PAGE = new byte[0];
+
+    /**
+     * The I/O thread shared by the caches.
+     */
+    private static final ExecutorService LOADER = newLoader();
+
+    /**
+     * The file the pages are read from.
+     */
+    private final HexEditor hexEditor;
+
+    /**
+     * The size of one page.
+     */
+    private final int pageSize;
+
+    /**
+     * The executor which reads the pages.
+     */
+    private final Executor loader;
+
+    /**
+     * The executor which hands the read pages to the cache.
+     */
+    private final Executor deliverer;
+
+    /**
+     * The read pages by their indexes in the access order.
+     */
+    private final LinkedHashMap<Long, byte[]> pages;
+
+    /**
+     * The requested pages by their indexes.
+     */
+    private final Map<Long, LoadTask> pending = new HashMap<>();
+
+    /**
+     * The indexes of the pages which could not be read since the last
+     * invalidation.
+     */
+    private final Set<Long> failed = new HashSet<>();
+
+    /**
+     * The maximum count of the pages.
+     */
+    private int maxPages;
+
+    /**
+     * The count of the pages read ahead of a missed one.
+     */
+    private int readAhead = DEFAULT_READ_AHEAD;
+
+    /**
+     * The scroll direction: 1 - down, -1 - up.
+     */
+    private int direction = 1;
+
+    /**
+     * The recently used pages by their indexes modulo the count. They
+     * are checked before the map, which boxes the index, so the
+     * repainting of the shown pages allocates nothing.
+     */
+    private final byte[][] recentPages = new byte[RECENT_PAGES][];
+
+    /**
+     * The indexes of the recently used pages.
+     */
+    private final long[] recentIndexes = new long[RECENT_PAGES];
+
+    /**
+     * The snapshot the pages are read from or null if it is not taken
+     * since the last invalidation.
+     */
+    private ContentSnapshot snapshot;
+
+    /**
+     * The count of the invalidations, the pages read before the last
+     * one are dropped.
+     */
+    private volatile int generation = 0;
+
+    /**
+     * The count of the requests which orders the requests with the
+     * same priority.
+     */
+    private long requestCount = 0;
+
+    /**
+     * The receiver of the indexes of the arrived pages or null.
+     */
+    private LongConsumer listener;
+
+    /**
+     * The count of the accesses served by a cached page.
+     */
+    private long hits;
+
+    /**
+     * The count of the accesses which requested the page.
+     */
+    private long misses;
+
+    /**
+     * The count of the pages read ahead.
+     */
+    private long readAheads;
+
+    /**
+     * Constructs the cache with the default page size and budget
+     * which reads the pages on the shared I/O thread.
+     *
+     * @param hexEditor the file the pages are read from
+     */
+    public PageCache(HexEditor hexEditor) {
+        this(hexEditor, DEFAULT_PAGE_SIZE, DEFAULT_BUDGET,
+                LOADER, SwingUtilities::invokeLater);
+    }
+
+    /**
+     * Constructs the cache.
+     *
+     * @param hexEditor the file the pages are read from
+     * @param pageSize  the size of one page
+     * @param budget    the memory budget of the pages in bytes
+     * @param loader    the executor which reads the pages, the
+     *                  requests are ordered by priority if it is made
+     *                  by {@link #newLoader()}
+     * @param deliverer the executor which hands the read pages to the
+     *                  thread using the cache
+     */
+    public PageCache(HexEditor hexEditor, int pageSize, long budget,
+                     Executor loader, Executor deliverer) {
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException(
+                    "Invalid page size: " + pageSize);
+        }
+        this.hexEditor = hexEditor;
+        this.pageSize = pageSize;
+        this.loader = loader;
+        this.deliverer = deliverer;
+        this.pages = new LinkedHashMap<Long, byte[]>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(
+                    Map.Entry<Long, byte[]> eldest) {
+                return size() > maxPages;
+            }
+        };
+        setBudget(budget);
+    }
+
+    /**
+     * Creates the I/O thread which reads the requests of the caches in
+     * the order of their priority. The thread does not keep the
+     * application running.
+     *
+     * @return the executor of the page reads
+     */
+    public static ExecutorService newLoader() {
+        return new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                new PriorityBlockingQueue<>(), r -> {
+            Thread thread = new Thread(r, "Page loader");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Returns the size of one page.
+     */
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    /**
+     * Sets the memory budget of the pages. The least recently used
+     * pages beyond the budget are dropped.
+     *
+     * @param budget the budget in bytes, at least one page is kept
+     */
+    public void setBudget(long budget) {
+        if (budget < 0) {
+            throw new IllegalArgumentException("Invalid budget: " + budget);
+        }
+        maxPages = (int) Math.max(1, Math.min(budget / pageSize,
+                Integer.MAX_VALUE));
+        Iterator<Long> eldest = pages.keySet().iterator();
+        while (pages.size() > maxPages) {
+            eldest.next();
+            eldest.remove();
+        }
+    }
+
+    /**
+     * Returns the maximum count of the cached pages.
+     */
+    public int getMaxPages() {
+        return maxPages;
+    }
+
+    /**
+     * Sets the count of the pages read ahead of a missed one.
+     *
+     * @param pageCount the page count, 0 - to read only missed pages
+     */
+    public void setReadAhead(int pageCount) {
+        if (pageCount < 0) {
+            throw new IllegalArgumentException(
+                    "Invalid read ahead: " + pageCount);
+        }
+        readAhead = pageCount;
+    }
+
+    /**
+     * Sets the scroll direction, the pages are read ahead in it.
+     *
+     * @param direction positive - down, negative - up, 0 - keep
+     */
+    public void setDirection(int direction) {
+        if (direction != 0) {
+            this.direction = Integer.signum(direction);
+        }
+    }
+
+    /**
+     * Returns the scroll direction: 1 - down, -1 - up.
+     */
+    public int getDirection() {
+        return direction;
+    }
+
+    /**
+     * Sets the receiver of the indexes of the arrived pages. It gets
+     * {@link #ALL_PAGES} if the pages were dropped since the file was
+     * saved while they were read.
+     *
+     * @param listener the receiver or null
+     */
+    public void setPageListener(LongConsumer listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Returns the unsigned byte value at the specified offset.
+     *
+     * @param offset the byte offset in the file
+     * @return the byte value, -1 if there is no such byte,
+     * {@link #LOADING} if its page is being read or {@link #FAILED} if
+     * its page could not be read
+     */
+    public int get(long offset) {
+        ContentSnapshot contents = snapshot();
+        if (offset < 0 || contents == null || offset >= contents.length()) {
+            return -1;
+        }
+        long index = offset / pageSize;
+        byte[] page = page(index);
+        if (page == null) {
+            return failed.contains(index) ? FAILED : LOADING;
+        }
+        int i = (int) (offset % pageSize);
+        return i < page.length ? page[i] & 0xFF : -1;
+    }
+
+    /**
+     * Returns the page with the specified index. If it is not cached
+     * it is requested with the pages ahead of it.
+     *
+     * @param index the page index
+     * @return the page bytes, shorter than the page size at the end
+     * of the file, or null if the page is being read or could not be
+     * read. The bytes are shared and must not be changed.
+     */
+    public byte[] page(long index) {
+        int slot = (int) (index % RECENT_PAGES);
+        if (recentPages[slot] != null && recentIndexes[slot] == index) {
+            hits++;
+            return recentPages[slot];
+        }
+        byte[] page = pages.get(index);
+        if (page != null) {
+            hits++;
+        } else if (failed.contains(index)) {
+            return null;
+        } else {
+            LoadTask task = pending.get(index);
+            if (task == null || task.priority != VIEW) {
+                misses++;
+                request(index, VIEW);
+                requestAhead(index);
+            }
+            // The page is here already if it is read synchronously,
+            // it stays the most recently used one
+            page = pages.get(index);
+            if (page == null) {
+                return null;
+            }
+        }
+        recentPages[slot] = page;
+        recentIndexes[slot] = index;
+        return page;
+    }
+
+    /**
+     * Requests the pages next to the missed one in the scroll
+     * direction.
+     *
+     * @param index the index of the missed page
+     */
+    private void requestAhead(long index) {
+        ContentSnapshot contents = snapshot();
+        for (int i = 1; i <= readAhead; i++) {
+            long next = index + (long) i * direction;
+            if (next < 0 || contents == null
+                    || next * pageSize >= contents.length()) {
+                break;
+            }
+            if (!pages.containsKey(next) && !pending.containsKey(next)
+                    && !failed.contains(next)) {
+                request(next, READ_AHEAD);
+                readAheads++;
+            }
+        }
+    }
+
+    /**
+     * Sends the page request to the loader. The previous request of
+     * the page is cancelled.
+     *
+     * @param index    the page index
+     * @param priority the request priority
+     */
+    private void request(long index, int priority) {
+        LoadTask task = new LoadTask(index, priority, requestCount++,
+                generation, snapshot());
+        LoadTask previous = pending.put(index, task);
+        if (previous != null) {
+            previous.cancelled = true;
+        }
+        loader.execute(task);
+    }
+
+    /**
+     * Puts the read page into the cache and tells the listener about
+     * it. The page is dropped if the cache was invalidated since it
+     * was requested. If the read failed since the snapshot is stale,
+     * the cache is invalidated, otherwise the page is marked as failed.
+     *
+     * @param task  the request of the page
+     * @param bytes the read bytes or null if the read failed
+     */
+    private void deliver(LoadTask task, byte[] bytes) {
+        if (task.generation != generation
+                || pending.get(task.index) != task) {
+            return;
+        }
+        pending.remove(task.index);
+
+        if (bytes == null && task.contents.isStale()) {
+            // The file was saved or closed while the page was read
+            invalidate();
+            if (listener != null) {
+                listener.accept(ALL_PAGES);
+            }
+            return;
+        }
+        if (bytes == null) {
+            // The page is not requested again, so a persistent error
+            // does not make the view read and repaint it endlessly
+            failed.add(task.index);
+        } else {
+            pages.put(task.index, bytes);
+        }
+        if (listener != null) {
+            listener.accept(task.index);
+        }
+    }
+
+    /**
+     * Returns the snapshot the pages are read from taking it if it is
+     * necessary.
+     *
+     * @return the snapshot or null if there is no open file
+     */
+    private ContentSnapshot snapshot() {
+        if (snapshot == null) {
+            snapshot = hexEditor.snapshot();
+        }
+        return snapshot;
+    }
+
+    /**
+     * Moves the cached pages after the change of the file contents.
+     * The bytes before the replaced range stay in their pages, the
+     * bytes after it are shifted by the difference of the lengths, so
+     * only the pages with the inserted bytes are dropped. A page whose
+     * bytes moved by a whole page is kept as it is, the other moved
+     * pages are assembled from the two cached pages they lie across.
+     * The pages being read are requested again from the new contents.
+     *
+     * @param offset         the file position of the replaced range
+     * @param removedLength  the byte count of the replaced range
+     * @param insertedLength the byte count of the inserted bytes
+     */
+    public void contentChanged(long offset, long removedLength,
+                               long insertedLength) {
+        Map<Long, byte[]> old = new LinkedHashMap<>(pages);
+        Map<Long, LoadTask> oldPending = new LinkedHashMap<>(pending);
+        invalidate();
+        ContentSnapshot contents = snapshot();
+        if (contents == null) {
+            return;
+        }
+
+        Change change = new Change(offset, removedLength, insertedLength,
+                contents.length());
+        // The eldest pages are put first, so the access order is kept
+        Set<Long> moved = new LinkedHashSet<>();
+        for (Map.Entry<Long, byte[]> entry : old.entrySet()) {
+            long start = entry.getKey() * pageSize;
+            change.addPages(moved, start, start + entry.getValue().length);
+        }
+        for (long index : moved) {
+            byte[] page = change.assemble(old, index);
+            if (page != null) {
+                pages.put(index, page);
+            }
+        }
+
+        for (LoadTask task : oldPending.values()) {
+            Set<Long> requested = new LinkedHashSet<>();
+            long start = task.index * pageSize;
+            change.addPages(requested, start, start + pageSize);
+            for (long index : requested) {
+                if (!pages.containsKey(index)
+                        && !pending.containsKey(index)) {
+                    request(index, task.priority);
+                }
+            }
+        }
+    }
+
+    /**
+     * Drops all the pages and the requests. It must be called when the
+     * file is replaced.
+     */
+    public void invalidate() {
+        generation++;
+        pages.clear();
+        pending.clear();
+        failed.clear();
+        snapshot = null;
+        Arrays.fill(recentPages, null);
+    }
+
+    /**
+     * Returns the count of the cached pages.
+     */
+    public int size() {
+        return pages.size();
+    }
+
+    /**
+     * Returns the count of the requested pages which have not arrived
+     * yet.
+     */
+    public int getPendingCount() {
+        return pending.size();
+    }
+
+    /**
+     * Returns the count of the accesses served by a cached page.
+     */
+    public long getHitCount() {
+        return hits;
+    }
+
+    /**
+     * Returns the count of the accesses which requested the page.
+     */
+    public long getMissCount() {
+        return misses;
+    }
+
+    /**
+     * Returns the count of the pages read ahead.
+     */
+    public long getReadAheadCount() {
+        return readAheads;
+    }
+
+    /**
+     * Returns the share of the accesses served by a cached page.
+     *
+     * @return the hit ratio from 0 to 1
+     */
+    public double getHitRatio() {
+        long total = hits + misses;
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    /**
+     * Sets all the counters to zero.
+     */
+    public void resetStatistics() {
+        hits = 0;
+        misses = 0;
+        readAheads = 0;
+    }
+
+    /**
+     * The replacement of a range of the file which maps the old
+     * positions of the bytes to the new ones.
+     */
+    private final class Change {
+
+        /**
+         * The file position of the replaced range.
+         */
+        final long offset;
+
+        /**
+         * The old end of the replaced range.
+         */
+        final long removedEnd;
+
+        /**
+         * The new end of the replaced range.
+         */
+        final long insertedEnd;
+
+        /**
+         * The shift of the bytes after the range.
+         */
+        final long shift;
+
+        /**
+         * The new file size.
+         */
+        final long length;
+
+        /**
+         * Constructs the change.
+         *
+         * @param offset         the file position of the replaced range
+         * @param removedLength  the byte count of the replaced range
+         * @param insertedLength the byte count of the inserted bytes
+         * @param length         the new file size
+         */
+        Change(long offset, long removedLength, long insertedLength,
+               long length) {
+            this.offset = offset;
+            this.removedEnd = offset + removedLength;
+            this.insertedEnd = offset + insertedLength;
+            this.shift = insertedLength - removedLength;
+            this.length = length;
+        }
+
+        /**
+         * Adds the indexes of the new pages which hold the kept bytes
+         * of the old range.
+         *
+         * @param indexes the receiver of the page indexes
+         * @param from    the old position of the first byte
+         * @param to      the old position after the last byte
+         */
+        void addPages(Set<Long> indexes, long from, long to) {
+            addRange(indexes, from, Math.min(to, offset));
+            addRange(indexes, Math.max(from, removedEnd) + shift,
+                    to + shift);
+        }
+
+        /**
+         * Adds the indexes of the pages of the range.
+         *
+         * @param indexes the receiver of the page indexes
+         * @param from    the position of the first byte
+         * @param to      the position after the last byte
+         */
+        private void addRange(Set<Long> indexes, long from, long to) {
+            to = Math.min(to, length);
+            for (long i = from / pageSize; from < to && i * pageSize < to;
+                 i++) {
+                indexes.add(i);
+            }
+        }
+
+        /**
+         * Returns the new page made of the old pages or null if it has
+         * inserted bytes or not all its bytes are cached.
+         *
+         * @param old   the old pages by their indexes
+         * @param index the new page index
+         */
+        byte[] assemble(Map<Long, byte[]> old, long index) {
+            long start = index * pageSize;
+            long end = Math.min(start + pageSize, length);
+            if (start >= end) {
+                return null;
+            }
+            long from;
+            if (end <= offset) {
+                from = start;
+            } else if (start >= insertedEnd) {
+                from = start - shift;
+            } else {
+                return null;
+            }
+
+            int count = (int) (end - start);
+            byte[] first = old.get(from / pageSize);
+            if (from % pageSize == 0 && first != null
+                    && first.length == count) {
+                return first;
+            }
+            byte[] page = new byte[count];
+            for (int done = 0; done < count; ) {
+                long position = from + done;
+                byte[] part = old.get(position / pageSize);
+                int skip = (int) (position % pageSize);
+                if (part == null || part.length <= skip) {
+                    return null;
+                }
+                int n = Math.min(count - done, part.length - skip);
+                System.arraycopy(part, skip, page, done, n);
+                done += n;
+            }
+            return page;
+        }
+    }
+
+    /**
+     * The request of a page which is run by the loader. The requests
+     * are ordered by the priority and then by the request order.
+     */
+    private final class LoadTask implements Runnable, Comparable<LoadTask> {
+
+        /**
+         * The page index.
+         */
+        final long index;
+
+        /**
+         * The request priority, the less the earlier.
+         */
+        final int priority;
+
+        /**
+         * The number of the request.
+         */
+        final long number;
+
+        /**
+         * The cache generation of the request.
+         */
+        final int generation;
+
+        /**
+         * The snapshot the page is read from.
+         */
+        final ContentSnapshot contents;
+
+        /**
+         * Whether the page was requested again.
+         */
+        volatile boolean cancelled = false;
+
+        /**
+         * Constructs the request.
+         *
+         * @param index      the page index
+         * @param priority   the request priority
+         * @param number     the number of the request
+         * @param generation the cache generation of the request
+         * @param contents   the snapshot the page is read from
+         */
+        LoadTask(long index, int priority, long number, int generation,
+                 ContentSnapshot contents) {
+            this.index = index;
+            this.priority = priority;
+            this.number = number;
+            this.generation = generation;
+            this.contents = contents;
+        }
+
+        @Override
+        public void run() {
+            if (cancelled || generation != PageCache.this.generation) {
+                return;
+            }
+            long offset = index * pageSize;
+            byte[] bytes = contents.read(offset, pageSize);
+            if (bytes == null && offset >= contents.length()) {
+                bytes = EMPTY_PAGE;
+            }
+            byte[] page = bytes;
+            deliverer.execute(() -> deliver(this, page));
+        }
+
+        @Override
+        public int compareTo(LoadTask other) {
+            if (priority != other.priority) {
+                return Integer.compare(priority, other.priority);
+            }
+            return Long.compare(number, other.number);
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package gui.tables;
+
+/**
+ * The mapping between the first shown row of a file and the value of
+ * an int scroll bar. While the file has fewer rows than the scroll bar
+ * resolution every unit is one row; a bigger file is scaled down, so
+ * one unit covers several rows and any row can be reached by one drag
+ * of the thumb, however big the file is.
+ */
+public class RowScrollModel {
+
+    /**
+     * The maximum value of the scroll bar.
+     */
+    public static final int RESOLUTION = 1 << 30;
+
+    /**
+     * The row count of the file.
+     */
+    private long rowCount;
+
+    /**
+     * The count of the shown rows.
+     */
+    private int visibleRows;
+
+    /**
+     * Constructs the mapping.
+     *
+     * @param rowCount    the row count of the file
+     * @param visibleRows the count of the shown rows
+     */
+    public RowScrollModel(long rowCount, int visibleRows) {
+        setRows(rowCount, visibleRows);
+    }
+
+    /**
+     * Sets the row counts.
+     *
+     * @param rowCount    the row count of the file
+     * @param visibleRows the count of the shown rows
+     */
+    public void setRows(long rowCount, int visibleRows) {
+        this.rowCount = Math.max(rowCount, 0);
+        this.visibleRows = Math.max(visibleRows, 1);
+    }
+
+    /**
+     * Returns true if every scroll bar unit is one row.
+     */
+    public boolean isExact() {
+        return rowCount <= RESOLUTION;
+    }
+
+    /**
+     * Returns the maximum of the scroll bar.
+     */
+    public int getMaximum() {
+        return (int) Math.min(rowCount, RESOLUTION);
+    }
+
+    /**
+     * Returns the extent of the scroll bar which is the size of the
+     * thumb in the scroll bar units.
+     */
+    public int getExtent() {
+        if (isExact()) {
+            return (int) Math.min(visibleRows, rowCount);
+        }
+        return (int) Math.max(1, (long) visibleRows * RESOLUTION / rowCount);
+    }
+
+    /**
+     * Returns the scroll bar value of the first shown row.
+     *
+     * @param firstRow the file row shown first
+     * @return the scroll bar value
+     */
+    public int toValue(long firstRow) {
+        if (isExact()) {
+            return (int) firstRow;
+        }
+        long lastFirstRow = rowCount - visibleRows;
+        int lastValue = getMaximum() - getExtent();
+        if (firstRow >= lastFirstRow) {
+            return lastValue;
+        }
+        return (int) Math.round((double) firstRow / lastFirstRow * lastValue);
+    }
+
+    /**
+     * Returns the first shown row of the scroll bar value.
+     *
+     * @param value the scroll bar value
+     * @return the file row shown first
+     */
+    public long toRow(int value) {
+        if (isExact()) {
+            return value;
+        }
+        long lastFirstRow = rowCount - visibleRows;
+        int lastValue = getMaximum() - getExtent();
+        if (value >= lastValue) {
+            return lastFirstRow;
+        }
+        return Math.round((double) value / lastValue * lastFirstRow);
+    }
+}
@@ -1,10 +1,10 @@
 package gui.window;
 
 import gui.actions.StandardFileActions;
+import gui.tables.HexScrollPane;
 
 import javax.swing.JFrame;
 
-import javax.swing.JScrollPane;
 import javax.swing.SwingUtilities;
 import javax.swing.UIManager;
 import java.awt.Dimension;
@@ -22,7 +22,7 @@ public class MainWindow extends JFrame {
     /**
      * The pane for manipulation with file data.
      */
-    public final JScrollPane fileViewPanel;
+    public final HexScrollPane fileViewPanel;
 
     /**
      * The pane on which byte decode is placed.
@@ -50,7 +50,7 @@ public class MainWindow extends JFrame {
 
         decodePanel = new ByteRepresentPanel();
 
-        fileViewPanel = new JScrollPane();
+        fileViewPanel = new HexScrollPane();
 
         this.add(toolBar, BorderLayout.NORTH);
 
@@ -57,7 +57,15 @@ public class Menu extends JMenuBar {
         JMenuItem mItemAdd = new JMenuItem(EditFileActions.addAct);
         JMenuItem mItemZero = new JMenuItem(EditFileActions.zeroAct);
         JMenuItem mItemFind = new JMenuItem(EditFileActions.findAct);
+        JMenuItem mItemFindPrevious =
+                new JMenuItem(EditFileActions.findPreviousAct);
+        JMenuItem mItemIndex = new JMenuItem(EditFileActions.indexAct);
+        JMenuItem mItemUndo = new JMenuItem(EditFileActions.undoAct);
+        JMenuItem mItemRedo = new JMenuItem(EditFileActions.redoAct);
 
+        menuEdit.add(mItemUndo);
+        menuEdit.add(mItemRedo);
+        menuEdit.addSeparator();
         menuEdit.add(mItemCopy);
         menuEdit.add(mItemCut);
         menuEdit.add(mItemPaste);
@@ -67,6 +75,8 @@ public class Menu extends JMenuBar {
         menuEdit.add(mItemZero);
         menuEdit.addSeparator();
         menuEdit.add(mItemFind);
+        menuEdit.add(mItemFindPrevious);
+        menuEdit.add(mItemIndex);
 
         this.add(menuEdit);
     }
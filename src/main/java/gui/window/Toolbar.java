@@ -27,6 +27,9 @@ public class Toolbar extends JToolBar {
         JButton btnAdd = new JButton(EditFileActions.addAct);
         JButton btnZero = new JButton(EditFileActions.zeroAct);
         JButton btnFind = new JButton(EditFileActions.findAct);
+        JButton btnIndex = new JButton(EditFileActions.indexAct);
+        JButton btnUndo = new JButton(EditFileActions.undoAct);
+        JButton btnRedo = new JButton(EditFileActions.redoAct);
 
         this.add(btnOpen);
         this.add(btnClose);
@@ -39,5 +42,8 @@ public class Toolbar extends JToolBar {
         this.add(btnAdd);
         this.add(btnZero);
         this.add(btnFind);
+        this.add(btnIndex);
+        this.add(btnUndo);
+        this.add(btnRedo);
     }
 }
@@ -1,8 +1,13 @@
 import editor.ByteSequence;
+import editor.impl.ByteBufferSequence;
 import editor.impl.ByteSequenceImpl;
 import org.junit.jupiter.api.Test;
 
 import java.math.BigInteger;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.ReadOnlyBufferException;
+import java.util.Random;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -205,4 +210,66 @@ public class ByteSequenceTest {
         assertEquals(1, ByteSequenceImpl.find(mask, compared));
     }
 
+
+    @Test
+    void bufferViewDecodesLikeCopy() {
+        byte[] page = new byte[64];
+        new Random(7).nextBytes(page);
+
+        for (int length = 1; length <= 12; length++) {
+            byte[] bytes = new byte[length];
+            System.arraycopy(page, 5, bytes, 0, length);
+            ByteSequence copy = new ByteSequenceImpl(bytes);
+            ByteSequence view = new ByteBufferSequence(
+                    ByteBuffer.wrap(page), 5, length);
+
+            assertEquals(length, view.length());
+            assertEquals(copy.representAsSigned8Bit(0), view.representAsSigned8Bit(0));
+            assertEquals(copy.representAsUnsigned8Bit(0), view.representAsUnsigned8Bit(0));
+            assertEquals(copy.representAsSigned16Bit(0), view.representAsSigned16Bit(0));
+            assertEquals(copy.representAsUnsigned16Bit(0), view.representAsUnsigned16Bit(0));
+            assertEquals(copy.representAsSigned32Bit(0), view.representAsSigned32Bit(0));
+            assertEquals(copy.representAsUnsigned32Bit(0), view.representAsUnsigned32Bit(0));
+            assertEquals(copy.representAsSigned64Bit(0), view.representAsSigned64Bit(0));
+            assertEquals(copy.representAsUnsigned64Bit(0), view.representAsUnsigned64Bit(0));
+            assertEquals(copy.representAsFloat(0), view.representAsFloat(0));
+            assertEquals(copy.representAsDouble(0), view.representAsDouble(0));
+            assertEquals(copy.representAsBigInteger(length), view.representAsBigInteger(length));
+        }
+    }
+
+    @Test
+    void bufferViewSharesBytes() {
+        byte[] page = new byte[]{1, 2, 3, 4, 5, 6};
+        ByteBuffer buffer = ByteBuffer.wrap(page);
+        ByteSequence view = new ByteBufferSequence(buffer, 2, 3);
+
+        // The bytes are not copied and the buffer is not moved
+        page[3] = 0x7F;
+        assertEquals(0x7F, view.getByte(1));
+        assertEquals(0, buffer.position());
+        assertEquals(0x057F03, view.representAsUnsigned32Bit(0));
+        assertEquals(0x057F, view.representAsUnsigned16Bit(1));
+        assertEquals(ByteBufferSequence.wrap(new byte[]{3, 0x7F, 5}), view);
+
+        assertThrows(IndexOutOfBoundsException.class, () -> view.getByte(3));
+        assertThrows(IllegalArgumentException.class,
+                () -> new ByteBufferSequence(buffer, 4, 3));
+    }
+
+    @Test
+    void bufferViewCanNotWritePage() throws ReflectiveOperationException {
+        byte[] page = new byte[]{1, 2, 3, 4, 5, 6};
+        ByteSequence view = new ByteBufferSequence(
+                ByteBuffer.wrap(page).asReadOnlyBuffer(), 1, 4);
+
+        Field field = ByteBufferSequence.class.getDeclaredField("buffer");
+        field.setAccessible(true);
+        ByteBuffer buffer = (ByteBuffer) field.get(view);
+        assertTrue(buffer.isReadOnly());
+        assertThrows(ReadOnlyBufferException.class,
+                () -> buffer.put(1, (byte) 0x7F));
+        assertArrayEquals(new byte[]{1, 2, 3, 4, 5, 6}, page);
+        assertEquals(0x05040302L, view.representAsUnsigned32Bit(0));
+    }
 }
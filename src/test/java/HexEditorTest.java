@@ -1,8 +1,24 @@
+import editor.BytePattern;
+import editor.ContentListener;
+import editor.ContentSnapshot;
 import editor.HexEditor;
+import editor.ProgressMonitor;
 import editor.impl.HexEditorImpl;
+import editor.impl.SessionStatistics;
 import org.apache.commons.lang3.ArrayUtils;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -277,8 +293,13 @@ public class HexEditorTest {
 
     @Test
     void deleteWhenFileIsNotOpened() {
-        assertThrows(NullPointerException.class,
-                () -> hexEditor.delete(0, 0));
+        assertFalse(hexEditor.delete(0, 0));
+    }
+
+    @Test
+    void insertAndAddWhenFileIsNotOpened() {
+        assertFalse(hexEditor.insert(0, new byte[]{1}));
+        assertFalse(hexEditor.add(0, new byte[]{1}));
     }
 
     @Test
@@ -287,4 +308,589 @@ public class HexEditorTest {
         hexEditor.delete(0, 0);
         assertEquals(11, hexEditor.getFileSize());
     }
+
+    @Test
+    void editsDoNotChangeSourceFile() throws IOException {
+        byte[] source = Files.readAllBytes(Paths.get("src/test/resources/test1.txt"));
+        hexEditor.openFile("src/test/resources/test1.txt");
+        hexEditor.add(3, new byte[]{1, 2, 3});
+        hexEditor.delete(0, 2);
+        hexEditor.insertZeros(4, 5);
+        assertArrayEquals(source, Files.readAllBytes(Paths.get("src/test/resources/test1.txt")));
+    }
+
+    @Test
+    void randomEditsMatchArrayModel() {
+        hexEditor.openFile("src/test/resources/test1.txt");
+        byte[] model = hexEditor.read(0, 11);
+        Random random = new Random(42);
+
+        for (int i = 0; i < 500; i++) {
+            int offset = random.nextInt(model.length + 1);
+            byte[] bytes = new byte[random.nextInt(5)];
+            random.nextBytes(bytes);
+
+            switch (random.nextInt(4)) {
+                case 0:
+                    hexEditor.add(offset, bytes);
+                    model = ArrayUtils.insert(offset, model, bytes);
+                    break;
+                case 1:
+                    int count = Math.min(random.nextInt(5), model.length - offset);
+                    hexEditor.delete(offset, count);
+                    model = ArrayUtils.addAll(ArrayUtils.subarray(model, 0, offset),
+                            ArrayUtils.subarray(model, offset + count, model.length));
+                    break;
+                case 2:
+                    hexEditor.insert(offset, bytes);
+                    model = ArrayUtils.addAll(ArrayUtils.subarray(model, 0, offset),
+                            ArrayUtils.addAll(bytes, ArrayUtils.subarray(
+                                    model, offset + bytes.length, model.length)));
+                    break;
+                default:
+                    hexEditor.insertZeros(bytes.length, offset);
+                    model = ArrayUtils.addAll(ArrayUtils.subarray(model, 0, offset),
+                            ArrayUtils.addAll(new byte[bytes.length], ArrayUtils.subarray(
+                                    model, offset + bytes.length, model.length)));
+            }
+            assertEquals(model.length, hexEditor.getFileSize());
+        }
+        assertArrayEquals(model, hexEditor.read(0, model.length));
+    }
+
+    @Test
+    void saveAfterEdits() {
+        hexEditor.openFile("src/test/resources/test1.txt");
+        hexEditor.saveAsNewFile("src/test/resources/test3.txt");
+        hexEditor.closeFile();
+
+        hexEditor.openFile("src/test/resources/test3.txt");
+        hexEditor.delete(0, 4);
+        hexEditor.add(3, new byte[]{10, 15});
+        byte[] expected = hexEditor.read(0, 100);
+        assertTrue(hexEditor.saveFile());
+        assertArrayEquals(expected, hexEditor.read(0, 100));
+        hexEditor.closeFile();
+
+        hexEditor.openFile("src/test/resources/test3.txt");
+        assertArrayEquals(expected, hexEditor.read(0, 100));
+    }
+
+    @Test
+    void sessionCountsSavedSystemCalls() {
+        hexEditor.openFile("src/test/resources/test1.txt");
+        for (int i = 0; i < 10; i++) {
+            hexEditor.read(i, 1);
+        }
+        SessionStatistics statistics = ((HexEditorImpl) hexEditor).getStatistics();
+        assertEquals(1, statistics.getWindowMaps());
+        assertEquals(9, statistics.getWindowHits());
+        assertTrue(statistics.getSizeQueries() >= 10);
+        assertTrue(statistics.getSavedSystemCalls() > 0);
+    }
+
+    @Test
+    void saveInPlaceAfterShiftsInBothDirections(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("shift.bin");
+        byte[] data = new byte[3 * 1024 * 1024 + 17];
+        new Random(7).nextBytes(data);
+        Files.write(file, data);
+
+        hexEditor.openFile(file.toString());
+        ((HexEditorImpl) hexEditor).setAtomicSave(false);
+        hexEditor.delete(100, 5000);
+        hexEditor.add(1_500_000, new byte[2_000_000]);
+        hexEditor.delete(2_500_000, 10);
+        hexEditor.insert(3_000_000, new byte[]{1, 2, 3});
+        hexEditor.add(0, new byte[]{9});
+        long size = hexEditor.getFileSize();
+        byte[] expected = hexEditor.read(0, (int) size);
+
+        assertTrue(hexEditor.saveFile());
+        assertArrayEquals(expected, Files.readAllBytes(file));
+        assertArrayEquals(expected, hexEditor.read(0, (int) size));
+    }
+
+    @Test
+    void saveWritesOnlyChangedRanges(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("dirty.bin");
+        byte[] data = new byte[3 * 1024 * 1024];
+        new Random(16).nextBytes(data);
+        Files.write(file, data);
+        long[] written = new long[2];
+        ProgressMonitor monitor = new ProgressMonitor() {
+            @Override
+            public void progress(long done, long total) {
+                written[0] = done;
+                written[1] = total;
+            }
+
+            @Override
+            public boolean isCancelled() {
+                return false;
+            }
+        };
+
+        hexEditor.openFile(file.toString());
+        hexEditor.insert(2_000_000, new byte[]{1, 2, 3, 4});
+        byte[] expected = hexEditor.read(0, data.length);
+        assertTrue(hexEditor.saveFile(monitor));
+        assertArrayEquals(new long[]{4, 4}, written);
+        assertArrayEquals(expected, Files.readAllBytes(file));
+
+        // Only the bytes between the new and the old places of the
+        // moved block are shifted
+        ((HexEditorImpl) hexEditor).setAtomicSave(false);
+        byte[] moved = hexEditor.read(3_000_000, 1000);
+        hexEditor.delete(3_000_000, 1000);
+        hexEditor.add(2_500_000, moved);
+        expected = hexEditor.read(0, data.length);
+        assertTrue(hexEditor.saveFile(monitor));
+        assertArrayEquals(new long[]{501_000, 501_000}, written);
+        assertArrayEquals(expected, Files.readAllBytes(file));
+        assertArrayEquals(expected, hexEditor.read(0, data.length));
+    }
+
+    @Test
+    void shiftingSaveReplacesFileAtomically(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("atomic.bin");
+        byte[] data = new byte[2 * 1024 * 1024];
+        new Random(17).nextBytes(data);
+        Files.write(file, data);
+        long[] written = new long[2];
+        ProgressMonitor monitor = new ProgressMonitor() {
+            @Override
+            public void progress(long done, long total) {
+                written[0] = done;
+                written[1] = total;
+            }
+
+            @Override
+            public boolean isCancelled() {
+                return false;
+            }
+        };
+
+        hexEditor.openFile(file.toString());
+        hexEditor.add(10, new byte[]{1, 2, 3});
+        long size = hexEditor.getFileSize();
+        byte[] expected = hexEditor.read(0, (int) size);
+        assertTrue(hexEditor.saveFile(monitor));
+        assertArrayEquals(new long[]{size, size}, written);
+        assertArrayEquals(expected, Files.readAllBytes(file));
+        assertArrayEquals(expected, hexEditor.read(0, (int) size));
+
+        Path copy = dir.resolve("copy.bin");
+        Files.write(copy, new byte[]{7});
+        hexEditor.delete(0, 5);
+        assertTrue(hexEditor.saveAsNewFile(copy.toString(), monitor));
+        assertArrayEquals(hexEditor.read(0, (int) size), Files.readAllBytes(copy));
+        try (Stream<Path> files = Files.list(dir)) {
+            assertEquals(2, files.count());
+        }
+    }
+
+    @Test
+    void rollbackBatch() {
+        hexEditor.openFile("src/test/resources/test1.txt");
+        byte[] before = hexEditor.read(0, 11);
+        assertTrue(hexEditor.beginBatch());
+        assertFalse(hexEditor.beginBatch());
+        for (int i = 0; i < 1000; i++) {
+            hexEditor.add(i % 7, new byte[]{(byte) i});
+            hexEditor.delete(i % 5, 1);
+        }
+        hexEditor.insertZeros(3, 20);
+        assertFalse(hexEditor.saveFile());
+        assertTrue(hexEditor.rollback());
+        assertArrayEquals(before, hexEditor.read(0, 100));
+        assertFalse(hexEditor.rollback());
+    }
+
+    @Test
+    void commitBatch() {
+        hexEditor.openFile("src/test/resources/test1.txt");
+        assertTrue(hexEditor.beginBatch());
+        hexEditor.add(0, new byte[]{1, 2});
+        hexEditor.delete(5, 2);
+        assertTrue(hexEditor.commit());
+        assertFalse(hexEditor.commit());
+        assertArrayEquals(new byte[]{1, 2, 49, 50, 51, 53, 54, 32, 55, 56, 57},
+                hexEditor.read(0, 100));
+    }
+
+    @Test
+    void findAllAcrossEditsAndBlocks(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("matches.bin");
+        byte[] data = new byte[3 * 1024 * 1024];
+        byte[] mask = {5, 5, 5};
+        // One match on the border of the first two read blocks
+        System.arraycopy(mask, 0, data, 1024 * 1024 - 1, mask.length);
+        Files.write(file, data);
+
+        hexEditor.openFile(file.toString());
+        hexEditor.add(10, new byte[]{5, 5, 5, 5});
+        hexEditor.add(3 * 1024 * 1024, new byte[]{5, 5, 5});
+
+        long[] expected = {10, 11, 1024 * 1024 + 3, 3 * 1024 * 1024};
+        assertArrayEquals(expected,
+                hexEditor.findAll(0, Long.MAX_VALUE, mask).toArray());
+        assertArrayEquals(new long[]{10, 11},
+                hexEditor.findAll(0, 2, mask).toArray());
+        assertEquals(1024 * 1024 + 3,
+                hexEditor.findAll(12, Long.MAX_VALUE, mask).findFirst().getAsLong());
+        assertEquals(0, hexEditor.findAll(0, Long.MAX_VALUE, (byte) 1, (byte) 2).count());
+    }
+
+    @Test
+    void findPreviousWalksMatchesBackwards(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("previous.bin");
+        byte[] data = new byte[3 * 1024 * 1024];
+        byte[] mask = {5, 5, 5};
+        System.arraycopy(mask, 0, data, 1024 * 1024 - 1, mask.length);
+        Files.write(file, data);
+
+        hexEditor.openFile(file.toString());
+        hexEditor.add(10, new byte[]{5, 5, 5, 5});
+        hexEditor.add(3 * 1024 * 1024, new byte[]{5, 5, 5});
+        BytePattern pattern = BytePattern.of(mask);
+
+        List<Long> matches = new ArrayList<>();
+        for (long pos = hexEditor.getFileSize();
+             (pos = hexEditor.findPrevious(pos, pattern)) != -1; ) {
+            matches.add(pos);
+        }
+        assertEquals(Arrays.asList(3L * 1024 * 1024, 1024L * 1024 + 3, 11L, 10L),
+                matches);
+        assertEquals(10, hexEditor.findPrevious(11, pattern));
+        assertEquals(-1, hexEditor.findPrevious(10, pattern));
+        assertEquals(1024 * 1024 + 3, hexEditor.findPrevious(3 * 1024 * 1024,
+                BytePattern.parse("05 ?? 05")));
+    }
+
+    @Test
+    void findMaskedPattern() {
+        hexEditor.openFile("src/test/resources/test1.txt");
+        byte[] data = hexEditor.read(0, 11);
+        BytePattern pattern = new BytePattern(
+                new byte[]{data[3], 0, data[5]},
+                new byte[]{(byte) 0xFF, 0, (byte) 0xFF});
+
+        assertEquals(3, hexEditor.find(0, pattern));
+        assertEquals(-1, hexEditor.find(4, pattern));
+        assertEquals(1, hexEditor.findAll(0, Long.MAX_VALUE, pattern).count());
+        assertEquals(0, hexEditor.find(0, BytePattern.parse("?? ??")));
+        assertEquals(2, hexEditor.findAll(9, Long.MAX_VALUE,
+                BytePattern.parse("?")).count());
+    }
+
+    @Test
+    void findRegexInEditedFile() {
+        hexEditor.openFile("src/test/resources/test1.txt");
+        hexEditor.insert(4, new byte[]{(byte) 0xFF, (byte) 0xD8});
+        hexEditor.add(100, new byte[]{(byte) 0xFF, (byte) 0xC0});
+
+        assertEquals(4, hexEditor.findRegex(0, "FF D8 .{0,200} FF C0"));
+        assertEquals(-1, hexEditor.findRegex(0, "FF D8 .{0,50} FF C0"));
+        assertEquals(-1, hexEditor.findRegex(5, "FF D8 .* FF C0"));
+        assertThrows(IllegalArgumentException.class,
+                () -> hexEditor.findRegex(0, "FF ("));
+    }
+
+    @Test
+    void findAllOfSeveralPatterns() {
+        hexEditor.openFile("src/test/resources/test1.txt");
+        byte[] data = hexEditor.read(0, 11);
+        List<byte[]> patterns = Arrays.asList(
+                new byte[]{data[2], data[3]}, new byte[]{data[4]},
+                new byte[]{(byte) 0xEE, (byte) 0xEE});
+
+        List<Long> found = new ArrayList<>();
+        long count = hexEditor.findAll(0, patterns, (id, offset) -> {
+            found.add(id * 100 + offset);
+            return true;
+        });
+        assertEquals(2, count);
+        assertEquals(Arrays.asList(2L, 104L), found);
+    }
+
+    @Test
+    void findReportsProgressAndCanBeCancelled(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("progress.bin");
+        byte[] data = new byte[5 * 1024 * 1024];
+        data[data.length - 1] = 1;
+        Files.write(file, data);
+        hexEditor.openFile(file.toString());
+        BytePattern pattern = BytePattern.of((byte) 0, (byte) 1);
+
+        long[] last = new long[2];
+        long res = hexEditor.find(0, pattern, new ProgressMonitor() {
+            @Override
+            public void progress(long done, long total) {
+                assertTrue(done >= last[0]);
+                last[0] = done;
+                last[1] = total;
+            }
+
+            @Override
+            public boolean isCancelled() {
+                return false;
+            }
+        });
+        assertEquals(data.length - 2, res);
+        assertEquals(data.length, last[0]);
+        assertEquals(data.length, last[1]);
+
+        int[] reads = new int[1];
+        res = hexEditor.find(0, pattern, new ProgressMonitor() {
+            @Override
+            public void progress(long done, long total) {
+                reads[0]++;
+            }
+
+            @Override
+            public boolean isCancelled() {
+                return reads[0] > 0;
+            }
+        });
+        assertEquals(-1, res);
+        assertEquals(1, reads[0]);
+    }
+
+    @Test
+    void indexedFindMatchesPlainFindAfterEdits(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("indexed.bin");
+        Random random = new Random(14);
+        byte[] data = new byte[300 * 1024];
+        random.nextBytes(data);
+        Files.write(file, data);
+        hexEditor.openFile(file.toString());
+
+        hexEditor.delete(70000, 1000);
+        hexEditor.add(150000, Arrays.copyOfRange(data, 10, 20));
+        hexEditor.insert(200000, Arrays.copyOfRange(data, 500, 510));
+        List<BytePattern> patterns = new ArrayList<>();
+        for (long pos : new long[]{5, 65530, 131070, 149995, 199998, 290000}) {
+            patterns.add(BytePattern.of(hexEditor.read(pos, 12)));
+        }
+        patterns.add(BytePattern.parse("?? " + BytePattern.of(
+                hexEditor.read(250001, 6))));
+
+        List<Long> expected = new ArrayList<>();
+        for (BytePattern pattern : patterns) {
+            expected.add(hexEditor.find(0, pattern));
+            expected.add(hexEditor.find(100000, pattern));
+        }
+
+        assertTrue(hexEditor.buildIndex(null));
+        assertTrue(hexEditor.hasIndex());
+        List<Long> actual = new ArrayList<>();
+        for (BytePattern pattern : patterns) {
+            actual.add(hexEditor.find(0, pattern));
+            actual.add(hexEditor.find(100000, pattern));
+        }
+        assertEquals(expected, actual);
+
+        assertTrue(hexEditor.saveFile());
+        assertFalse(hexEditor.hasIndex());
+    }
+
+    @Test
+    void undoAndRedoEdits() {
+        hexEditor.openFile("src/test/resources/test1.txt");
+        byte[] initial = hexEditor.read(0, 11);
+        hexEditor.delete(0, 4);
+        hexEditor.add(50, new byte[]{1, 2});
+        byte[] edited = hexEditor.read(0, 100);
+
+        assertTrue(hexEditor.undo());
+        assertEquals(7, hexEditor.getFileSize());
+        assertTrue(hexEditor.undo());
+        assertArrayEquals(initial, hexEditor.read(0, 100));
+        assertFalse(hexEditor.undo());
+
+        assertTrue(hexEditor.redo());
+        assertTrue(hexEditor.redo());
+        assertArrayEquals(edited, hexEditor.read(0, 100));
+        assertFalse(hexEditor.canRedo());
+    }
+
+    @Test
+    void undoBatchAtOnce() {
+        hexEditor.openFile("src/test/resources/test1.txt");
+        byte[] initial = hexEditor.read(0, 11);
+        hexEditor.beginBatch();
+        hexEditor.insert(2, new byte[]{0, 0, 0});
+        hexEditor.insertZeros(2, 8);
+        hexEditor.commit();
+
+        assertTrue(hexEditor.undo());
+        assertArrayEquals(initial, hexEditor.read(0, 100));
+        assertFalse(hexEditor.canUndo());
+    }
+
+    @Test
+    void journalDropsOldestEntries() {
+        hexEditor.openFile("src/test/resources/test1.txt");
+        ((HexEditorImpl) hexEditor).setJournalLimits(Long.MAX_VALUE, 4);
+        hexEditor.add(0, new byte[]{1, 2, 3});
+        hexEditor.add(0, new byte[]{4, 5, 6});
+
+        assertTrue(hexEditor.undo());
+        assertFalse(hexEditor.undo());
+    }
+
+    @Test
+    void droppedEntriesAreCompactedOut() {
+        hexEditor.openFile("src/test/resources/test1.txt");
+        HexEditorImpl impl = (HexEditorImpl) hexEditor;
+        int chunk = 2 * 1024 * 1024;
+        impl.setJournalLimits(Long.MAX_VALUE, 3 * 1024 * 1024);
+        byte[] original = hexEditor.read(0, (int) hexEditor.getFileSize());
+        byte[] first = new byte[chunk];
+        Arrays.fill(first, (byte) 1);
+        byte[] second = new byte[chunk];
+        for (int i = 0; i < chunk; i++) {
+            second[i] = (byte) i;
+        }
+
+        hexEditor.add(0, first);
+        hexEditor.delete(0, chunk);
+        // The first chunk is referenced only by the dropped entries
+        hexEditor.add(0, second);
+
+        assertEquals(chunk, impl.getAddBufferSize());
+        assertArrayEquals(second, hexEditor.read(0, chunk));
+        assertTrue(hexEditor.undo());
+        assertArrayEquals(original,
+                hexEditor.read(0, (int) hexEditor.getFileSize()));
+        assertFalse(hexEditor.undo());
+        assertTrue(hexEditor.redo());
+        assertArrayEquals(second, hexEditor.read(0, chunk));
+    }
+
+    @Test
+    void editsAreReportedAsReplacedRanges() {
+        hexEditor.openFile("src/test/resources/test1.txt");
+        List<long[]> changes = new ArrayList<>();
+        ContentListener listener = (offset, removed, inserted) ->
+                changes.add(new long[]{offset, removed, inserted});
+        hexEditor.addContentListener(listener);
+
+        hexEditor.insert(2, new byte[]{1, 2, 3});
+        // The gap past the end is reported with the added byte
+        hexEditor.add(20, (byte) 4);
+        hexEditor.delete(0, 4);
+        // The replacement past the end removes only the existing bytes
+        hexEditor.insert(15, new byte[]{5, 6, 7});
+        assertTrue(hexEditor.undo());
+        assertTrue(hexEditor.redo());
+
+        assertArrayEquals(new long[]{2, 3, 3}, changes.get(0));
+        assertArrayEquals(new long[]{11, 0, 10}, changes.get(1));
+        assertArrayEquals(new long[]{0, 4, 0}, changes.get(2));
+        assertArrayEquals(new long[]{15, 2, 3}, changes.get(3));
+        assertArrayEquals(new long[]{15, 3, 2}, changes.get(4));
+        assertArrayEquals(new long[]{15, 2, 3}, changes.get(5));
+        assertEquals(6, changes.size());
+
+        hexEditor.beginBatch();
+        hexEditor.add(0, new byte[]{8, 9});
+        hexEditor.rollback();
+        assertArrayEquals(new long[]{0, 20, 18}, changes.get(7));
+
+        hexEditor.removeContentListener(listener);
+        hexEditor.delete(0, 1);
+        assertEquals(8, changes.size());
+    }
+
+    @Test
+    void snapshotIsNotReadAfterClose() throws InterruptedException {
+        hexEditor.openFile("src/test/resources/test1.txt");
+        hexEditor.add(5, new byte[]{1, 2, 3});
+        ContentSnapshot snapshot = hexEditor.snapshot();
+        assertArrayEquals(hexEditor.read(0, 14), snapshot.read(0, 14));
+
+        // The reads running while the file is closed end without errors
+        List<Throwable> errors = new ArrayList<>();
+        Thread reader = new Thread(() -> {
+            try {
+                while (snapshot.read(0, 14) != null) {
+                    Thread.yield();
+                }
+            } catch (Throwable e) {
+                errors.add(e);
+            }
+        });
+        reader.start();
+        hexEditor.closeFile();
+        reader.join(10000);
+
+        assertFalse(reader.isAlive());
+        assertTrue(errors.isEmpty());
+        assertNull(snapshot.read(0, 14));
+    }
+
+    @Test
+    void snapshotIsTakenWithoutWaitingForSave(@TempDir Path dir)
+            throws IOException {
+        Path file = dir.resolve("saved.bin");
+        byte[] data = new byte[1024 * 1024];
+        new Random(21).nextBytes(data);
+        Files.write(file, data);
+        hexEditor.openFile(file.toString());
+        hexEditor.insert(1000, new byte[]{1, 2, 3, 4});
+        ContentSnapshot before = hexEditor.snapshot();
+        assertSame(before, hexEditor.snapshot());
+
+        // The progress is reported while the save holds the file
+        List<Object> seen = new ArrayList<>();
+        ProgressMonitor monitor = new ProgressMonitor() {
+            @Override
+            public void progress(long done, long total) {
+                Thread other = new Thread(() -> {
+                    synchronized (seen) {
+                        seen.add(hexEditor.snapshot());
+                        seen.add(hexEditor.getFileSize());
+                    }
+                });
+                other.start();
+                try {
+                    other.join(5000);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+
+            @Override
+            public boolean isCancelled() {
+                return false;
+            }
+        };
+        assertTrue(hexEditor.saveFile(monitor));
+
+        synchronized (seen) {
+            assertFalse(seen.isEmpty());
+            assertSame(before, seen.get(0));
+            assertEquals((long) data.length, seen.get(1));
+        }
+        ContentSnapshot after = hexEditor.snapshot();
+        assertNotSame(before, after);
+        assertNull(before.read(1000, 4));
+        assertArrayEquals(new byte[]{1, 2, 3, 4}, after.read(1000, 4));
+    }
+
+    @Test
+    void failedSaveKeepsJournal(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("removed.bin");
+        Files.write(file, new byte[]{1, 2, 3, 4});
+        hexEditor.openFile(file.toString());
+        hexEditor.insert(1, new byte[]{9});
+        // The source file can not be opened for writing any more
+        Files.delete(file);
+
+        assertFalse(hexEditor.saveFile());
+        assertTrue(hexEditor.undo());
+        assertArrayEquals(new byte[]{1, 2, 3, 4}, hexEditor.read(0, 4));
+    }
 }
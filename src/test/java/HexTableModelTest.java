@@ -0,0 +1,365 @@
+import editor.ByteSequence;
+import editor.ContentSnapshot;
+import editor.HexEditor;
+import editor.impl.HexEditorImpl;
+import gui.tables.HexTableModel;
+import gui.tables.PageCache;
+import gui.tables.RowScrollModel;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for HexTableModel class.
+ */
+public class HexTableModelTest {
+    HexEditor hexEditor = new HexEditorImpl();
+
+    @AfterEach
+    void close() {
+        hexEditor.closeFile();
+    }
+
+    @Test
+    void showBytesBeyondFourGigabytes() {
+        hexEditor.openFile("src/test/resources/test1.txt");
+        // The gap is filled with zeros which take no disk space
+        long last = 100L * 1024 * 1024 * 1024;
+        hexEditor.add(last, (byte) 0x7E);
+        long size = hexEditor.getFileSize();
+
+        HexTableModel model = createModel();
+        assertEquals((size + 15) / 16, model.getFileRowCount());
+        assertEquals(HexTableModel.MAX_ROWS, model.getRowCount());
+        assertEquals(10, model.getOffsetDigits());
+
+        int row = model.showOffset(last);
+        int index = (int) (last % 16);
+        assertTrue(model.getFirstRow() > 0);
+        assertEquals(last, model.getOffset(row, index));
+        assertEquals(last - index, model.getOffset(row, 0));
+        assertEquals(0x7E, model.getByte(model.getOffset(row, index)));
+        assertEquals(0, model.getByte(model.getOffset(row - 1, index)));
+
+        // The window keeps the same bytes when the row gets longer
+        model.setBytesPerRow(32);
+        row = model.showOffset(last);
+        assertEquals(last, model.getOffset(row, (int) (last % 32)));
+
+        assertEquals(0, model.showOffset(0));
+        assertEquals(0, model.getFirstRow());
+        assertEquals(hexEditor.read(0, 1)[0] & 0xFF,
+                model.getByte(model.getOffset(0, 0)));
+    }
+
+    @Test
+    void scrollBarReachesEveryRowOfTerabyteFile() {
+        hexEditor.openFile("src/test/resources/test1.txt");
+        hexEditor.add(1L << 40, (byte) 0x7E);
+
+        HexTableModel model = createModel();
+        model.setWindowRows(20);
+        assertEquals(20, model.getRowCount());
+
+        long rows = model.getFileRowCount();
+        RowScrollModel scroll = new RowScrollModel(rows, 20);
+        assertFalse(scroll.isExact());
+        assertEquals(RowScrollModel.RESOLUTION, scroll.getMaximum());
+        int lastValue = scroll.getMaximum() - scroll.getExtent();
+
+        // Both ends of the scroll bar are the ends of the file
+        assertEquals(0, scroll.toRow(0));
+        assertEquals(rows - 20, scroll.toRow(lastValue));
+        model.setFirstRow(scroll.toRow(lastValue));
+        assertEquals(0x7E, model.getByte(model.getOffset(19, 0)));
+
+        // The values go through the rows in order and map back
+        long previous = -1;
+        for (int value = 0; value <= lastValue; value += lastValue / 1000) {
+            long row = scroll.toRow(value);
+            assertTrue(row > previous);
+            assertEquals(value, scroll.toValue(row));
+            previous = row;
+        }
+
+        // A small file is scrolled by exact rows
+        RowScrollModel small = new RowScrollModel(1000, 20);
+        assertTrue(small.isExact());
+        assertEquals(980, small.getMaximum() - small.getExtent());
+        assertEquals(123, small.toRow(small.toValue(123)));
+    }
+
+    @Test
+    void pageCacheReadsAheadInScrollDirection() {
+        hexEditor.openFile("src/test/resources/test1.txt");
+        // The file is exactly 256 pages long
+        hexEditor.add(1024 * 1024 - 1, (byte) 0x7E);
+
+        HexTableModel model = createModel();
+        model.setWindowRows(20);
+        PageCache cache = model.getPageCache();
+        int rowsPerPage = cache.getPageSize() / 16;
+
+        // Scrolling down misses only every third page
+        for (long row = 0; row < 30 * rowsPerPage; row += 20) {
+            model.setFirstRow(row);
+            paint(model);
+        }
+        assertEquals(1, cache.getDirection());
+        assertEquals(10, cache.getMissCount());
+        assertEquals(20, cache.getReadAheadCount());
+        assertTrue(cache.getHitRatio() > 0.99);
+
+        // Scrolling up reads the pages above
+        model.setFirstRow(model.getFileRowCount());
+        cache.resetStatistics();
+        for (int i = 0; i < 2 * rowsPerPage / 20; i++) {
+            model.setFirstRow(model.getFirstRow() - 20);
+            paint(model);
+        }
+        assertEquals(-1, cache.getDirection());
+        assertEquals(1, cache.getMissCount());
+        assertEquals(2, cache.getReadAheadCount());
+
+        // The budget limits the page count
+        cache.setBudget(4 * cache.getPageSize());
+        assertEquals(4, cache.size());
+        model.setFirstRow(0);
+        paint(model);
+        assertEquals(4, cache.size());
+
+        // The pages are read again after an edit
+        hexEditor.add(0, (byte) 0x11);
+        model.updateModel();
+        long misses = cache.getMissCount();
+        assertEquals(0x11, model.getByte(0));
+        assertEquals(misses + 1, cache.getMissCount());
+    }
+
+    @Test
+    void pagesRequestedByViewAreReadFirst() throws InterruptedException {
+        hexEditor.openFile("src/test/resources/test1.txt");
+        hexEditor.add(1024 * 1024 - 1, (byte) 0x7E);
+
+        // The loader is busy until the requests are made
+        ExecutorService loader = PageCache.newLoader();
+        CountDownLatch busy = new CountDownLatch(1);
+        loader.execute(() -> {
+            try {
+                busy.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        List<Runnable> deliveries = new ArrayList<>();
+        PageCache cache = new PageCache(hexEditor, 4096,
+                PageCache.DEFAULT_BUDGET, loader, r -> {
+            synchronized (deliveries) {
+                deliveries.add(r);
+            }
+        });
+        HexTableModel model = new HexTableModel(16);
+        model.setDataSource(hexEditor);
+        model.setPageCache(cache);
+        model.setWindowRows(20);
+
+        // The bytes of the missing pages are being read
+        assertEquals(PageCache.LOADING, model.getByte(model.getOffset(0, 0)));
+        model.setFirstRow(10 * 256);
+        assertEquals(PageCache.LOADING, model.getByte(model.getOffset(0, 0)));
+        assertEquals(6, cache.getPendingCount());
+        assertEquals(2, cache.getMissCount());
+
+        busy.countDown();
+        loader.shutdown();
+        assertTrue(loader.awaitTermination(10, TimeUnit.SECONDS));
+
+        // Both shown pages arrive before the pages read ahead
+        List<Long> order = new ArrayList<>();
+        cache.setPageListener(order::add);
+        deliveries.forEach(Runnable::run);
+        assertEquals(Arrays.asList(0L, 10L, 1L, 2L, 11L, 12L), order);
+        assertEquals(0, cache.getPendingCount());
+        assertEquals(0, model.getByte(model.getOffset(0, 0)));
+
+        // Only the rows of the arrived page are repainted
+        List<Runnable> reads = new ArrayList<>();
+        model.setPageCache(new PageCache(hexEditor, 4096,
+                PageCache.DEFAULT_BUDGET, reads::add, Runnable::run));
+        model.setFirstRow(250);
+        List<int[]> updated = new ArrayList<>();
+        model.addModelListener((first, last) ->
+                updated.add(new int[]{first, last}));
+        assertEquals(PageCache.LOADING, model.getByte(model.getOffset(0, 0)));
+        assertEquals(PageCache.LOADING,
+                model.getByte(model.getOffset(19, 0)));
+        reads.forEach(Runnable::run);
+        assertArrayEquals(new int[]{0, 5}, updated.get(0));
+        assertArrayEquals(new int[]{6, 19}, updated.get(1));
+        assertEquals(0, model.getByte(model.getOffset(19, 0)));
+    }
+
+    @Test
+    void editsMoveCachedPages() {
+        hexEditor.openFile("src/test/resources/test1.txt");
+        hexEditor.add(1024 * 1024 - 1, (byte) 0x7E);
+
+        HexTableModel model = createModel();
+        model.setWindowRows(20);
+        PageCache cache = model.getPageCache();
+        int rowsPerPage = cache.getPageSize() / 16;
+        model.setFirstRow(100 * rowsPerPage);
+        paint(model);
+        List<int[]> updated = new ArrayList<>();
+        model.addModelListener((first, last) ->
+                updated.add(new int[]{first, last}));
+
+        // A replaced byte repaints its row and reads only its page
+        long offset = model.getOffset(5, 8);
+        hexEditor.insert(offset, (byte) 0x55);
+        assertArrayEquals(new int[]{5, 5}, updated.get(0));
+        cache.resetStatistics();
+        paint(model);
+        assertEquals(0x55, model.getByte(model.getOffset(5, 8)));
+        assertEquals(1, cache.getMissCount());
+
+        // The bytes shifted by a whole page are found in the cache
+        hexEditor.add(0, new byte[cache.getPageSize()]);
+        assertArrayEquals(new int[]{0, 19}, updated.get(1));
+        model.setFirstRow(model.getFirstRow() + rowsPerPage);
+        cache.resetStatistics();
+        paint(model);
+        assertEquals(0x55, model.getByte(model.getOffset(5, 8)));
+        assertEquals(0, cache.getMissCount());
+
+        // The pages shifted by a byte are made of the cached ones
+        hexEditor.add(0, (byte) 0x11);
+        model.setFirstRow(model.getFirstRow() + rowsPerPage);
+        cache.resetStatistics();
+        paint(model);
+        assertEquals(0, cache.getMissCount());
+        byte[] shown = hexEditor.read(model.getOffset(0, 0), 20 * 16);
+        for (int i = 0; i < shown.length; i++) {
+            assertEquals(shown[i] & 0xFF,
+                    model.getByte(model.getOffset(i / 16, i % 16)));
+        }
+        assertEquals(0x11, cache.get(0));
+    }
+
+    @Test
+    void byteSequenceIsReadFromCachedPage() {
+        hexEditor.openFile("src/test/resources/test1.txt");
+        hexEditor.add(8190, (byte) 0x7E);
+
+        HexTableModel model = createModel();
+        PageCache cache = model.getPageCache();
+        ByteSequence inPage = model.getByteSequence(100, 300);
+        assertEquals(300, inPage.length());
+        assertEquals(1, cache.getMissCount());
+        ByteSequence acrossPages = model.getByteSequence(4090);
+        assertEquals(1, cache.getMissCount());
+
+        byte[] expected = hexEditor.read(100, 300);
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i], inPage.getByte(i));
+        }
+        assertEquals(8, acrossPages.length());
+        assertEquals(hexEditor.read(4090, 1)[0], acrossPages.getByte(0));
+
+        // The bytes being read are not waited for
+        List<Runnable> reads = new ArrayList<>();
+        model.setPageCache(new PageCache(hexEditor, 4096,
+                PageCache.DEFAULT_BUDGET, reads::add, Runnable::run));
+        assertNull(model.getByteSequence(4090));
+        reads.forEach(Runnable::run);
+        assertEquals(acrossPages, model.getByteSequence(4090));
+
+        // The sequence is shorter at the end of the file
+        assertEquals(0x7E,
+                model.getByteSequence(8190).representAsUnsigned16Bit(0));
+        assertEquals(0, model.getByteSequence(8191).length());
+    }
+
+    /**
+     * Returns the model of the opened file which reads the pages
+     * synchronously.
+     */
+    private HexTableModel createModel() {
+        HexTableModel model = new HexTableModel(16);
+        model.setDataSource(hexEditor);
+        model.setPageCache(new PageCache(hexEditor,
+                PageCache.DEFAULT_PAGE_SIZE, PageCache.DEFAULT_BUDGET,
+                Runnable::run, Runnable::run));
+        return model;
+    }
+
+    /**
+     * Reads every byte of the window as the view painting does.
+     */
+    private static void paint(HexTableModel model) {
+        for (int row = 0; row < model.getRowCount(); row++) {
+            for (int i = 0; i < model.getBytesPerRow(); i++) {
+                model.getByte(model.getOffset(row, i));
+            }
+        }
+    }
+
+    @Test
+    void failedPageIsNotReadAgain() {
+        AtomicInteger reads = new AtomicInteger();
+        boolean[] stale = {false};
+        ContentSnapshot broken = new ContentSnapshot() {
+            @Override
+            public long length() {
+                return 100;
+            }
+
+            @Override
+            public byte[] read(long offset, int count) {
+                reads.incrementAndGet();
+                return null;
+            }
+
+            @Override
+            public boolean isStale() {
+                return stale[0];
+            }
+        };
+        // The cache only takes the snapshots of the editor
+        HexEditor editor = (HexEditor) Proxy.newProxyInstance(
+                HexEditor.class.getClassLoader(),
+                new Class<?>[]{HexEditor.class},
+                (proxy, method, args) -> broken);
+        PageCache cache = new PageCache(editor, 16, 1024,
+                Runnable::run, Runnable::run);
+        List<Long> arrived = new ArrayList<>();
+        cache.setPageListener(arrived::add);
+
+        assertEquals(PageCache.FAILED, cache.get(0));
+        assertEquals(PageCache.FAILED, cache.get(20));
+        assertEquals(3, reads.get());
+        assertEquals(Arrays.asList(0L, 1L, 2L), arrived);
+        assertNull(cache.page(0));
+        assertEquals(3, reads.get());
+
+        // The pages are read again after the invalidation, the stale
+        // snapshot drops all the pages
+        cache.invalidate();
+        cache.setReadAhead(0);
+        stale[0] = true;
+        arrived.clear();
+        assertEquals(PageCache.LOADING, cache.get(0));
+        assertEquals(4, reads.get());
+        assertEquals(Arrays.asList(PageCache.ALL_PAGES), arrived);
+    }
+}
@@ -0,0 +1,153 @@
+import editor.HexEditor;
+import editor.impl.HexEditorImpl;
+import gui.tables.HexTableModel;
+import gui.tables.HexView;
+import gui.tables.PageCache;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.Point;
+import java.awt.image.BufferedImage;
+import java.lang.management.ManagementFactory;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Tests for HexView class.
+ */
+public class HexViewTest {
+    HexEditor hexEditor = new HexEditorImpl();
+
+    PaintedView view;
+
+    /**
+     * The view whose own painting can be called without the copy of
+     * the graphics made by Swing for every frame.
+     */
+    static class PaintedView extends HexView {
+        PaintedView(HexTableModel model) {
+            super(model);
+        }
+
+        void paintRows(Graphics g) {
+            paintComponent(g);
+        }
+    }
+
+    @BeforeEach
+    void open() {
+        hexEditor.openFile("src/test/resources/test1.txt");
+        // The file is 256 pages of zeros ending with 0x7E
+        hexEditor.add(1024 * 1024 - 1, (byte) 0x7E);
+
+        HexTableModel model = new HexTableModel(16);
+        model.setDataSource(hexEditor);
+        model.setPageCache(new PageCache(hexEditor,
+                PageCache.DEFAULT_PAGE_SIZE, PageCache.DEFAULT_BUDGET,
+                Runnable::run, Runnable::run));
+        view = new PaintedView(model);
+    }
+
+    @AfterEach
+    void close() {
+        hexEditor.closeFile();
+    }
+
+    @Test
+    void sizeSetsRowLengthAndWindow() {
+        view.setBounds(0, 0, 100, 11 * view.getRowHeight());
+        HexTableModel model = view.getModel();
+        assertEquals(HexView.MIN_BYTES_PER_ROW, model.getBytesPerRow());
+        assertEquals(10, model.getWindowRows());
+
+        view.setBounds(0, 0, 4000, 21 * view.getRowHeight());
+        assertTrue(model.getBytesPerRow() > HexView.MIN_BYTES_PER_ROW);
+        assertEquals(20, model.getRowCount());
+    }
+
+    @Test
+    void pointsAreMappedToBytes() {
+        view.setBounds(0, 0, 100, 11 * view.getRowHeight());
+        HexTableModel model = view.getModel();
+        model.setFirstRow(1000);
+        int rowHeight = view.getRowHeight();
+
+        // The header and the offset column have no bytes
+        assertEquals(-1, view.offsetAt(new Point(300, rowHeight / 2)));
+        assertEquals(-1, view.offsetAt(new Point(1, 3 * rowHeight)));
+
+        // The bytes of a row go from left to right in both columns
+        int y = 3 * rowHeight + rowHeight / 2;
+        long rowOffset = 1002 * 16;
+        long previous = -1;
+        for (int x = 0; x < 2000; x++) {
+            long offset = view.offsetAt(new Point(x, y));
+            if (offset >= 0) {
+                assertTrue(offset >= rowOffset && offset < rowOffset + 16);
+                if (offset < previous) {
+                    // The glyph column starts again
+                    assertEquals(rowOffset, offset);
+                }
+                previous = offset;
+            }
+        }
+        assertEquals(rowOffset + 15, previous);
+    }
+
+    @Test
+    void showOffsetSelectsByteAnywhere() {
+        view.setBounds(0, 0, 100, 11 * view.getRowHeight());
+        view.showOffset(1024 * 1024 - 1);
+        assertEquals(1024 * 1024 - 1, view.getStartOffset());
+        assertEquals(1024 * 1024 - 1, view.getEndOffset());
+        assertEquals(0x7E, view.getModel().getByte(view.getEndOffset()));
+        assertEquals(0x7E, view.getByteSequence()
+                .representAsUnsigned8Bit(0));
+    }
+
+    @Test
+    void steadyScrollingPaintsWithoutAllocation() {
+        java.lang.management.ThreadMXBean bean =
+                ManagementFactory.getThreadMXBean();
+        assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) bean;
+        assumeTrue(threads.isThreadAllocatedMemorySupported()
+                && threads.isThreadAllocatedMemoryEnabled());
+        long thread = Thread.currentThread().getId();
+
+        int width = 1600;
+        int height = 41 * view.getRowHeight();
+        view.setBounds(0, 0, width, height);
+        view.showOffset(100);
+        HexTableModel model = view.getModel();
+        BufferedImage image = new BufferedImage(width, height,
+                BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        g.setClip(0, 0, width, height);
+
+        // The first pass reads the pages
+        for (int pass = 0; pass < 3; pass++) {
+            long allocated = 0;
+            long bytes = 0;
+            for (long row = 0; row < 2000; row += 7) {
+                model.setFirstRow(row);
+                long before = threads.getThreadAllocatedBytes(thread);
+                view.paintRows(g);
+                allocated += threads.getThreadAllocatedBytes(thread) - before;
+                bytes += (long) model.getRowCount() * model.getBytesPerRow();
+            }
+            if (pass == 2) {
+                // The counter itself may allocate a little
+                assertTrue(allocated < bytes / 100,
+                        allocated + " bytes allocated for " + bytes
+                                + " painted bytes");
+            }
+        }
+        g.dispose();
+    }
+}
@@ -0,0 +1,141 @@
+import editor.impl.MappedWindowCache;
+import editor.impl.SessionStatistics;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for MappedWindowCache class.
+ */
+public class MappedWindowCacheTest {
+
+    @TempDir
+    Path dir;
+
+    /**
+     * Returns the bytes 0, 1, 2... of the given count.
+     */
+    private static byte[] bytes(int count) {
+        byte[] res = new byte[count];
+        for (int i = 0; i < count; i++) {
+            res[i] = (byte) i;
+        }
+        return res;
+    }
+
+    @Test
+    void readAcrossWindowBoundaries() throws IOException {
+        Path path = Files.write(dir.resolve("data"), bytes(10));
+        SessionStatistics statistics = new SessionStatistics();
+        try (FileChannel channel = FileChannel.open(path, READ)) {
+            MappedWindowCache cache = new MappedWindowCache(channel, 10,
+                    statistics, 4, 4, false);
+
+            byte[] dst = new byte[9];
+            cache.read(1, dst, 0, 9);
+            assertArrayEquals(Arrays.copyOfRange(bytes(10), 1, 10), dst);
+            assertEquals(3, statistics.getWindowMaps());
+
+            // The last window is shorter than the others
+            cache.read(8, dst, 0, 2);
+            assertArrayEquals(new byte[]{8, 9}, Arrays.copyOf(dst, 2));
+            assertEquals(3, statistics.getWindowMaps());
+            assertEquals(1, statistics.getWindowHits());
+
+            assertThrows(IOException.class,
+                    () -> cache.read(9, new byte[2], 0, 2));
+        }
+    }
+
+    @Test
+    void leastRecentlyUsedWindowIsEvicted() throws IOException {
+        Path path = Files.write(dir.resolve("data"), bytes(12));
+        SessionStatistics statistics = new SessionStatistics();
+        try (FileChannel channel = FileChannel.open(path, READ)) {
+            MappedWindowCache cache = new MappedWindowCache(channel, 12,
+                    statistics, 4, 2, false);
+            byte[] dst = new byte[1];
+
+            cache.read(0, dst, 0, 1);
+            cache.read(4, dst, 0, 1);
+            cache.read(0, dst, 0, 1);
+            // The window 1 is the least recently used one
+            cache.read(8, dst, 0, 1);
+            assertEquals(3, statistics.getWindowMaps());
+
+            cache.read(0, dst, 0, 1);
+            assertEquals(3, statistics.getWindowMaps());
+            cache.read(4, dst, 0, 1);
+            assertEquals(4, statistics.getWindowMaps());
+            assertEquals(4, dst[0]);
+        }
+    }
+
+    @Test
+    void appendedBytesAreReadThroughTailWindow() throws IOException {
+        Path path = Files.createFile(dir.resolve("data"));
+        SessionStatistics statistics = new SessionStatistics();
+        try (FileChannel channel = FileChannel.open(path, READ, WRITE)) {
+            MappedWindowCache cache = new MappedWindowCache(channel, 0,
+                    statistics, 8, 2, true);
+            byte[] data = bytes(12);
+
+            for (int i = 0; i < data.length; i += 3) {
+                channel.write(ByteBuffer.wrap(data, i, 3), i);
+                cache.setLength(i + 3);
+                byte[] dst = new byte[i + 3];
+                cache.read(0, dst, 0, dst.length);
+                assertArrayEquals(Arrays.copyOf(data, i + 3), dst);
+            }
+            // Only the second window is mapped when the file reaches it
+            assertEquals(2, statistics.getWindowMaps());
+
+            cache.setLength(5);
+            byte[] dst = new byte[5];
+            cache.read(0, dst, 0, 5);
+            assertArrayEquals(Arrays.copyOf(data, 5), dst);
+            assertEquals(2, statistics.getWindowMaps());
+        }
+    }
+
+    @Test
+    void windowsAreReadInParallel() throws Exception {
+        byte[] data = bytes(64 * 1024);
+        Path path = Files.write(dir.resolve("data"), data);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try (FileChannel channel = FileChannel.open(path, READ)) {
+            MappedWindowCache cache = new MappedWindowCache(channel,
+                    data.length, new SessionStatistics(), 1024, 8, false);
+            List<Future<byte[]>> reads = new ArrayList<>();
+            for (int i = 0; i < 64; i++) {
+                int position = i * 1000;
+                reads.add(executor.submit(() -> {
+                    byte[] dst = new byte[1500];
+                    cache.read(position, dst, 0, dst.length);
+                    return dst;
+                }));
+            }
+            for (int i = 0; i < reads.size(); i++) {
+                assertArrayEquals(Arrays.copyOfRange(data, i * 1000,
+                        i * 1000 + 1500), reads.get(i).get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,74 @@
+import editor.HexEditor;
+import editor.impl.HexEditorImpl;
+import editor.impl.search.HorspoolMatcher;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+/**
+ * Measures the search throughput for short and long patterns. It is
+ * not a part of the test suite, run it after <code>mvn test-compile</code>
+ * with <code>java -cp target/classes:target/test-classes
+ * SearchBenchmark</code> or from the IDE.
+ */
+public class SearchBenchmark {
+
+    private static final int DATA_SIZE = 256 * 1024 * 1024;
+
+    private static final int ROUNDS = 5;
+
+    public static void main(String[] args) throws IOException {
+        byte[] data = new byte[DATA_SIZE];
+        new Random(0).nextBytes(data);
+
+        // The patterns are absent, so every round scans all the data
+        byte[] shortPattern = {(byte) 0xDE, (byte) 0xAD, (byte) 0xBE, (byte) 0xEF};
+        byte[] longPattern = new byte[64];
+        new Random(1).nextBytes(longPattern);
+
+        benchmarkArray("array, 4-byte pattern", data, shortPattern);
+        benchmarkArray("array, 64-byte pattern", data, longPattern);
+
+        Path file = Files.createTempFile("bench", ".bin");
+        try {
+            Files.write(file, data);
+            benchmarkFile("file, 4-byte pattern", file, shortPattern);
+            benchmarkFile("file, 64-byte pattern", file, longPattern);
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    private static void benchmarkArray(String name, byte[] data, byte[] pattern) {
+        HorspoolMatcher matcher = new HorspoolMatcher(pattern);
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < ROUNDS; i++) {
+            long start = System.nanoTime();
+            if (matcher.indexOf(data, 0, data.length) != -1)
+                throw new AssertionError("Unexpected match");
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        report(name, data.length, best);
+    }
+
+    private static void benchmarkFile(String name, Path file, byte[] pattern) {
+        HexEditor hexEditor = new HexEditorImpl();
+        hexEditor.openFile(file.toString());
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < ROUNDS; i++) {
+            long start = System.nanoTime();
+            if (hexEditor.find(0, pattern) != -1)
+                throw new AssertionError("Unexpected match");
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        report(name, hexEditor.getFileSize(), best);
+        hexEditor.closeFile();
+    }
+
+    private static void report(String name, long bytes, long nanos) {
+        System.out.printf("%-24s %8.2f GB/s%n", name,
+                bytes / (double) nanos);
+    }
+}
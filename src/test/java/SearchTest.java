@@ -0,0 +1,479 @@
+import editor.BytePattern;
+import editor.impl.search.AhoCorasick;
+import editor.impl.search.ByteRegex;
+import editor.impl.search.ByteSource;
+import editor.impl.search.BlockSearch;
+import editor.impl.search.HorspoolMatcher;
+import editor.impl.search.MatchIterator;
+import editor.impl.search.NGramIndex;
+import editor.impl.search.ParallelSearch;
+import editor.impl.search.RegexSearch;
+import editor.impl.search.ShiftAndMatcher;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SearchTest {
+
+    /**
+     * Finds the pattern by comparing it at every position.
+     */
+    static int naiveIndexOf(byte[] text, byte[] pattern, int from) {
+        outer:
+        for (int i = from; i <= text.length - pattern.length; i++) {
+            for (int j = 0; j < pattern.length; j++) {
+                if (text[i + j] != pattern[j])
+                    continue outer;
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the source reading the bytes of the array.
+     */
+    static ByteSource arraySource(byte[] data) {
+        return new ByteSource() {
+            @Override
+            public long length() {
+                return data.length;
+            }
+
+            @Override
+            public int read(long offset, byte[] dst, int dstOffset, int count) {
+                int n = (int) Math.max(0, Math.min(count, data.length - offset));
+                System.arraycopy(data, (int) offset, dst, dstOffset, n);
+                return n;
+            }
+        };
+    }
+
+    @Test
+    void horspoolMatchesNaiveSearch() {
+        Random random = new Random(1);
+        byte[] text = new byte[100_000];
+        for (int i = 0; i < text.length; i++) {
+            text[i] = (byte) random.nextInt(4);
+        }
+
+        for (int m = 1; m < 20; m++) {
+            byte[] pattern = new byte[m];
+            for (int i = 0; i < m; i++) {
+                pattern[i] = (byte) random.nextInt(4);
+            }
+            HorspoolMatcher matcher = new HorspoolMatcher(pattern);
+            int from = random.nextInt(1000);
+            assertEquals(naiveIndexOf(text, pattern, from),
+                    matcher.indexOf(text, from, text.length));
+        }
+    }
+
+    @Test
+    void horspoolRespectsRangeEnd() {
+        byte[] text = {1, 2, 3, 4, 5};
+        HorspoolMatcher matcher = new HorspoolMatcher(new byte[]{3, 4});
+        assertEquals(2, matcher.indexOf(text, 0, 4));
+        assertEquals(-1, matcher.indexOf(text, 0, 3));
+        assertEquals(-1, matcher.indexOf(text, 3, 5));
+    }
+
+    @Test
+    void horspoolFindsEmptyPatternAtStart() {
+        assertEquals(3, new HorspoolMatcher(new byte[0]).indexOf(new byte[5], 3, 5));
+    }
+
+    @Test
+    void parallelSearchMatchesSequentialSearch() throws IOException {
+        Random random = new Random(2);
+        byte[] text = new byte[200_000];
+        for (int i = 0; i < text.length; i++) {
+            text[i] = (byte) random.nextInt(4);
+        }
+        ByteSource source = arraySource(text);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            ParallelSearch search = new ParallelSearch(pool, 1000);
+            for (int m = 1; m < 12; m++) {
+                byte[] pattern = new byte[m];
+                for (int i = 0; i < m; i++) {
+                    pattern[i] = (byte) random.nextInt(4);
+                }
+                HorspoolMatcher matcher = new HorspoolMatcher(pattern);
+                int from = random.nextInt(1000);
+                assertEquals(naiveIndexOf(text, pattern, from),
+                        search.find(source, from, matcher));
+                assertEquals(naiveIndexOf(text, pattern, from),
+                        BlockSearch.find(source, from, text.length, matcher,
+                                () -> Long.MAX_VALUE));
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void parallelSearchFindsMatchOnSegmentBorder() throws IOException {
+        byte[] text = new byte[100_000];
+        byte[] pattern = {7, 8, 9, 10};
+        // The segments are split in halves, so 50000 is a border
+        System.arraycopy(pattern, 0, text, 49_998, pattern.length);
+        System.arraycopy(pattern, 0, text, 90_000, pattern.length);
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            ParallelSearch search = new ParallelSearch(pool, 1000);
+            HorspoolMatcher matcher = new HorspoolMatcher(pattern);
+            assertEquals(49_998, search.find(arraySource(text), 0, matcher));
+            assertEquals(90_000,
+                    search.find(arraySource(text), 49_999, matcher));
+            assertEquals(-1, search.find(arraySource(text), 90_001, matcher));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void matchIteratorReturnsAllMatches() {
+        Random random = new Random(3);
+        byte[] text = new byte[3_000_000];
+        for (int i = 0; i < text.length; i++) {
+            text[i] = (byte) random.nextInt(2);
+        }
+        byte[] pattern = {1, 0, 1, 1, 0, 1, 0, 0, 1, 1, 1, 0, 1};
+
+        List<Long> expected = new ArrayList<>();
+        for (int i = naiveIndexOf(text, pattern, 0); i != -1;
+             i = naiveIndexOf(text, pattern, i + 1)) {
+            expected.add((long) i);
+        }
+
+        List<Long> actual = new ArrayList<>();
+        new MatchIterator(arraySource(text), 0,
+                new HorspoolMatcher(pattern), Long.MAX_VALUE)
+                .forEachRemaining((long pos) -> actual.add(pos));
+        assertEquals(expected, actual);
+
+        MatchIterator limited = new MatchIterator(arraySource(text), 0,
+                new HorspoolMatcher(pattern), 3);
+        for (int i = 0; i < 3; i++) {
+            assertEquals((long) expected.get(i), limited.nextLong());
+        }
+        assertFalse(limited.hasNext());
+    }
+
+    /**
+     * Finds the masked pattern by comparing it at every position.
+     */
+    static int naiveIndexOf(byte[] text, BytePattern pattern, int from) {
+        outer:
+        for (int i = from; i <= text.length - pattern.length(); i++) {
+            for (int j = 0; j < pattern.length(); j++) {
+                if (!pattern.matches(j, text[i + j]))
+                    continue outer;
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    @Test
+    void parsePatternWithWildcardsAndMasks() {
+        BytePattern pattern = BytePattern.parse("4D 5a ?? 5? 0x1F & 0xF0 ABCD");
+        assertEquals(7, pattern.length());
+        assertFalse(pattern.isExact());
+        assertTrue(pattern.matches(0, (byte) 0x4D));
+        assertFalse(pattern.matches(0, (byte) 0x4E));
+        assertTrue(pattern.matches(2, (byte) 0x99));
+        assertTrue(pattern.matches(3, (byte) 0x5E));
+        assertFalse(pattern.matches(3, (byte) 0x6E));
+        assertTrue(pattern.matches(4, (byte) 0x1A));
+        assertFalse(pattern.matches(4, (byte) 0x2F));
+        assertTrue(pattern.matches(6, (byte) 0xCD));
+        assertEquals("4D 5A ?? 5? 1? AB CD", pattern.toString());
+        assertEquals(pattern, BytePattern.parse(pattern.toString()));
+        assertEquals(BytePattern.of((byte) 1, (byte) -1),
+                BytePattern.parse("01 FF"));
+        assertTrue(BytePattern.parse("01 FF").isExact());
+        assertEquals("05&05", BytePattern.parse("07&05").toString());
+
+        assertThrows(IllegalArgumentException.class,
+                () -> BytePattern.parse("4D 5"));
+        assertThrows(IllegalArgumentException.class,
+                () -> BytePattern.parse("4G"));
+        assertThrows(IllegalArgumentException.class,
+                () -> BytePattern.parse("100&FF"));
+    }
+
+    @Test
+    void shiftAndMatchesNaiveSearch() {
+        Random random = new Random(4);
+        byte[] text = new byte[100_000];
+        for (int i = 0; i < text.length; i++) {
+            text[i] = (byte) random.nextInt(8);
+        }
+
+        // The long patterns check the comparison after the automaton
+        for (int m : new int[]{1, 2, 5, 13, 63, 64, 65, 100}) {
+            byte[] values = new byte[m];
+            byte[] masks = new byte[m];
+            int start = random.nextInt(text.length - m);
+            for (int i = 0; i < m; i++) {
+                values[i] = text[start + i];
+                masks[i] = (byte) (random.nextInt(3) == 0 ? 0
+                        : random.nextBoolean() ? 0xFF : 0x06);
+            }
+            BytePattern pattern = new BytePattern(values, masks);
+            ShiftAndMatcher matcher = new ShiftAndMatcher(pattern);
+            for (int k = 0; k < 10; k++) {
+                int from = random.nextInt(text.length);
+                assertEquals(naiveIndexOf(text, pattern, from),
+                        matcher.indexOf(text, from, text.length));
+            }
+            assertEquals(start, matcher.indexOf(text, start, start + m));
+            assertEquals(-1, matcher.indexOf(text, start, start + m - 1));
+        }
+    }
+
+    /**
+     * Finds the match that ends first and is the longest one among the
+     * matches with that end by trying all the ranges.
+     */
+    static long naiveRegexFind(byte[] text, Pattern regex, int from) {
+        String s = new String(text, StandardCharsets.ISO_8859_1);
+        for (int end = from + 1; end <= text.length; end++) {
+            for (int start = from; start < end; start++) {
+                if (regex.matcher(s.substring(start, end)).matches())
+                    return start;
+            }
+        }
+        return -1;
+    }
+
+    @Test
+    void regexMatchesNaiveSearch() throws IOException {
+        String[][] cases = {
+                {"01 02", "\\x01\\x02"},
+                {"01 .{0,5} 02", "\\x01.{0,5}\\x02"},
+                {"(01 | 02 03)+ 00", "(\\x01|\\x02\\x03)+\\x00"},
+                {"[00-01] [^00 01 02]* 03", "[\\x00-\\x01][^\\x00\\x01\\x02]*\\x03"},
+                {"0? 02 ?4", "[\\x00-\\x0F]\\x02\\x04"},
+                {"(01 02){2,} 04", "(\\x01\\x02){2,}\\x04"},
+                {"03 (00|01){1,3} 03", "\\x03(\\x00|\\x01){1,3}\\x03"},
+                {"04 . 04 {0,1} 02", "\\x04.\\x04?\\x02"},
+        };
+
+        Random random = new Random(5);
+        byte[] text = new byte[300];
+        for (int i = 0; i < text.length; i++) {
+            text[i] = (byte) random.nextInt(5);
+        }
+        ByteSource source = arraySource(text);
+
+        for (String[] c : cases) {
+            Pattern expected = Pattern.compile(c[1], Pattern.DOTALL);
+            RegexSearch search = new RegexSearch(new ByteRegex(c[0]));
+            for (int from : new int[]{0, 17, 150}) {
+                assertEquals(naiveRegexFind(text, expected, from),
+                        search.find(source, from), c[0]);
+            }
+        }
+    }
+
+    @Test
+    void regexFindsMatchAcrossBlocksWithSmallStateCache() throws IOException {
+        byte[] text = new byte[BlockSearch.BLOCK_SIZE + 1000];
+        for (int i = 0; i < text.length; i++) {
+            text[i] = (byte) (i % 7 + 1);
+        }
+        int pos = BlockSearch.BLOCK_SIZE - 20;
+        text[pos] = (byte) 0xFF;
+        text[pos + 1] = (byte) 0xD8;
+        text[pos + 50] = (byte) 0xFF;
+        text[pos + 51] = (byte) 0xC0;
+
+        ByteRegex regex = new ByteRegex("FF D8 .{0,64} FF C0");
+        assertEquals(pos, new RegexSearch(regex).find(arraySource(text), 0));
+        RegexSearch small = new RegexSearch(regex, 8);
+        assertEquals(pos, small.find(arraySource(text), 0));
+        assertEquals(pos + 52, small.getMatchEnd());
+        assertEquals(-1, small.find(arraySource(text), pos + 1));
+    }
+
+    @Test
+    void regexRejectsInvalidSyntax() {
+        for (String bad : new String[]{"0", "(01", "01)", "[01", "GG",
+                "01{2,1}", "[05-01]", "[0?-10]", "*"}) {
+            assertThrows(IllegalArgumentException.class,
+                    () -> new ByteRegex(bad), bad);
+        }
+        assertTrue(new ByteRegex("01*").matchesEmpty());
+        assertFalse(new ByteRegex("01+").matchesEmpty());
+    }
+
+    @Test
+    void ahoCorasickMatchesNaiveSearch() throws IOException {
+        Random random = new Random(6);
+        byte[] text = new byte[BlockSearch.BLOCK_SIZE + 50_000];
+        for (int i = 0; i < text.length; i++) {
+            text[i] = (byte) random.nextInt(6);
+        }
+
+        List<byte[]> patterns = new ArrayList<>();
+        for (int k = 0; k < 200; k++) {
+            byte[] p = new byte[1 + random.nextInt(9)];
+            for (int i = 0; i < p.length; i++) {
+                p[i] = (byte) random.nextInt(6);
+            }
+            patterns.add(p);
+        }
+        // The duplicates and the suffixes of other patterns
+        patterns.add(patterns.get(0).clone());
+        patterns.add(new byte[]{1, 2, 3, 4});
+        patterns.add(new byte[]{3, 4});
+
+        int from = 123;
+        List<Long> expected = new ArrayList<>();
+        for (int id = 0; id < patterns.size(); id++) {
+            byte[] p = patterns.get(id);
+            for (int i = naiveIndexOf(text, p, from); i != -1;
+                 i = naiveIndexOf(text, p, i + 1)) {
+                expected.add((long) i * 1000 + id);
+            }
+        }
+
+        List<Long> actual = new ArrayList<>();
+        AhoCorasick automaton = new AhoCorasick(patterns);
+        long count = automaton.scan(arraySource(text), from, (id, offset) -> {
+            actual.add(offset * 1000 + id);
+            return true;
+        });
+
+        assertEquals(expected.size(), count);
+        expected.sort(null);
+        actual.sort(null);
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    void ahoCorasickReportsByEndAndStops() throws IOException {
+        byte[] text = {9, 1, 2, 3, 4, 9, 3, 4};
+        AhoCorasick automaton = new AhoCorasick(Arrays.asList(
+                new byte[]{3, 4}, new byte[]{1, 2, 3, 4}, new byte[]{2}));
+
+        List<String> matches = new ArrayList<>();
+        automaton.scan(arraySource(text), 0, (id, offset) -> {
+            matches.add(id + "@" + offset);
+            return true;
+        });
+        assertEquals(Arrays.asList("2@2", "1@1", "0@3", "0@6"), matches);
+
+        matches.clear();
+        assertEquals(2, automaton.scan(arraySource(text), 0, (id, offset) -> {
+            matches.add(id + "@" + offset);
+            return matches.size() < 2;
+        }));
+        assertThrows(IllegalArgumentException.class,
+                () -> new AhoCorasick(Arrays.asList(new byte[]{1}, new byte[0])));
+    }
+
+    @Test
+    void indexCandidatesContainEveryMatch() throws IOException {
+        Random random = new Random(14);
+        byte[] text = new byte[20000];
+        for (int i = 0; i < text.length; i++) {
+            text[i] = (byte) random.nextInt(6);
+        }
+
+        // The small memory limit makes the index spill many runs
+        try (NGramIndex index = NGramIndex.build(arraySource(text), null,
+                64, 8, 1024)) {
+            assertEquals(text.length, index.length());
+            for (int k = 0; k < 100; k++) {
+                int from = random.nextInt(text.length - 200);
+                byte[] values = Arrays.copyOfRange(text, from,
+                        from + 4 + random.nextInt(150));
+                byte[] masks = new byte[values.length];
+                Arrays.fill(masks, (byte) 0xFF);
+                if (k % 2 == 0) {
+                    masks[random.nextInt(masks.length)] = 0;
+                }
+                BytePattern pattern = new BytePattern(values, masks);
+
+                int[] blocks = index.candidateBlocks(pattern);
+                if (pattern.isExact()) {
+                    assertNotNull(blocks);
+                }
+                if (blocks == null) {
+                    continue;
+                }
+                for (int i = naiveIndexOf(text, pattern, 0); i != -1;
+                     i = naiveIndexOf(text, pattern, i + 1)) {
+                    assertTrue(Arrays.binarySearch(blocks, i / 64) >= 0,
+                            "Block of the match at " + i);
+                }
+            }
+
+            assertNull(index.candidateBlocks(BytePattern.parse("00 01 ?? 02")));
+        }
+    }
+
+    @Test
+    void backwardSearchMatchesNaiveSearch() throws IOException {
+        Random random = new Random(15);
+        byte[] text = new byte[30_000];
+        for (int i = 0; i < text.length; i++) {
+            text[i] = (byte) random.nextInt(4);
+        }
+
+        for (int m : new int[]{1, 3, 8, 64, 70}) {
+            int start = random.nextInt(text.length - m);
+            byte[] values = Arrays.copyOfRange(text, start, start + m);
+            byte[] masks = new byte[m];
+            for (int i = 0; i < m; i++) {
+                masks[i] = (byte) (random.nextInt(4) == 0 ? 0 : 0xFF);
+            }
+            BytePattern masked = new BytePattern(values, masks);
+            BytePattern exact = BytePattern.of(values);
+
+            for (BytePattern pattern : new BytePattern[]{masked, exact}) {
+                ShiftAndMatcher shiftAnd = new ShiftAndMatcher(pattern);
+                HorspoolMatcher horspool = pattern.isExact()
+                        ? new HorspoolMatcher(values) : null;
+                for (int k = 0; k < 10; k++) {
+                    int to = random.nextInt(text.length + 1);
+                    int expected = -1;
+                    for (int i = naiveIndexOf(text, pattern, 0);
+                         i != -1 && i <= to - m;
+                         i = naiveIndexOf(text, pattern, i + 1)) {
+                        expected = i;
+                    }
+                    assertEquals(expected, shiftAnd.lastIndexOf(text, 0, to));
+                    if (horspool != null) {
+                        assertEquals(expected, horspool.lastIndexOf(text, 0, to));
+                    }
+
+                    // The small buffer makes the matches cross the blocks
+                    int limit = Math.max(0, to - m + 1);
+                    int last = -1;
+                    for (int i = naiveIndexOf(text, pattern, 0);
+                         i != -1 && i < limit;
+                         i = naiveIndexOf(text, pattern, i + 1)) {
+                        last = i;
+                    }
+                    assertEquals(last, BlockSearch.findLast(arraySource(text),
+                            0, limit, shiftAnd, new byte[Math.max(2 * m, 100)]));
+                }
+            }
+        }
+    }
+}